@@ -0,0 +1,42 @@
+package io.github.verils.gotemplate;
+
+import java.io.IOException;
+
+/**
+ * Receives the outputs of a batch execution, one per data item.
+ * <p>
+ * Used with {@link Template#executeBatch(Iterable, BatchSink)}. Items whose execution fails are reported to
+ * {@link #failed(int, Object, TemplateException)} instead, and the batch goes on with the next item. A sink that
+ * throws ends the whole batch.
+ * <p>
+ * When the batch runs on several threads, the sink is called from all of them, possibly at the same time, and
+ * items are not reported in order; the index tells which item an output belongs to.
+ *
+ * @since 0.11.0
+ */
+@FunctionalInterface
+public interface BatchSink {
+
+    /**
+     * Accepts the output of an item. The output is backed by a buffer reused for the next item once this method
+     * returns, so it must be copied to be kept.
+     *
+     * @param index  position of the item in the batch, from 0
+     * @param data   the item
+     * @param output output of the item
+     * @throws IOException to abort the batch
+     */
+    void accept(int index, Object data, CharSequence output) throws IOException;
+
+    /**
+     * Called instead of {@link #accept(int, Object, CharSequence)} when the execution of an item fails. Ignores the
+     * failure by default.
+     *
+     * @param index position of the item in the batch, from 0
+     * @param data  the item
+     * @param error why the execution failed
+     * @throws IOException to abort the batch
+     */
+    default void failed(int index, Object data, TemplateException error) throws IOException {
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.verils.gotemplate;
+
+import java.time.Duration;
+
+/**
+ * Limits on the resources a single template execution can use.
+ * <p>
+ * Meant for templates from untrusted sources, where a single {@code {{range 100000000}}} or a recursive
+ * {@code {{template}}} invocation could otherwise keep a thread busy for minutes. An execution that exceeds a limit
+ * ends with a {@link TemplateLimitExceededException}, leaving the output written so far incomplete. The checks are
+ * counter comparisons made as nodes are executed, cheap enough to keep enabled in production.
+ * <p>
+ * The limits are:
+ * <ul>
+ *   <li>output: characters written by the execution</li>
+ *   <li>steps: nodes executed, counting each {@code range} iteration as a step</li>
+ *   <li>template depth: nesting of {@code {{template}}} invocations</li>
+ *   <li>timeout: time since the execution started, checked every few steps, so a single slow function call or
+ *   data accessor is not interrupted</li>
+ * </ul>
+ * Parallel range chunks and concurrently rendered template invocations count their steps on the counter of the
+ * execution, so the step limit applies to the execution as a whole. Their output is counted separately while they
+ * render into their buffers, and counted again when the execution writes the buffers, so each part is also held to
+ * the output limit on its own. Instances are immutable; each {@code withX} method returns a copy.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * template.withExecutionLimits(new ExecutionLimits()
+ *         .withMaxOutput(1_000_000)
+ *         .withMaxSteps(100_000)
+ *         .withMaxTemplateDepth(50)
+ *         .withTimeout(Duration.ofMillis(200)));
+ * }</pre>
+ *
+ * @see Template#withExecutionLimits(ExecutionLimits)
+ * @since 0.11.0
+ */
+public final class ExecutionLimits {
+
+    private final long maxOutput;
+    private final long maxSteps;
+    private final int maxTemplateDepth;
+    private final Duration timeout;
+
+    /**
+     * Creates limits that do not limit anything.
+     */
+    public ExecutionLimits() {
+        this(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, null);
+    }
+
+    private ExecutionLimits(long maxOutput, long maxSteps, int maxTemplateDepth, Duration timeout) {
+        this.maxOutput = maxOutput;
+        this.maxSteps = maxSteps;
+        this.maxTemplateDepth = maxTemplateDepth;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Limits the number of characters an execution writes.
+     *
+     * @param maxOutput maximum number of characters
+     * @return limits with the given output limit
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public ExecutionLimits withMaxOutput(long maxOutput) {
+        if (maxOutput <= 0) {
+            throw new IllegalArgumentException("max output must be positive");
+        }
+        return new ExecutionLimits(maxOutput, maxSteps, maxTemplateDepth, timeout);
+    }
+
+    /**
+     * Limits the number of nodes an execution executes, counting each {@code range} iteration as a step.
+     *
+     * @param maxSteps maximum number of steps
+     * @return limits with the given step limit
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public ExecutionLimits withMaxSteps(long maxSteps) {
+        if (maxSteps <= 0) {
+            throw new IllegalArgumentException("max steps must be positive");
+        }
+        return new ExecutionLimits(maxOutput, maxSteps, maxTemplateDepth, timeout);
+    }
+
+    /**
+     * Limits the nesting of {@code {{template}}} invocations.
+     *
+     * @param maxTemplateDepth maximum number of nested invocations
+     * @return limits with the given depth limit
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public ExecutionLimits withMaxTemplateDepth(int maxTemplateDepth) {
+        if (maxTemplateDepth <= 0) {
+            throw new IllegalArgumentException("max template depth must be positive");
+        }
+        return new ExecutionLimits(maxOutput, maxSteps, maxTemplateDepth, timeout);
+    }
+
+    /**
+     * Limits the time an execution takes.
+     *
+     * @param timeout maximum duration of an execution, {@code null} for no limit
+     * @return limits with the given timeout
+     * @throws IllegalArgumentException if the timeout is zero or negative
+     */
+    public ExecutionLimits withTimeout(Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        return new ExecutionLimits(maxOutput, maxSteps, maxTemplateDepth, timeout);
+    }
+
+    /**
+     * Returns the maximum number of characters an execution writes.
+     *
+     * @return output limit, {@link Long#MAX_VALUE} if unlimited
+     */
+    public long maxOutput() {
+        return maxOutput;
+    }
+
+    /**
+     * Returns the maximum number of steps an execution takes.
+     *
+     * @return step limit, {@link Long#MAX_VALUE} if unlimited
+     */
+    public long maxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * Returns the maximum nesting of {@code {{template}}} invocations.
+     *
+     * @return depth limit, {@link Integer#MAX_VALUE} if unlimited
+     */
+    public int maxTemplateDepth() {
+        return maxTemplateDepth;
+    }
+
+    /**
+     * Returns the maximum duration of an execution.
+     *
+     * @return timeout, {@code null} if unlimited
+     */
+    public Duration timeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,197 @@
+package io.github.verils.gotemplate;
+
+import io.github.verils.gotemplate.internal.FragmentStore;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of the output of {@code {{template}}} invocations.
+ * <p>
+ * A template whose output only depends on its argument, such as a footer or a navigation menu, renders the same
+ * output every time it is invoked with an equal argument. Once a key function is registered for such a template
+ * with {@link #withKey(String, java.util.function.Function)}, every invocation derives a key from its argument,
+ * and an invocation whose key is cached writes the cached output instead of executing the template. Keys are
+ * compared with {@link Object#equals(Object)}. Invocations with a {@code null} key, and templates without a key
+ * function, are executed as usual. Templates executed directly, rather than invoked with {@code {{template}}}, are
+ * not cached. Output is only written for the definition of the template that rendered it, so templates of the
+ * same name parsed by different {@link Template}s, or parsed again, do not reuse each other's output.
+ * <p>
+ * The cache holds up to a maximum number of outputs, evicting the least recently used output to make room, and
+ * optionally drops outputs some time after they were stored. It is thread-safe and can be shared by several
+ * templates. Hits, misses and evictions are counted for monitoring.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * FragmentCache cache = new FragmentCache(1000)
+ *         .withExpireAfterWrite(Duration.ofMinutes(5))
+ *         .withKey("footer", site -> ((Site) site).getVersion())
+ *         .withKey("menu", menu -> menu);
+ * template.withFragmentCache(cache);
+ * }</pre>
+ *
+ * @see Template#withFragmentCache(FragmentCache)
+ * @since 0.11.0
+ */
+public final class FragmentCache {
+
+    private final FragmentStore store;
+
+    /**
+     * Creates a cache holding up to the given number of outputs.
+     *
+     * @param maximumSize maximum number of cached outputs
+     * @throws IllegalArgumentException if the maximum size is not positive
+     */
+    public FragmentCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximum size must be positive");
+        }
+        this.store = new FragmentStore(maximumSize);
+    }
+
+    /**
+     * Caches the output of a template, by a key derived from the argument of each invocation.
+     * <p>
+     * The key function must return equal keys only for arguments the template renders identically, and should be
+     * cheap compared to executing the template. Returning {@code null} skips the cache for that invocation.
+     *
+     * @param templateName name of the template
+     * @param keyFunction  derives the key from the argument, {@code null} to stop caching the template
+     * @return this cache
+     * @throws IllegalArgumentException if the template name is null
+     */
+    public FragmentCache withKey(String templateName, java.util.function.Function<Object, ?> keyFunction) {
+        if (templateName == null) {
+            throw new IllegalArgumentException("template name can not be null");
+        }
+        store.setKeyFunction(templateName, keyFunction);
+        return this;
+    }
+
+    /**
+     * Configures how long outputs are kept after they are stored.
+     *
+     * @param timeToLive time to live of cached outputs, {@code null} or zero (default) to keep outputs until they
+     *                   are evicted
+     * @return this cache
+     * @throws IllegalArgumentException if the duration is negative
+     */
+    public FragmentCache withExpireAfterWrite(Duration timeToLive) {
+        if (timeToLive != null && timeToLive.isNegative()) {
+            throw new IllegalArgumentException("time to live can not be negative");
+        }
+        store.setTimeToLiveNanos(timeToLive != null ? timeToLive.toNanos() : 0);
+        return this;
+    }
+
+    /**
+     * Configures the time source used for expiration, {@link System#nanoTime()} by default.
+     *
+     * @param ticker returns the current time in nanoseconds
+     * @return this cache
+     * @throws IllegalArgumentException if the ticker is null
+     */
+    public FragmentCache withTicker(LongSupplier ticker) {
+        if (ticker == null) {
+            throw new IllegalArgumentException("ticker can not be null");
+        }
+        store.setTicker(ticker);
+        return this;
+    }
+
+    /**
+     * Returns whether the output of a template is cached.
+     *
+     * @param templateName name of the template
+     * @return {@code true} if a key function is registered for the template
+     */
+    public boolean isCached(String templateName) {
+        return store.isCached(templateName);
+    }
+
+    /**
+     * Returns the maximum number of cached outputs.
+     *
+     * @return maximum size
+     */
+    public int maximumSize() {
+        return store.getMaximumSize();
+    }
+
+    /**
+     * Returns how long outputs are kept after they are stored.
+     *
+     * @return time to live, {@link Duration#ZERO} if outputs are kept until evicted
+     */
+    public Duration expireAfterWrite() {
+        return Duration.ofNanos(store.getTimeToLiveNanos());
+    }
+
+    /**
+     * Returns the number of cached outputs.
+     *
+     * @return number of outputs
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Returns the number of invocations that wrote a cached output.
+     *
+     * @return hit count
+     */
+    public long hitCount() {
+        return store.getHits();
+    }
+
+    /**
+     * Returns the number of cacheable invocations that executed the template.
+     *
+     * @return miss count
+     */
+    public long missCount() {
+        return store.getMisses();
+    }
+
+    /**
+     * Returns the number of outputs evicted to make room or dropped after their time to live.
+     *
+     * @return eviction count
+     */
+    public long evictionCount() {
+        return store.getEvictions();
+    }
+
+    /**
+     * Returns the ratio of hits to cacheable invocations.
+     *
+     * @return hit rate between 0 and 1, {@code 0} before the first cacheable invocation
+     */
+    public double hitRate() {
+        long hits = store.getHits();
+        long total = hits + store.getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Drops the cached outputs of a template, for example after the data it renders has changed.
+     *
+     * @param templateName name of the template
+     */
+    public void invalidate(String templateName) {
+        store.invalidate(templateName);
+    }
+
+    /**
+     * Drops all cached outputs.
+     */
+    public void invalidateAll() {
+        store.invalidateAll();
+    }
+
+    FragmentStore store() {
+        return store;
+    }
+}
@@ -1,10 +1,14 @@
 package io.github.verils.gotemplate;
 
+import io.github.verils.gotemplate.internal.Comparison;
+import io.github.verils.gotemplate.internal.lang.EscapeUtils;
+
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
 import java.net.URLEncoder;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -85,70 +89,27 @@ public class Functions {
 
     // Comparison operators
     private static Function eq() {
-        return args -> {
-            if (args.length < 2) {
-                throw new IllegalArgumentException("eq requires at least 2 arguments");
-            }
-            Object first = args[0];
-            for (int i = 1; i < args.length; i++) {
-                if (!equal(first, args[i])) {
-                    return false;
-                }
-            }
-            return true;
-        };
+        return Comparison.EQ::testAll;
     }
 
     private static Function ne() {
-        return args -> {
-            if (args.length < 2) {
-                throw new IllegalArgumentException("ne requires at least 2 arguments");
-            }
-            Object first = args[0];
-            for (int i = 1; i < args.length; i++) {
-                if (equal(first, args[i])) {
-                    return false;
-                }
-            }
-            return true;
-        };
+        return Comparison.NE::testAll;
     }
 
     private static Function lt() {
-        return args -> {
-            if (args.length < 2) {
-                throw new IllegalArgumentException("lt requires at least 2 arguments");
-            }
-            return compare(args, -1);
-        };
+        return Comparison.LT::testAll;
     }
 
     private static Function le() {
-        return args -> {
-            if (args.length < 2) {
-                throw new IllegalArgumentException("le requires at least 2 arguments");
-            }
-            return compare(args, 0);
-        };
+        return Comparison.LE::testAll;
     }
 
     private static Function gt() {
-        return args -> {
-            if (args.length < 2) {
-                throw new IllegalArgumentException("gt requires at least 2 arguments");
-            }
-            return compare(args, 1);
-        };
+        return Comparison.GT::testAll;
     }
 
     private static Function ge() {
-        return args -> {
-            if (args.length < 2) {
-                throw new IllegalArgumentException("ge requires at least 2 arguments");
-            }
-            // ge means greater than or equal, so we want cmp >= 0
-            return compare(args, 0, true);
-        };
+        return Comparison.GE::testAll;
     }
 
     // Logical operators
@@ -193,18 +154,22 @@ public class Functions {
             if (arg == null) {
                 return 0;
             }
-            if (arg instanceof String) {
-                return ((String) arg).length();
+            if (arg instanceof CharSequence) {
+                return ((CharSequence) arg).length();
             }
             if (arg instanceof Collection) {
                 return ((Collection<?>) arg).size();
             }
-            if (arg.getClass().isArray()) {
-                return Array.getLength(arg);
-            }
             if (arg instanceof Map) {
                 return ((Map<?, ?>) arg).size();
             }
+            if (arg instanceof Object[]) {
+                return ((Object[]) arg).length;
+            }
+            int length = primitiveArrayLength(arg);
+            if (length >= 0) {
+                return length;
+            }
             throw new IllegalArgumentException("len: invalid type " + arg.getClass().getName());
         };
     }
@@ -224,27 +189,28 @@ public class Functions {
                 return map.get(args[1]);
             }
 
-            if (collection.getClass().isArray()) {
-                int index = toInt(args[1]);
-                int arrayLength = Array.getLength(collection);
-                if (index >= 0 && index < arrayLength) {
-                    return Array.get(collection, index);
-                }
-                return null;
-            }
+            int index = toInt(args[1]);
 
+            // Lists index directly, RandomAccess lists in constant time
             if (collection instanceof List) {
                 List<?> list = (List<?>) collection;
-                int index = toInt(args[1]);
                 if (index >= 0 && index < list.size()) {
                     return list.get(index);
                 }
                 return null;
             }
 
+            if (collection instanceof Object[]) {
+                Object[] array = (Object[]) collection;
+                return index >= 0 && index < array.length ? array[index] : null;
+            }
+
+            if (collection.getClass().isArray()) {
+                return primitiveArrayElement(collection, index);
+            }
+
             if (collection instanceof Collection) {
                 Collection<?> values = (Collection<?>) collection;
-                int index = toInt(args[1]);
                 if (index < 0 || index >= values.size()) {
                     return null;
                 }
@@ -258,11 +224,10 @@ public class Functions {
                 return null;
             }
 
-            if (collection instanceof String) {
-                String str = (String) collection;
-                int index = toInt(args[1]);
-                if (index >= 0 && index < str.length()) {
-                    return String.valueOf(str.charAt(index));
+            if (collection instanceof CharSequence) {
+                CharSequence chars = (CharSequence) collection;
+                if (index >= 0 && index < chars.length()) {
+                    return String.valueOf(chars.charAt(index));
                 }
                 return "";
             }
@@ -280,42 +245,92 @@ public class Functions {
             int start = toInt(args[1]);
             int end = toInt(args[2]);
 
-            if (collection instanceof String) {
-                String str = (String) collection;
+            if (collection instanceof CharSequence) {
+                CharSequence chars = (CharSequence) collection;
                 if (start < 0) start = 0;
-                if (end > str.length()) end = str.length();
+                if (end > chars.length()) end = chars.length();
                 if (start >= end) return "";
-                return str.substring(start, end);
+                return collection instanceof String
+                        ? ((String) collection).substring(start, end)
+                        : chars.subSequence(start, end);
             }
 
-            if (collection.getClass().isArray()) {
-                int arrayLength = Array.getLength(collection);
+            // Like a Go slice expression, slicing a list shares the backing list instead of copying it
+            if (collection instanceof List) {
+                List<?> list = (List<?>) collection;
                 if (start < 0) start = 0;
-                if (end > arrayLength) end = arrayLength;
+                if (end > list.size()) end = list.size();
                 if (start >= end) {
-                    return Array.newInstance(collection.getClass().getComponentType(), 0);
+                    return Collections.emptyList();
                 }
-                int length = end - start;
-                Object newArray = Array.newInstance(collection.getClass().getComponentType(), length);
-                //noinspection SuspiciousSystemArraycopy
-                System.arraycopy(collection, start, newArray, 0, length);
-                return newArray;
+                return list.subList(start, end);
             }
 
-            if (collection instanceof List) {
-                List<?> list = (List<?>) collection;
+            int arrayLength = collection instanceof Object[]
+                    ? ((Object[]) collection).length
+                    : primitiveArrayLength(collection);
+            if (arrayLength >= 0) {
                 if (start < 0) start = 0;
-                if (end > list.size()) end = list.size();
+                if (end > arrayLength) end = arrayLength;
                 if (start >= end) {
-                    return new ArrayList<>();
+                    return copyOfRange(collection, 0, 0);
                 }
-                return new ArrayList<>(list.subList(start, end));
+                return copyOfRange(collection, start, end);
             }
 
             throw new IllegalArgumentException("slice: invalid type " + collection.getClass().getName());
         };
     }
 
+    /**
+     * Length of a primitive array without reflection.
+     *
+     * @return the length, or {@code -1} if the value is not a primitive array
+     */
+    private static int primitiveArrayLength(Object array) {
+        if (array instanceof int[]) return ((int[]) array).length;
+        if (array instanceof long[]) return ((long[]) array).length;
+        if (array instanceof double[]) return ((double[]) array).length;
+        if (array instanceof byte[]) return ((byte[]) array).length;
+        if (array instanceof char[]) return ((char[]) array).length;
+        if (array instanceof float[]) return ((float[]) array).length;
+        if (array instanceof short[]) return ((short[]) array).length;
+        if (array instanceof boolean[]) return ((boolean[]) array).length;
+        return -1;
+    }
+
+    /**
+     * Element of a primitive array without reflection, or {@code null} if the index is out of range.
+     */
+    private static Object primitiveArrayElement(Object array, int index) {
+        if (index < 0 || index >= primitiveArrayLength(array)) {
+            return null;
+        }
+        if (array instanceof int[]) return ((int[]) array)[index];
+        if (array instanceof long[]) return ((long[]) array)[index];
+        if (array instanceof double[]) return ((double[]) array)[index];
+        if (array instanceof byte[]) return ((byte[]) array)[index];
+        if (array instanceof char[]) return ((char[]) array)[index];
+        if (array instanceof float[]) return ((float[]) array)[index];
+        if (array instanceof short[]) return ((short[]) array)[index];
+        return ((boolean[]) array)[index];
+    }
+
+    /**
+     * Copy a range of any array, keeping its component type.
+     */
+    private static Object copyOfRange(Object array, int start, int end) {
+        if (array instanceof Object[]) return Arrays.copyOfRange((Object[]) array, start, end);
+        if (array instanceof int[]) return Arrays.copyOfRange((int[]) array, start, end);
+        if (array instanceof long[]) return Arrays.copyOfRange((long[]) array, start, end);
+        if (array instanceof double[]) return Arrays.copyOfRange((double[]) array, start, end);
+        if (array instanceof byte[]) return Arrays.copyOfRange((byte[]) array, start, end);
+        if (array instanceof char[]) return Arrays.copyOfRange((char[]) array, start, end);
+        if (array instanceof float[]) return Arrays.copyOfRange((float[]) array, start, end);
+        if (array instanceof short[]) return Arrays.copyOfRange((short[]) array, start, end);
+        return Arrays.copyOfRange((boolean[]) array, start, end);
+    }
+
     // Utility functions
     private static Function call() {
         return args -> {
@@ -341,7 +356,7 @@ public class Functions {
                 return "";
             }
             String str = String.valueOf(args[0]);
-            return escapeHtml(str);
+            return EscapeUtils.escapeHtml(str);
         };
     }
 
@@ -354,7 +369,7 @@ public class Functions {
                 return "";
             }
             String str = String.valueOf(args[0]);
-            return escapeJs(str);
+            return EscapeUtils.escapeJs(str);
         };
     }
 
@@ -410,19 +425,6 @@ public class Functions {
     }
 
     // Helper methods
-    private static boolean equal(Object a, Object b) {
-        if (a == b) {
-            return true;
-        }
-        if (a == null || b == null) {
-            return false;
-        }
-        if (a instanceof Number && b instanceof Number) {
-            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue()) == 0;
-        }
-        return a.equals(b);
-    }
-
     /**
      * Determines if a value is falsy according to Go template semantics.
      * <p>
@@ -453,49 +455,6 @@ public class Functions {
         return false;
     }
 
-    private static boolean compare(Object[] args, int expectedSign) {
-        return compare(args, expectedSign, false);
-    }
-
-    private static boolean compare(Object[] args, int expectedSign, boolean reverseForGe) {
-        if (args.length < 2) {
-            return false;
-        }
-
-        for (int i = 0; i < args.length - 1; i++) {
-            int cmp = compareValues(args[i], args[i + 1]);
-            if (reverseForGe) {
-                // For ge, we want cmp >= 0 (a >= b)
-                if (cmp < 0) {
-                    return false;
-                }
-            } else if (expectedSign == -1 && cmp >= 0) {
-                // For lt, we want cmp < 0 (a < b)
-                return false;
-            } else if (expectedSign == 1 && cmp <= 0) {
-                // For gt, we want cmp > 0 (a > b)
-                return false;
-            } else if (expectedSign == 0 && cmp > 0) {
-                // For le, we want cmp <= 0 (a <= b)
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private static int compareValues(Object a, Object b) {
-        if (a instanceof Number && b instanceof Number) {
-            double da = ((Number) a).doubleValue();
-            double db = ((Number) b).doubleValue();
-            return Double.compare(da, db);
-        }
-        if (a instanceof String && b instanceof String) {
-            return ((String) a).compareTo((String) b);
-        }
-        throw new IllegalArgumentException("incompatible types for comparison: " +
-                a.getClass().getName() + " and " + b.getClass().getName());
-    }
-
     private static int toInt(Object obj) {
         if (obj == null) {
             return 0;
@@ -518,67 +477,6 @@ public class Functions {
         }
     }
 
-    private static String escapeHtml(String str) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < str.length(); i++) {
-            char c = str.charAt(i);
-            switch (c) {
-                case '&':
-                    sb.append("&amp;");
-                    break;
-                case '<':
-                    sb.append("&lt;");
-                    break;
-                case '>':
-                    sb.append("&gt;");
-                    break;
-                case '"':
-                    sb.append("&quot;");
-                    break;
-                case '\'':
-                    sb.append("&#39;");
-                    break;
-                default:
-                    sb.append(c);
-            }
-        }
-        return sb.toString();
-    }
-
-    private static String escapeJs(String str) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < str.length(); i++) {
-            char c = str.charAt(i);
-            switch (c) {
-                case '\\':
-                    sb.append("\\\\");
-                    break;
-                case '"':
-                    sb.append("\\\"");
-                    break;
-                case '\'':
-                    sb.append("\\'");
-                    break;
-                case '\n':
-                    sb.append("\\n");
-                    break;
-                case '\r':
-                    sb.append("\\r");
-                    break;
-                case '\t':
-                    sb.append("\\t");
-                    break;
-                default:
-                    if (c < 32 || c > 126) {
-                        sb.append(String.format("\\u%04x", (int) c));
-                    } else {
-                        sb.append(c);
-                    }
-            }
-        }
-        return sb.toString();
-    }
-
     private static boolean deepEquals(Object a, Object b) {
         if (a == b) {
             return true;
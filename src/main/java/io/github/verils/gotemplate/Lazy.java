@@ -0,0 +1,46 @@
+package io.github.verils.gotemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * A data value computed only when a template reads it.
+ * <p>
+ * Wherever a template reads a value (a field, a map entry, an {@code index} element, a {@code range} element or
+ * the printed result of an action), a {@code Lazy} is replaced by the value it supplies, the same way an
+ * {@link java.util.Optional} is unwrapped. The supplier is called at most once per template execution: later reads
+ * in the same execution, including from nested templates, reuse the first result. A value that is never read is
+ * never computed.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * Map<String, Object> data = new HashMap<>();
+ * data.put("user", user);
+ * data.put("recommendations", Lazy.of(() -> recommendationService.forUser(user)));
+ *
+ * // recommendationService is only called if the template reads .recommendations
+ * template.execute(writer, data);
+ * }</pre>
+ * <p>
+ * Only {@code Lazy} values are unwrapped; a plain {@link Supplier} in the data is left as it is.
+ *
+ * @param <T> type of the supplied value
+ * @since 0.11.0
+ */
+@FunctionalInterface
+public interface Lazy<T> extends Supplier<T> {
+
+    /**
+     * Creates a lazy value from a supplier.
+     *
+     * @param supplier computes the value, may return {@code null}
+     * @param <T>      type of the supplied value
+     * @return lazy value
+     * @throws IllegalArgumentException if the supplier is null
+     */
+    static <T> Lazy<T> of(Supplier<? extends T> supplier) {
+        if (supplier == null) {
+            throw new IllegalArgumentException("supplier can not be null");
+        }
+        return supplier::get;
+    }
+}
@@ -0,0 +1,233 @@
+package io.github.verils.gotemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records template metrics in memory, per template name and per node.
+ * <p>
+ * For each template it counts executions and failures, sums the output length and execution time, and keeps a
+ * histogram of execution times with power-of-two buckets, from which percentiles are estimated. For each node of
+ * sampled executions it counts executions and sums the time spent. The recorder is thread-safe and can be shared
+ * by several templates; statistics are read while executions go on.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * MetricsRecorder recorder = new MetricsRecorder();
+ * template.withMetrics(recorder, 100);
+ * ...
+ * MetricsRecorder.TemplateStatistics page = recorder.templateStatistics("page");
+ * Duration p99 = page.latencyPercentile(0.99);
+ * MetricsRecorder.NodeStatistics slowest = recorder.nodeStatistics().get(0);
+ * }</pre>
+ *
+ * @see Template#withMetrics(TemplateMetrics, int)
+ * @since 0.11.0
+ */
+public final class MetricsRecorder implements TemplateMetrics {
+
+    private final Map<String, TemplateStatistics> templates = new ConcurrentHashMap<>();
+    private final Map<String, NodeStatistics> nodes = new ConcurrentHashMap<>();
+
+    @Override
+    public void executed(String templateName, long durationNanos, long outputLength, Throwable failure) {
+        templates.computeIfAbsent(templateName, TemplateStatistics::new)
+                .record(durationNanos, outputLength, failure != null);
+    }
+
+    @Override
+    public void nodeExecuted(String templateName, int line, int column, String action, long durationNanos) {
+        String key = templateName + '\0' + line + ':' + column;
+        nodes.computeIfAbsent(key, k -> new NodeStatistics(templateName, line, column, action))
+                .record(durationNanos);
+    }
+
+    /**
+     * Returns the statistics of a template.
+     *
+     * @param templateName name of the template
+     * @return the statistics, or {@code null} if the template has not been executed
+     */
+    public TemplateStatistics templateStatistics(String templateName) {
+        return templates.get(templateName);
+    }
+
+    /**
+     * Returns the statistics of all executed templates.
+     *
+     * @return unmodifiable map of statistics by template name, sorted by name
+     */
+    public Map<String, TemplateStatistics> templateStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(templates));
+    }
+
+    /**
+     * Returns the statistics of the nodes of sampled executions, the node with the most time spent first.
+     *
+     * @return unmodifiable list of node statistics
+     */
+    public List<NodeStatistics> nodeStatistics() {
+        // Sort by a snapshot of the totals, which change while executions go on
+        Map<NodeStatistics, Long> totals = new HashMap<>();
+        nodes.values().forEach(node -> totals.put(node, node.totalNanos()));
+        List<NodeStatistics> statistics = new ArrayList<>(totals.keySet());
+        statistics.sort(Comparator.comparing(totals::get, Comparator.reverseOrder()));
+        return Collections.unmodifiableList(statistics);
+    }
+
+    /**
+     * Drops all recorded statistics.
+     */
+    public void reset() {
+        templates.clear();
+        nodes.clear();
+    }
+
+    /**
+     * Statistics of the executions of one template.
+     */
+    public static final class TemplateStatistics {
+
+        // Bucket i counts executions that took [2^i, 2^(i+1)) nanoseconds, bucket 0 also counts 0
+        private static final int BUCKET_COUNT = 63;
+
+        private final String templateName;
+        private final long[] buckets = new long[BUCKET_COUNT];
+        private long executionCount;
+        private long failureCount;
+        private long outputLength;
+        private long totalNanos;
+
+        private TemplateStatistics(String templateName) {
+            this.templateName = templateName;
+        }
+
+        private synchronized void record(long durationNanos, long outputLength, boolean failed) {
+            long duration = Math.max(durationNanos, 0);
+            buckets[duration == 0 ? 0 : 63 - Long.numberOfLeadingZeros(duration)]++;
+            executionCount++;
+            if (failed) {
+                failureCount++;
+            }
+            this.outputLength += outputLength;
+            totalNanos += duration;
+        }
+
+        public String templateName() {
+            return templateName;
+        }
+
+        public synchronized long executionCount() {
+            return executionCount;
+        }
+
+        public synchronized long failureCount() {
+            return failureCount;
+        }
+
+        /**
+         * Returns the number of characters written by all executions.
+         *
+         * @return total output length
+         */
+        public synchronized long outputLength() {
+            return outputLength;
+        }
+
+        public synchronized Duration totalTime() {
+            return Duration.ofNanos(totalNanos);
+        }
+
+        /**
+         * Returns the histogram of execution times: element {@code i} counts the executions that took from
+         * {@code 2^i} up to {@code 2^(i+1)} nanoseconds.
+         *
+         * @return copy of the bucket counts
+         */
+        public synchronized long[] latencyBuckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * Estimates a percentile of the execution times, as the upper bound of the histogram bucket it falls in,
+         * which is at most twice the exact value.
+         *
+         * @param percentile the percentile between 0 and 1, such as {@code 0.99}
+         * @return the estimated execution time, {@link Duration#ZERO} before the first execution
+         * @throws IllegalArgumentException if the percentile is not between 0 and 1
+         */
+        public synchronized Duration latencyPercentile(double percentile) {
+            if (percentile < 0 || percentile > 1) {
+                throw new IllegalArgumentException("percentile must be between 0 and 1");
+            }
+            long rank = (long) Math.ceil(percentile * executionCount);
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT && executionCount > 0; i++) {
+                count += buckets[i];
+                if (count >= Math.max(rank, 1)) {
+                    return Duration.ofNanos((1L << (i + 1)) - 1);
+                }
+            }
+            return Duration.ZERO;
+        }
+    }
+
+    /**
+     * Statistics of one node, an action, block or template invocation at a position of a template.
+     */
+    public static final class NodeStatistics {
+
+        private final String templateName;
+        private final int line;
+        private final int column;
+        private final String action;
+        private long count;
+        private long totalNanos;
+
+        private NodeStatistics(String templateName, int line, int column, String action) {
+            this.templateName = templateName;
+            this.line = line;
+            this.column = column;
+            this.action = action;
+        }
+
+        private synchronized void record(long durationNanos) {
+            count++;
+            totalNanos += durationNanos;
+        }
+
+        public String templateName() {
+            return templateName;
+        }
+
+        public int line() {
+            return line;
+        }
+
+        public int column() {
+            return column;
+        }
+
+        /**
+         * Returns the node as written in the template, such as {@code {{range .Orders}}}.
+         *
+         * @return the action text
+         */
+        public String action() {
+            return action;
+        }
+
+        public synchronized long count() {
+            return count;
+        }
+
+        public synchronized Duration totalTime() {
+            return Duration.ofNanos(totalNanos);
+        }
+
+        private synchronized long totalNanos() {
+            return totalNanos;
+        }
+    }
+}
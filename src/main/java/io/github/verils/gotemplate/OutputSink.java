@@ -0,0 +1,64 @@
+package io.github.verils.gotemplate;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Receives the output of a template execution in chunks.
+ * <p>
+ * Used with {@link Template#execute(OutputSink, Object)}, the executor buffers output and hands it over in chunks
+ * of about {@link Template#withFlushThreshold(int) the flush threshold}, preferably at the end of a {@code range}
+ * iteration, and calls {@link #flush()} after every chunk. Peak memory therefore stays constant however large the
+ * output is.
+ * <p>
+ * The sink controls the pace of the execution: a sink that can not accept more output yet applies back-pressure by
+ * blocking in {@link #write(char[], int, int)} until it can, and a sink that has to give up, for example because
+ * the client went away, throws an {@link IOException}, which ends the execution.
+ *
+ * @since 0.11.0
+ */
+@FunctionalInterface
+public interface OutputSink {
+
+    /**
+     * Accepts a chunk of output. The array is reused for the next chunk once this method returns.
+     *
+     * @param chunk  characters of the output
+     * @param offset offset of the first character in the array
+     * @param length number of characters
+     * @throws IOException to abort the execution
+     */
+    void write(char[] chunk, int offset, int length) throws IOException;
+
+    /**
+     * Called after each chunk, and once at the end of the execution.
+     *
+     * @throws IOException to abort the execution
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Returns a sink writing to a writer and flushing it after each chunk.
+     *
+     * @param writer the writer
+     * @return sink of the writer
+     * @throws IllegalArgumentException if the writer is null
+     */
+    static OutputSink of(Writer writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer can not be null");
+        }
+        return new OutputSink() {
+            @Override
+            public void write(char[] chunk, int offset, int length) throws IOException {
+                writer.write(chunk, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+}
@@ -1,19 +1,35 @@
 package io.github.verils.gotemplate;
 
-import io.github.verils.gotemplate.internal.ClassMetadata;
+import io.github.verils.gotemplate.internal.AsyncSupport;
+import io.github.verils.gotemplate.internal.BatchExecution;
+import io.github.verils.gotemplate.internal.ChunkPublisher;
+import io.github.verils.gotemplate.internal.ChunkedWriter;
+import io.github.verils.gotemplate.internal.ClassMetadataCache;
+import io.github.verils.gotemplate.internal.ConstantFolder;
+import io.github.verils.gotemplate.internal.ContextualEscaper;
+import io.github.verils.gotemplate.internal.DataPathAnalyzer;
 import io.github.verils.gotemplate.internal.Executor;
 import io.github.verils.gotemplate.internal.IOUtils;
+import io.github.verils.gotemplate.internal.NodeProfiler;
 import io.github.verils.gotemplate.internal.Parser;
+import io.github.verils.gotemplate.internal.Specializer;
+import io.github.verils.gotemplate.internal.ValueResolvers;
 import io.github.verils.gotemplate.internal.ast.ListNode;
 import io.github.verils.gotemplate.internal.ast.Node;
 import io.github.verils.gotemplate.internal.ast.TextNode;
+import io.github.verils.gotemplate.internal.jfr.JfrSupport;
+import io.github.verils.gotemplate.internal.jfr.TemplateEvents;
 
 import java.io.*;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -53,6 +69,13 @@ import java.util.stream.Stream;
  * Thread Safety: This class is NOT thread-safe during parsing. Once parsing is complete,
  * execution is thread-safe if different Writer instances are used for each execution.
  * For concurrent scenarios, use {@link #Template(Template)} copy constructor to create independent copies.
+ * <p>
+ * Flight Recorder: parsing, executions, {@code {{template}}} invocations and the resolution of fields of objects
+ * emit JDK Flight Recorder events in the {@code Go Templates} category, named
+ * {@code io.github.verils.gotemplate.Parse}, {@code .Execution}, {@code .TemplateInvocation} and
+ * {@code .FieldResolution}. They are disabled by default and cost a check per event while not recorded; enable
+ * them in the recording settings, for example with
+ * {@code jfr configure +io.github.verils.gotemplate.Execution#enabled=true}.
  *
  * @see Function for implementing custom template functions
  */
@@ -62,6 +85,7 @@ public class Template {
     private static final String DEFAULT_RIGHT_DELIM = "}}";
     private static final String DEFAULT_LEFT_COMMENT = "/*";
     private static final String DEFAULT_RIGHT_COMMENT = "*/";
+    private static final int DEFAULT_FLUSH_THRESHOLD = 8192;
 
     private final String name;
 
@@ -79,9 +103,32 @@ public class Template {
 
     private boolean mapKeySorting; // Whether to sort map keys during iteration
 
-    // Unified ClassMetadata cache: replaces beanInfoCache, annotationCache, and propertyDescriptorCache
-    // This cache is instance-level, so it gets GC'd when the Template is GC'd (no memory leak)
-    private final Map<Class<?>, ClassMetadata> classMetadataCache = new ConcurrentHashMap<>();
+    private boolean contextualEscaping; // Whether parsed actions are escaped for their HTML context
+
+    // Unified ClassMetadata cache: process-wide by default, or owned by this Template when sharing is disabled
+    private ClassMetadataCache classMetadataCache;
+
+    private ValueResolvers valueResolvers; // Resolvers for custom data models, immutable and shared with copies
+
+    private int flushThreshold; // Characters buffered before output is flushed, 0 to write through
+
+    private boolean parallelRange; // Whether large range loops are rendered on the common fork-join pool
+
+    // Renders sibling template invocations concurrently, null to render them in turn
+    private java.util.concurrent.Executor parallelTemplateExecutor;
+
+    private FragmentCache fragmentCache; // Output of template invocations, shared with copies, null for none
+
+    private boolean constantFolding; // Whether constant parts of templates are pre-rendered
+
+    private ExecutionLimits executionLimits; // Limits of each execution, null for none
+
+    private TemplateMetrics metrics; // Receives the measurements of each execution, null for none
+
+    private int nodeSampling; // One in this many executions reports the time spent in each node, 0 for none
+
+    // Pre-rendered constant parts of the parsed templates, created on first execution and dropped on parse
+    private volatile ConstantFolder constantFolder;
 
     /**
      * Creates a new template with the specified name.
@@ -212,6 +259,9 @@ public class Template {
 
         this.missingKeyPolicy = MissingKeyPolicy.INVALID;
         this.mapKeySorting = true; // Default to true for Go template compatibility
+        this.classMetadataCache = ClassMetadataCache.shared();
+        this.valueResolvers = ValueResolvers.empty();
+        this.constantFolding = true;
     }
 
     /**
@@ -250,6 +300,17 @@ public class Template {
         this.rightComment = other.rightComment;
         this.missingKeyPolicy = other.missingKeyPolicy;
         this.mapKeySorting = other.mapKeySorting;
+        this.contextualEscaping = other.contextualEscaping;
+        this.classMetadataCache = other.classMetadataCache;
+        this.valueResolvers = other.valueResolvers;
+        this.flushThreshold = other.flushThreshold;
+        this.parallelRange = other.parallelRange;
+        this.parallelTemplateExecutor = other.parallelTemplateExecutor;
+        this.fragmentCache = other.fragmentCache;
+        this.constantFolding = other.constantFolding;
+        this.executionLimits = other.executionLimits;
+        this.metrics = other.metrics;
+        this.nodeSampling = other.nodeSampling;
         this.nodes = new LinkedHashMap<>(other.nodes);
     }
 
@@ -296,10 +357,264 @@ public class Template {
         return this;
     }
 
+    /**
+     * Configures whether templates parsed afterwards are escaped for the HTML context of each action.
+     * <p>
+     * When enabled, every action that prints a value gets an escaper appended to its pipeline at parse time,
+     * similar to Go's {@code html/template}: HTML text and attribute values are HTML escaped, URL attributes are
+     * filtered and percent encoded, and values in {@code <script>}, event handler and {@code style} contexts are
+     * escaped as JavaScript and CSS. Escaping is computed once per parse, so execution only pays for the escaping
+     * of printed values.
+     * <p>
+     * Templates whose branches leave the output in different contexts, or which call {@code {{template}}} outside
+     * HTML text, are rejected with a {@link TemplateParseException}. Templates parsed before this option is
+     * enabled are not affected.
+     *
+     * @param contextualEscaping {@code true} to escape actions by context, {@code false} (default) for plain text
+     * @return this template
+     * @since 0.11.0
+     */
+    public Template withContextualEscaping(boolean contextualEscaping) {
+        this.contextualEscaping = contextualEscaping;
+        return this;
+    }
+
+    /**
+     * Configures whether class metadata is shared with all other templates in the process.
+     * <p>
+     * When enabled (default), the reflection metadata of data classes (bean properties, {@link TemplateField}
+     * members, public methods and fields) is computed once per class and shared by every template. The shared
+     * store never prevents classes from being unloaded. When disabled, this template keeps its own metadata, which
+     * is released with the template and is not affected by other templates; use this for templates rendering
+     * classes from isolated class loaders. Copies made from this template share its metadata store.
+     *
+     * @param sharedClassMetadata {@code true} to use the process-wide metadata (default), {@code false} for a
+     *                            metadata store owned by this template
+     * @return this template
+     * @since 0.11.0
+     */
+    public Template withSharedClassMetadata(boolean sharedClassMetadata) {
+        if (sharedClassMetadata != sharedClassMetadata()) {
+            this.classMetadataCache = sharedClassMetadata ? ClassMetadataCache.shared() : ClassMetadataCache.isolated();
+        }
+        return this;
+    }
+
+    /**
+     * Registers a resolver giving templates direct access to values of a custom data model.
+     * <p>
+     * The resolver is used for field access, {@code range}, truthiness, {@code len} and {@code index} on every
+     * value that is an instance of the type, ahead of the built-in handling of maps and beans. When several
+     * registered types match a value, the resolver of its class or nearest superclass wins over those of its
+     * interfaces. The resolver of each runtime class is looked up once per template. Copies made from this template
+     * keep the resolvers registered so far.
+     *
+     * @param type     the type of values to resolve
+     * @param resolver the resolver, replacing any resolver registered for the same type
+     * @param <T>      the type of values to resolve
+     * @return this template
+     * @throws IllegalArgumentException if the type or resolver is null
+     * @see ValueResolver
+     * @since 0.11.0
+     */
+    public <T> Template withValueResolver(Class<T> type, ValueResolver<? super T> resolver) {
+        if (type == null || resolver == null) {
+            throw new IllegalArgumentException("value resolver type and resolver can not be null");
+        }
+        this.valueResolvers = valueResolvers.with(type, resolver);
+        this.constantFolder = null;
+        return this;
+    }
+
+    /**
+     * Configures incremental flushing of the output.
+     * <p>
+     * When set, output is buffered and handed to the writer in chunks, each followed by a flush of the writer, so
+     * large outputs reach their destination while the template is still executing and only about the threshold is
+     * held in memory. A chunk is emitted at the end of the first {@code range} iteration after at least
+     * {@code flushThreshold} characters have been buffered, so chunks end on record boundaries, or as soon as twice
+     * the threshold is buffered. This also applies to {@link #execute(OutputSink, Object)}, which uses a threshold
+     * of 8192 characters when none is set.
+     *
+     * @param flushThreshold number of characters buffered before output is flushed, or {@code 0} (default) to write
+     *                       output directly without flushing
+     * @return this template
+     * @throws IllegalArgumentException if the threshold is negative
+     * @since 0.11.0
+     */
+    public Template withFlushThreshold(int flushThreshold) {
+        if (flushThreshold < 0) {
+            throw new IllegalArgumentException("flush threshold can not be negative");
+        }
+        this.flushThreshold = flushThreshold;
+        return this;
+    }
+
+    /**
+     * Configures parallel rendering of large {@code range} loops.
+     * <p>
+     * When enabled, a range over a {@link java.util.RandomAccess} list, an array or an integer with at least 128
+     * iterations, whose body has no {@code break}, is split into chunks of iterations rendered on the common
+     * {@link java.util.concurrent.ForkJoinPool} into separate buffers. The chunks are written in order, so the
+     * output is the same as when rendered sequentially. A few chunks are rendered ahead of the output, which bounds
+     * the memory used. Ranges nested in a parallel range, and ranges over other sources, are rendered sequentially.
+     * <p>
+     * Variables declared in a range body are scoped to the iteration, so iterations only depend on each other
+     * through what functions, value resolvers and data accessors do: these must be thread-safe for parallel ranges.
+     * When an iteration fails, the execution fails with the first error raised, which is not necessarily the error
+     * of the earliest failing iteration.
+     *
+     * @param parallelRange {@code true} to render large ranges in parallel, {@code false} (default) to render every
+     *                      range on the executing thread
+     * @return this template
+     * @since 0.11.0
+     */
+    public Template withParallelRange(boolean parallelRange) {
+        this.parallelRange = parallelRange;
+        return this;
+    }
+
+    /**
+     * Configures concurrent rendering of sibling {@code {{template}}} invocations on the default asynchronous
+     * executor, which uses virtual threads on Java 21 and later and the common
+     * {@link java.util.concurrent.ForkJoinPool} otherwise.
+     *
+     * @param parallelTemplates {@code true} to render sibling templates concurrently, {@code false} (default) to
+     *                          render them in turn
+     * @return this template
+     * @see #withParallelTemplates(java.util.concurrent.Executor)
+     * @since 0.11.0
+     */
+    public Template withParallelTemplates(boolean parallelTemplates) {
+        return withParallelTemplates(parallelTemplates ? AsyncSupport.defaultExecutor() : null);
+    }
+
+    /**
+     * Configures concurrent rendering of sibling {@code {{template}}} invocations on the given executor.
+     * <p>
+     * When a block invokes two or more templates, such as the sections of a page layout, the invocations whose
+     * argument does not use variables are started on the executor as the block is entered. Each renders into its
+     * own buffer, and the outputs are written in document order, so the output is the same as when rendered in
+     * turn, while the time spent in slow data access, such as {@link Lazy} values, overlaps. An invocation the
+     * executor has not started by the time its output is needed is rendered on the executing thread. Templates
+     * invoked from a concurrently rendered template are rendered in turn.
+     * <p>
+     * Functions, value resolvers and data accessors used by the invoked templates must be thread-safe. When an
+     * invocation fails, the execution fails with the first error raised.
+     * <p>
+     * Example:
+     * <pre>{@code
+     * template.parse("{{template \"header\" .}}{{template \"feed\" .}}{{template \"sidebar\" .}}");
+     * template.withParallelTemplates(executor);
+     * }</pre>
+     *
+     * @param executor renders template invocations, {@code null} (default) to render them in turn
+     * @return this template
+     * @since 0.11.0
+     */
+    public Template withParallelTemplates(java.util.concurrent.Executor executor) {
+        this.parallelTemplateExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Configures a cache of the output of {@code {{template}}} invocations.
+     * <p>
+     * Invocations of the templates the cache has a key function for write the cached output for the key of their
+     * argument when there is one, instead of executing the template, and store their output otherwise. The cache
+     * is shared with copies of this template and can be shared with other templates, as long as templates with the
+     * same name render the same output.
+     *
+     * @param fragmentCache cache of template output, {@code null} (default) to execute every invocation
+     * @return this template
+     * @see FragmentCache
+     * @since 0.11.0
+     */
+    public Template withFragmentCache(FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+        return this;
+    }
+
+    /**
+     * Configures limits on the resources each execution can use.
+     * <p>
+     * An execution that writes too much output, executes too many nodes, nests {@code {{template}}} invocations too
+     * deeply or runs for too long ends with a {@link TemplateLimitExceededException}. Limits apply to every way of
+     * executing the template, each execution and each item of a batch counting separately.
+     *
+     * @param executionLimits limits of each execution, {@code null} (default) for none
+     * @return this template
+     * @see ExecutionLimits
+     * @since 0.11.0
+     */
+    public Template withExecutionLimits(ExecutionLimits executionLimits) {
+        this.executionLimits = executionLimits;
+        return this;
+    }
+
+    /**
+     * Reports the duration, output length and failure of each execution to the metrics.
+     *
+     * @param metrics receives the measurements, {@code null} (default) for none
+     * @return this template
+     * @see #withMetrics(TemplateMetrics, int)
+     * @since 0.11.0
+     */
+    public Template withMetrics(TemplateMetrics metrics) {
+        return withMetrics(metrics, 0);
+    }
+
+    /**
+     * Reports the duration, output length and failure of each execution to the metrics, and the time spent in each
+     * action, block and {@code {{template}}} invocation of sampled executions.
+     * <p>
+     * Execution metrics cost two clock reads per execution. Node timing costs two clock reads per node, so it is
+     * enabled for one in {@code nodeSampling} executions, picked at random; executions that are not sampled do not
+     * pay for it. Nodes are reported with their line and column in the template source.
+     *
+     * @param metrics      receives the measurements, {@code null} (default) for none
+     * @param nodeSampling one in this many executions reports node times, {@code 1} for all of them, {@code 0} for
+     *                     none
+     * @return this template
+     * @throws IllegalArgumentException if the sampling is negative
+     * @see MetricsRecorder
+     * @since 0.11.0
+     */
+    public Template withMetrics(TemplateMetrics metrics, int nodeSampling) {
+        if (nodeSampling < 0) {
+            throw new IllegalArgumentException("node sampling can not be negative");
+        }
+        this.metrics = metrics;
+        this.nodeSampling = nodeSampling;
+        return this;
+    }
+
+    /**
+     * Configures whether the constant parts of templates are pre-rendered.
+     * <p>
+     * When enabled (default), the parts of a template whose output does not depend on the data are rendered once,
+     * on the first execution after parsing, and written as plain text afterwards. Constant parts are text and
+     * comments, actions calling built-in functions other than {@code call} with literal arguments, such as
+     * {@code {{print "v" 2}}}, {@code if} blocks with a constant condition and constant branches, and
+     * {@code {{template}}} invocations of templates made only of constant parts, with a literal or no argument.
+     * Custom functions are never pre-rendered, as they may depend on more than their arguments. A constant part
+     * whose rendering fails is left to fail at execution time.
+     *
+     * @param constantFolding {@code true} to pre-render constant parts (default), {@code false} to execute every
+     *                        node
+     * @return this template
+     * @since 0.11.0
+     */
+    public Template withConstantFolding(boolean constantFolding) {
+        this.constantFolding = constantFolding;
+        return this;
+    }
+
     /**
      * Applies Go-style string options supported by gotemplate4j.
      * <p>
-     * Supported values are {@code missingkey=default}, {@code missingkey=zero}, and {@code missingkey=error}.
+     * Supported values are {@code missingkey=default}, {@code missingkey=zero}, and {@code missingkey=error}, and
+     * {@code parallelrange=true} and {@code parallelrange=false} for {@link #withParallelRange(boolean)}.
      *
      * @param option option string
      * @return this template
@@ -319,6 +634,17 @@ public class Template {
         String key = option.substring(0, pos);
         String value = option.substring(pos + 1);
 
+        if ("parallelrange".equals(key)) {
+            switch (value) {
+                case "true":
+                    return withParallelRange(true);
+                case "false":
+                    return withParallelRange(false);
+                default:
+                    throw new IllegalArgumentException("unsupported option: " + option);
+            }
+        }
+
         if ("missingkey".equals(key)) {
             switch (value) {
                 case "default":
@@ -389,6 +715,67 @@ public class Template {
         return Collections.unmodifiableList(templates);
     }
 
+    /**
+     * Returns the data paths the template can read, found by analyzing the parsed template without executing it.
+     * <p>
+     * Useful to fetch or serialize only the data a template renders. Paths are relative to the data the template is
+     * executed with, such as {@code User.Name}, and include the paths read by the templates it invokes. The
+     * analysis follows dot through {@code range}, {@code with} and {@code {{template}}}, and variables through
+     * their declarations; elements of ranged values are denoted by {@code []}, such as {@code Items[].Price}.
+     * <p>
+     * A path is reported for every field the template evaluates, including values it only passes to
+     * {@code range}, {@code with} or another template. A reported value that is printed or passed to a function
+     * may be used as a whole. Fields of values that do not come from the data as such, like function results or
+     * range keys, can not be traced and are not reported.
+     *
+     * @return sorted, unmodifiable set of data paths
+     * @throws TemplateNotFoundException if the template has not been parsed
+     * @since 0.11.0
+     */
+    public Set<String> dataPaths() throws TemplateNotFoundException {
+        requireTemplate(name);
+        return Collections.unmodifiableSet(new DataPathAnalyzer(nodes).analyze(name));
+    }
+
+    /**
+     * Specializes the template for the static part of its data.
+     * <p>
+     * When part of the data is fixed for many executions, such as the name, branding and messages of a tenant, the
+     * template can be evaluated against it once. Every field under one of the static paths, accessed as
+     * {@code .Path} outside {@code range} and {@code with} blocks or as {@code $.Path} anywhere, is replaced by its
+     * value in the static data, and {@code if} blocks whose condition is such a field keep only the selected branch.
+     * With constant folding enabled, the actions that became constant are rendered into text on the first execution,
+     * so executing the residual template only does the work that depends on the remaining data.
+     * <p>
+     * The residual template is executed with the full data, or with data that only holds the dynamic fields: static
+     * fields are not read from it anymore. Templates invoked with {@code {{template}}} are not specialized, and
+     * fields that can not be evaluated against the static data are left for the execution.
+     * <p>
+     * Example:
+     * <pre>{@code
+     * Template tenantTemplate = template.specialize(tenantData, Set.of("Tenant", "Messages"));
+     * tenantTemplate.execute(writer, requestData);
+     * }</pre>
+     *
+     * @param staticData  data holding the static fields
+     * @param staticPaths names of the static fields, such as {@code "Tenant"}, or dotted paths such as
+     *                    {@code "Locale.Messages"}
+     * @return a new template set whose root template is specialized, this template is left unchanged
+     * @throws TemplateNotFoundException if the template has not been parsed
+     * @throws IllegalArgumentException  if the static paths are null
+     * @since 0.11.0
+     */
+    public Template specialize(Object staticData, Set<String> staticPaths) throws TemplateNotFoundException {
+        if (staticPaths == null) {
+            throw new IllegalArgumentException("static paths can not be null");
+        }
+        requireTemplate(name);
+        Specializer specializer = new Specializer(newExecutor(), staticData, new HashSet<>(staticPaths));
+        Template specialized = new Template(this);
+        specialized.nodes.put(name, specializer.specialize((ListNode) nodes.get(name)));
+        return specialized;
+    }
+
     /**
      * Returns the currently configured missing-key policy.
      *
@@ -413,6 +800,116 @@ public class Template {
         return mapKeySorting;
     }
 
+    /**
+     * Returns whether contextual escaping is applied to parsed templates.
+     *
+     * @return {@code true} if actions are escaped by their HTML context, {@code false} (default) otherwise
+     * @since 0.11.0
+     */
+    public boolean contextualEscaping() {
+        return contextualEscaping;
+    }
+
+    /**
+     * Returns whether class metadata is shared with all other templates in the process.
+     *
+     * @return {@code true} if the process-wide metadata is used (default), {@code false} otherwise
+     * @since 0.11.0
+     */
+    public boolean sharedClassMetadata() {
+        return classMetadataCache == ClassMetadataCache.shared();
+    }
+
+    /**
+     * Returns the registered value resolvers by type, in registration order.
+     *
+     * @return unmodifiable map of value resolvers
+     * @since 0.11.0
+     */
+    public Map<Class<?>, ValueResolver<?>> valueResolvers() {
+        return valueResolvers.asMap();
+    }
+
+    /**
+     * Returns the number of characters buffered before output is flushed.
+     *
+     * @return flush threshold, {@code 0} (default) if output is written directly
+     * @since 0.11.0
+     */
+    public int flushThreshold() {
+        return flushThreshold;
+    }
+
+    /**
+     * Returns whether large {@code range} loops are rendered in parallel.
+     *
+     * @return {@code true} if large ranges are rendered in parallel, {@code false} (default) otherwise
+     * @since 0.11.0
+     */
+    public boolean parallelRange() {
+        return parallelRange;
+    }
+
+    /**
+     * Returns whether sibling {@code {{template}}} invocations are rendered concurrently.
+     *
+     * @return {@code true} if sibling templates are rendered concurrently, {@code false} (default) otherwise
+     * @since 0.11.0
+     */
+    public boolean parallelTemplates() {
+        return parallelTemplateExecutor != null;
+    }
+
+    /**
+     * Returns the cache of the output of {@code {{template}}} invocations.
+     *
+     * @return the fragment cache, or {@code null} (default) if invocations are not cached
+     * @since 0.11.0
+     */
+    public FragmentCache fragmentCache() {
+        return fragmentCache;
+    }
+
+    /**
+     * Returns the limits on the resources each execution can use.
+     *
+     * @return execution limits, or {@code null} (default) if executions are not limited
+     * @since 0.11.0
+     */
+    public ExecutionLimits executionLimits() {
+        return executionLimits;
+    }
+
+    /**
+     * Returns the metrics receiving the measurements of each execution.
+     *
+     * @return the metrics, or {@code null} (default) if executions are not measured
+     * @since 0.11.0
+     */
+    public TemplateMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns how often executions report the time spent in each node.
+     *
+     * @return one in this many executions reports node times, {@code 0} (default) for none
+     * @since 0.11.0
+     */
+    public int nodeSampling() {
+        return nodeSampling;
+    }
+
+    /**
+     * Returns whether the constant parts of templates are pre-rendered.
+     *
+     * @return {@code true} if constant parts are pre-rendered (default), {@code false} otherwise
+     * @since 0.11.0
+     */
+    public boolean constantFolding() {
+        return constantFolding;
+    }
+
     private List<String> orderedTemplateNames() {
         List<String> names = new ArrayList<>();
         if (nodes.containsKey(name)) {
@@ -455,8 +952,20 @@ public class Template {
      * @see #parse(Reader)
      */
     public void parse(String template) throws TemplateParseException {
+        Object event = JfrSupport.AVAILABLE ? TemplateEvents.beginParse() : null;
         Parser parser = new Parser(functions, leftDelimiter, rightDelimiter, leftComment, rightComment);
-        Map<String, Node> nodes = parser.parse(name, template);
+        Map<String, Node> nodes;
+        try {
+            nodes = parser.parse(name, template);
+        } catch (TemplateParseException e) {
+            if (event != null) {
+                TemplateEvents.commitParse(event, name, template.length(), 0, true);
+            }
+            throw e;
+        }
+        if (contextualEscaping) {
+            new ContextualEscaper(functions).escape(nodes);
+        }
         nodes.forEach((name, node) -> {
             if (!this.nodes.containsKey(name)) {
                 this.nodes.put(name, node);
@@ -467,6 +976,10 @@ public class Template {
                 this.nodes.put(name, node);
             }
         });
+        constantFolder = null;
+        if (event != null) {
+            TemplateEvents.commitParse(event, name, template.length(), nodes.size(), false);
+        }
     }
 
     private boolean isNotEmpty(Node currentNode) {
@@ -903,14 +1416,295 @@ public class Template {
      * @see #execute(Writer, Object)
      */
     public void executeTemplate(Writer writer, String name, Object data) throws TemplateException, IOException {
-        Node rootNode = nodes.get(name);
-        if (rootNode == null) {
-            throw new TemplateNotFoundException(String.format("Template '%s' not found.", name));
+        if (flushThreshold > 0) {
+            executeChunked(OutputSink.of(writer), name, data, flushThreshold);
+            return;
         }
 
-        Executor executor = new Executor(nodes, functions, missingKeyPolicy, mapKeySorting, classMetadataCache);
+        Executor executor = newExecutor(name);
         executor.execute(name, data, writer);
     }
 
+    /**
+     * Executes the template like {@link #execute(Writer, Object)} while measuring the time spent and the bytes
+     * allocated in each action, block and template invocation, and returns where they went by template line.
+     * <p>
+     * Every node is measured, which slows the execution down, so profiling is meant for finding the expensive parts
+     * of a template during development rather than for production traffic; use {@link #withMetrics(TemplateMetrics,
+     * int)} to sample executions instead. Ranges and template invocations are rendered on the current thread, and
+     * the output is written as it is produced, regardless of the parallel and flush settings.
+     * <p>
+     * Example:
+     * <pre>{@code
+     * TemplateProfile profile = template.profile(new StringWriter(), data);
+     * System.out.println(profile);
+     * }</pre>
+     *
+     * @param writer Writer to receive the template output
+     * @param data   The data object for template variable substitution
+     * @return the measurements of the execution
+     * @throws TemplateException         if template execution fails
+     * @throws IOException               if writing to the writer fails
+     * @throws TemplateNotFoundException if the template has not been parsed
+     * @since 0.11.0
+     */
+    public TemplateProfile profile(Writer writer, Object data) throws TemplateException, IOException {
+        NodeProfiler profiler = new NodeProfiler();
+        Executor executor = newExecutor(name)
+                .withParallelRange(null)
+                .withParallelTemplates(null)
+                .withObserver(profiler);
+        profiler.start();
+        try {
+            executor.execute(name, data, writer);
+        } finally {
+            profiler.stop();
+        }
+        return new TemplateProfile(name, profiler);
+    }
+
+    /**
+     * Executes the template with the provided data and streams the result to a sink in chunks.
+     * <p>
+     * Output is handed to the sink in chunks of about the {@link #withFlushThreshold(int) flush threshold}, 8192
+     * characters unless configured, preferably at the end of {@code range} iterations. Combined with {@code range}
+     * over an {@link java.util.Iterator} or {@link java.util.stream.Stream}, this renders outputs of any size in
+     * constant memory. The sink applies back-pressure by blocking in {@link OutputSink#write(char[], int, int)}.
+     * <p>
+     * Example:
+     * <pre>{@code
+     * try (Stream<Row> rows = repository.streamAll()) {
+     *     template.withFlushThreshold(64 * 1024)
+     *             .execute(OutputSink.of(response.getWriter()), Collections.singletonMap("Rows", rows));
+     * }
+     * }</pre>
+     *
+     * @param sink receives the output
+     * @param data The data object for template variable substitution
+     * @throws TemplateException         if template execution fails
+     * @throws IOException               if the sink fails
+     * @throws TemplateNotFoundException if the template has not been parsed
+     * @throws IllegalArgumentException  if the sink is null
+     * @since 0.11.0
+     */
+    public void execute(OutputSink sink, Object data) throws TemplateException, IOException {
+        if (sink == null) {
+            throw new IllegalArgumentException("sink can not be null");
+        }
+        executeChunked(sink, name, data, flushThreshold > 0 ? flushThreshold : DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * Renders the template to a string on the default asynchronous executor.
+     * <p>
+     * The default executor runs each render on a new virtual thread on Java 21 and later, and on the common
+     * {@link java.util.concurrent.ForkJoinPool} otherwise.
+     *
+     * @param data The data object for template variable substitution
+     * @return future completed with the output, or exceptionally with the {@link TemplateException} of a failed
+     * execution
+     * @see #executeAsync(Object, java.util.concurrent.Executor)
+     * @since 0.11.0
+     */
+    public CompletableFuture<String> executeAsync(Object data) {
+        return executeAsync(data, AsyncSupport.defaultExecutor());
+    }
+
+    /**
+     * Renders the template to a string on the given executor.
+     * <p>
+     * Cancelling the returned future stops the execution at the next template node. The template must not be
+     * modified, by parsing or configuration, until the future completes.
+     * <p>
+     * Example:
+     * <pre>{@code
+     * template.executeAsync(data, executor)
+     *         .thenAccept(response::send);
+     * }</pre>
+     *
+     * @param data     The data object for template variable substitution
+     * @param executor runs the execution
+     * @return future completed with the output, or exceptionally with the {@link TemplateException} of a failed
+     * execution
+     * @throws IllegalArgumentException if the executor is null
+     * @since 0.11.0
+     */
+    public CompletableFuture<String> executeAsync(Object data, java.util.concurrent.Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor can not be null");
+        }
+        return AsyncSupport.submit(executor, future -> {
+            StringWriter writer = new StringWriter();
+            newExecutor(name).execute(name, data, writer, future::isCancelled);
+            return writer.toString();
+        });
+    }
+
+    /**
+     * Streams the template output to a sink on the given executor.
+     * <p>
+     * Output is handed to the sink in chunks as by {@link #execute(OutputSink, Object)}. Cancelling the returned
+     * future stops the execution at the next template node. The template must not be modified, by parsing or
+     * configuration, until the future completes.
+     *
+     * @param sink     receives the output
+     * @param data     The data object for template variable substitution
+     * @param executor runs the execution
+     * @return future completed when all output has been handed to the sink, or exceptionally with the
+     * {@link TemplateException} or {@link IOException} of a failed execution
+     * @throws IllegalArgumentException if the sink or executor is null
+     * @since 0.11.0
+     */
+    public CompletableFuture<Void> executeAsync(OutputSink sink, Object data, java.util.concurrent.Executor executor) {
+        if (sink == null || executor == null) {
+            throw new IllegalArgumentException("sink and executor can not be null");
+        }
+        int threshold = flushThreshold > 0 ? flushThreshold : DEFAULT_FLUSH_THRESHOLD;
+        return AsyncSupport.submit(executor, future -> {
+            executeChunked(sink, name, data, threshold, future::isCancelled);
+            return null;
+        });
+    }
+
+    /**
+     * Returns a publisher of the template output on the default asynchronous executor.
+     *
+     * @param data The data object for template variable substitution
+     * @return publisher of output chunks
+     * @see #executePublisher(Object, java.util.concurrent.Executor)
+     * @since 0.11.0
+     */
+    public Flow.Publisher<CharBuffer> executePublisher(Object data) {
+        return executePublisher(data, AsyncSupport.defaultExecutor());
+    }
+
+    /**
+     * Returns a publisher of the template output in chunks, for non-blocking servers.
+     * <p>
+     * Each subscriber starts its own execution on the executor. Output is published in chunks of about the
+     * {@link #withFlushThreshold(int) flush threshold}, 8192 characters unless configured, and only as requested:
+     * while the subscriber has no outstanding demand the execution waits, on the executor's thread, so a slow
+     * consumer pauses rendering instead of output being buffered. Cancelling the subscription stops the execution
+     * at the next template node. The subscriber gets {@code onComplete} after the last chunk, or {@code onError}
+     * with the {@link TemplateException} or {@link IOException} of a failed execution.
+     * <p>
+     * Chunks are characters; encoding them is up to the subscriber. The template must not be modified, by parsing
+     * or configuration, while executions are running.
+     *
+     * @param data     The data object for template variable substitution
+     * @param executor runs the executions
+     * @return publisher of output chunks
+     * @throws IllegalArgumentException if the executor is null
+     * @since 0.11.0
+     */
+    public Flow.Publisher<CharBuffer> executePublisher(Object data, java.util.concurrent.Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor can not be null");
+        }
+        int threshold = flushThreshold > 0 ? flushThreshold : DEFAULT_FLUSH_THRESHOLD;
+        return new ChunkPublisher((sink, cancelled) -> executeChunked(sink, name, data, threshold, cancelled),
+                executor);
+    }
+
+    /**
+     * Executes the template once for each data item, handing each output to the sink.
+     * <p>
+     * Meant for rendering the same template for many items, such as one message per recipient. The setup that
+     * {@link #execute(Writer, Object)} repeats for every call, the executor state and an output buffer, is done once
+     * for the whole batch. A failed item does not stop the batch: its error is passed to
+     * {@link BatchSink#failed(int, Object, TemplateException)} and the batch goes on with the next item.
+     * <p>
+     * Example:
+     * <pre>{@code
+     * int failed = template.executeBatch(recipients, (index, recipient, output) ->
+     *         mailer.send((Recipient) recipient, output.toString()));
+     * }</pre>
+     *
+     * @param data the data items, iterated once
+     * @param sink receives the output of each item
+     * @return number of items whose execution failed
+     * @throws TemplateNotFoundException if the template has not been parsed
+     * @throws IOException               if the sink fails, which ends the batch
+     * @throws IllegalArgumentException  if the data or sink is null
+     * @see #executeBatch(Iterable, BatchSink, int)
+     * @since 0.11.0
+     */
+    public int executeBatch(Iterable<?> data, BatchSink sink) throws TemplateNotFoundException, IOException {
+        return executeBatch(data, sink, 1);
+    }
+
+    /**
+     * Executes the template once for each data item on several threads, handing each output to the sink.
+     * <p>
+     * The calling thread renders items along with {@code parallelism - 1} workers on the default asynchronous
+     * executor, each with its own executor state and output buffer. Workers take the next item as they finish the
+     * previous one, so the iterator is used from several threads, one at a time, and the sink is called
+     * concurrently and out of order. The template must not be modified while the batch runs.
+     *
+     * @param data        the data items, iterated once
+     * @param sink        receives the output of each item, must be thread-safe when parallelism is above 1
+     * @param parallelism number of threads rendering items, {@code 1} to render on the calling thread only
+     * @return number of items whose execution failed
+     * @throws TemplateNotFoundException if the template has not been parsed
+     * @throws IOException               if the sink fails, which ends the batch
+     * @throws IllegalArgumentException  if the data or sink is null, or the parallelism is not positive
+     * @since 0.11.0
+     */
+    public int executeBatch(Iterable<?> data, BatchSink sink, int parallelism)
+            throws TemplateNotFoundException, IOException {
+        if (data == null || sink == null) {
+            throw new IllegalArgumentException("data and sink can not be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        requireTemplate(name);
+        return new BatchExecution(this::newExecutor, name, data, sink)
+                .run(parallelism, AsyncSupport.defaultExecutor());
+    }
+
+    private void executeChunked(OutputSink sink, String name, Object data, int threshold)
+            throws TemplateException, IOException {
+        executeChunked(sink, name, data, threshold, null);
+    }
+
+    private void executeChunked(OutputSink sink, String name, Object data, int threshold, BooleanSupplier cancelled)
+            throws TemplateException, IOException {
+        Executor executor = newExecutor(name);
+        ChunkedWriter writer = new ChunkedWriter(sink, threshold);
+        executor.execute(name, data, writer, cancelled);
+        writer.flush();
+    }
+
+    private Executor newExecutor(String name) throws TemplateNotFoundException {
+        requireTemplate(name);
+        return newExecutor();
+    }
+
+    private void requireTemplate(String name) throws TemplateNotFoundException {
+        if (nodes.get(name) == null) {
+            throw new TemplateNotFoundException(String.format("Template '%s' not found.", name));
+        }
+    }
+
+    private Executor newExecutor() {
+        return new Executor(nodes, functions, missingKeyPolicy, mapKeySorting, classMetadataCache, valueResolvers)
+                .withParallelRange(parallelRange ? ForkJoinPool.commonPool() : null)
+                .withParallelTemplates(parallelTemplateExecutor)
+                .withFragmentStore(fragmentCache != null ? fragmentCache.store() : null)
+                .withConstantFolder(constantFolding ? getConstantFolder() : null)
+                .withLimits(executionLimits)
+                .withMetrics(metrics, nodeSampling);
+    }
+
+    private ConstantFolder getConstantFolder() {
+        ConstantFolder folder = constantFolder;
+        if (folder == null) {
+            folder = new ConstantFolder(nodes, functions, valueResolvers);
+            constantFolder = folder;
+        }
+        return folder;
+    }
+
 
 }
@@ -0,0 +1,36 @@
+package io.github.verils.gotemplate;
+
+/**
+ * Exception thrown when a template execution exceeds one of its {@link ExecutionLimits}.
+ *
+ * @see Template#withExecutionLimits(ExecutionLimits)
+ * @since 0.11.0
+ */
+public class TemplateLimitExceededException extends TemplateExecutionException {
+
+    /**
+     * The limits an execution can exceed.
+     */
+    public enum Limit {
+        OUTPUT,
+        STEPS,
+        TEMPLATE_DEPTH,
+        TIMEOUT
+    }
+
+    private final Limit limit;
+
+    public TemplateLimitExceededException(Limit limit, String message) {
+        super(message);
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the limit that was exceeded.
+     *
+     * @return exceeded limit
+     */
+    public Limit getLimit() {
+        return limit;
+    }
+}
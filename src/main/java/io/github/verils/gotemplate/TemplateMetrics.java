@@ -0,0 +1,40 @@
+package io.github.verils.gotemplate;
+
+/**
+ * Receives measurements of template executions, to be recorded or forwarded to a metrics system.
+ * <p>
+ * Every execution reports its duration, output length and failure when it ends. Executions sampled for node
+ * timing also report the time spent in each action, {@code if}, {@code range} and {@code with} block and
+ * {@code {{template}}} invocation, identified by its position in the template source. Node times include the
+ * nodes nested in them. Implementations are called from the executing threads, possibly concurrently, and should
+ * return quickly.
+ *
+ * @see Template#withMetrics(TemplateMetrics, int)
+ * @see MetricsRecorder
+ * @since 0.11.0
+ */
+public interface TemplateMetrics {
+
+    /**
+     * Called when an execution ends.
+     *
+     * @param templateName  name of the executed template
+     * @param durationNanos duration of the execution in nanoseconds
+     * @param outputLength  number of characters written
+     * @param failure       exception the execution ended with, {@code null} if it succeeded
+     */
+    void executed(String templateName, long durationNanos, long outputLength, Throwable failure);
+
+    /**
+     * Called when a node of a sampled execution has been executed. Nodes rendered on other threads by parallel
+     * rendering are not reported.
+     *
+     * @param templateName  name of the template the node belongs to
+     * @param line          line of the node in the template source, starting at 1
+     * @param column        column of the node in the template source, starting at 1
+     * @param action        the node as written in the template, such as {@code {{range .Orders}}}
+     * @param durationNanos time spent in the node, including nested nodes, in nanoseconds
+     */
+    default void nodeExecuted(String templateName, int line, int column, String action, long durationNanos) {
+    }
+}
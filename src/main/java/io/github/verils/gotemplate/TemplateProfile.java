@@ -0,0 +1,216 @@
+package io.github.verils.gotemplate;
+
+import io.github.verils.gotemplate.internal.NodeObserver;
+import io.github.verils.gotemplate.internal.NodeProfiler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Where the time and memory of one execution went, per action, block and template invocation of the templates.
+ * <p>
+ * Each entry locates a node by template name, line and column, and tells how many times it was executed, its total
+ * time and allocations including the nodes it executed, and its self time and allocations excluding them. Entries
+ * are sorted by total time, most expensive first, and {@link #toString()} formats them as a report:
+ * <pre>
+ * Profile of template page: 12.500 ms, 2,048,000 bytes allocated
+ *  total%  self%   total ms    self ms    calls  total bytes   self bytes  location  action
+ *   80.0%  12.0%     10.000      1.500        1    1,638,400      204,800  page:212:5  {{range .Orders}}
+ * </pre>
+ * Allocations are measured when the runtime counts the bytes allocated by each thread, as HotSpot does, and are
+ * zero otherwise.
+ *
+ * @see Template#profile(java.io.Writer, Object)
+ * @since 0.11.0
+ */
+public final class TemplateProfile {
+
+    private final String templateName;
+    private final long totalNanos;
+    private final long allocatedBytes;
+    private final List<Entry> entries;
+
+    TemplateProfile(String templateName, NodeProfiler profiler) {
+        this.templateName = templateName;
+        this.totalNanos = profiler.getTotalTime();
+        this.allocatedBytes = profiler.getAllocatedBytes();
+        List<Entry> entries = new ArrayList<>();
+        for (NodeProfiler.Sample sample : profiler.getSamples()) {
+            entries.add(new Entry(sample, totalNanos));
+        }
+        entries.sort(Comparator.comparingLong((Entry entry) -> entry.totalNanos).reversed()
+                .thenComparing(Entry::templateName).thenComparingInt(Entry::line).thenComparingInt(Entry::column));
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns the name of the executed template.
+     *
+     * @return template name
+     */
+    public String templateName() {
+        return templateName;
+    }
+
+    /**
+     * Returns the time of the execution.
+     *
+     * @return total time
+     */
+    public Duration totalTime() {
+        return Duration.ofNanos(totalNanos);
+    }
+
+    /**
+     * Returns the bytes allocated by the execution.
+     *
+     * @return allocated bytes, {@code 0} if allocations are not measured
+     */
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns whether allocations are measured by this runtime.
+     *
+     * @return {@code true} if allocated bytes are reported
+     */
+    public boolean allocationsMeasured() {
+        return NodeProfiler.isAllocationMeasured();
+    }
+
+    /**
+     * Returns the executed nodes, most expensive first.
+     *
+     * @return unmodifiable list of entries
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Returns the report of the execution, one line per executed node, most expensive first.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Profile of template %s: %.3f ms, %,d bytes allocated%n",
+                templateName, totalNanos / 1e6, allocatedBytes));
+        report.append(String.format("%7s %6s %10s %10s %8s %12s %12s  %s  %s%n",
+                "total%", "self%", "total ms", "self ms", "calls", "total bytes", "self bytes", "location", "action"));
+        for (Entry entry : entries) {
+            report.append(String.format("%6.1f%% %5.1f%% %10.3f %10.3f %8d %,12d %,12d  %s:%d:%d  %s%n",
+                    entry.share() * 100, share(entry.selfNanos, totalNanos) * 100, entry.totalNanos / 1e6,
+                    entry.selfNanos / 1e6, entry.count, entry.allocatedBytes, entry.selfAllocatedBytes,
+                    entry.templateName, entry.line, entry.column, entry.action));
+        }
+        return report.toString();
+    }
+
+    private static double share(long nanos, long totalNanos) {
+        return totalNanos > 0 ? Math.min(1, (double) nanos / totalNanos) : 0;
+    }
+
+    /**
+     * Measurements of one node, an action, block or template invocation at a position of a template.
+     */
+    public static final class Entry {
+
+        private final String templateName;
+        private final int line;
+        private final int column;
+        private final String action;
+        private final long count;
+        private final long totalNanos;
+        private final long selfNanos;
+        private final long allocatedBytes;
+        private final long selfAllocatedBytes;
+        private final long executionNanos;
+
+        private Entry(NodeProfiler.Sample sample, long executionNanos) {
+            this.templateName = sample.getTemplateName();
+            this.line = sample.getNode().getLine();
+            this.column = sample.getNode().getColumn();
+            this.action = NodeObserver.describe(sample.getNode());
+            this.count = sample.getCount();
+            this.totalNanos = sample.getTotalTime();
+            this.selfNanos = sample.getSelfTime();
+            this.allocatedBytes = sample.getTotalBytes();
+            this.selfAllocatedBytes = sample.getSelfBytes();
+            this.executionNanos = executionNanos;
+        }
+
+        public String templateName() {
+            return templateName;
+        }
+
+        public int line() {
+            return line;
+        }
+
+        public int column() {
+            return column;
+        }
+
+        /**
+         * Returns the node as written in the template, such as {@code {{range .Orders}}}.
+         *
+         * @return the action text
+         */
+        public String action() {
+            return action;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns the time spent in the node, including the nodes it executed.
+         *
+         * @return total time
+         */
+        public Duration totalTime() {
+            return Duration.ofNanos(totalNanos);
+        }
+
+        /**
+         * Returns the time spent in the node itself, excluding the nodes it executed.
+         *
+         * @return self time
+         */
+        public Duration selfTime() {
+            return Duration.ofNanos(selfNanos);
+        }
+
+        /**
+         * Returns the bytes allocated in the node, including the nodes it executed.
+         *
+         * @return allocated bytes, {@code 0} if allocations are not measured
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * Returns the bytes allocated in the node itself, excluding the nodes it executed.
+         *
+         * @return allocated bytes, {@code 0} if allocations are not measured
+         */
+        public long selfAllocatedBytes() {
+            return selfAllocatedBytes;
+        }
+
+        /**
+         * Returns the share of the execution time spent in the node, including the nodes it executed.
+         *
+         * @return share between 0 and 1
+         */
+        public double share() {
+            return TemplateProfile.share(totalNanos, executionNanos);
+        }
+    }
+}
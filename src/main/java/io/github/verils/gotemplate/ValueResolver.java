@@ -0,0 +1,92 @@
+package io.github.verils.gotemplate;
+
+import java.util.Iterator;
+
+/**
+ * Gives templates direct access to a custom data model, such as a JSON tree, protobuf messages or generic records,
+ * so values do not have to be converted to maps or beans before rendering.
+ * <p>
+ * A resolver is registered for a type with {@link Template#withValueResolver(Class, ValueResolver)} and is used for
+ * every non-null value that is an instance of that type. Only {@link #getField(Object, String)} has to be
+ * implemented; the other operations fall back to the built-in behavior unless overridden.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * Template template = new Template("test")
+ *         .withValueResolver(JsonObject.class, (object, name) ->
+ *                 object.has(name) ? object.get(name) : ValueResolver.MISSING);
+ * template.parse("{{.user.name}}");
+ * }</pre>
+ * <p>
+ * Resolvers are called concurrently when a template is executed from several threads, and must be thread safe.
+ *
+ * @param <T> type of the values resolved
+ * @since 0.11.0
+ */
+@FunctionalInterface
+public interface ValueResolver<T> {
+
+    /**
+     * Returned by {@link #getField(Object, String)} for fields the value does not have, and by
+     * {@link #index(Object, Object)} when the built-in {@code index} should be used.
+     */
+    Object MISSING = new Object() {
+        @Override
+        public String toString() {
+            return "MISSING";
+        }
+    };
+
+    /**
+     * Resolves a field access {@code .name} on a value.
+     * <p>
+     * A missing field is handled like a missing map key, according to the template's {@link MissingKeyPolicy}.
+     *
+     * @param value the value, never {@code null}
+     * @param name  the field name as written in the template
+     * @return the field value, which may be {@code null}, or {@link #MISSING} if the value has no such field
+     */
+    Object getField(T value, String name);
+
+    /**
+     * Returns the elements {@code range} iterates over, with the element position as the index.
+     *
+     * @param value the value, never {@code null}
+     * @return an iterator over the elements, or {@code null} to range over the value as if there was no resolver
+     */
+    default Iterator<?> iterator(T value) {
+        return null;
+    }
+
+    /**
+     * Returns whether the value is true in {@code if}, {@code with}, {@code and} and {@code or}, and false for
+     * {@code not}.
+     *
+     * @param value the value, never {@code null}
+     * @return the truth of the value, {@code true} by default
+     */
+    default boolean isTrue(T value) {
+        return true;
+    }
+
+    /**
+     * Returns the result of the {@code len} function.
+     *
+     * @param value the value, never {@code null}
+     * @return the length, or a negative number to use the built-in {@code len}
+     */
+    default int length(T value) {
+        return -1;
+    }
+
+    /**
+     * Returns the result of the {@code index} function for one key.
+     *
+     * @param value the value, never {@code null}
+     * @param key   the key or position
+     * @return the element, or {@link #MISSING} to use the built-in {@code index}
+     */
+    default Object index(T value, Object key) {
+        return MISSING;
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.verils.gotemplate.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs template executions asynchronously.
+ * <p>
+ * The default executor runs each execution on a new virtual thread when the runtime has them (Java 21 and later),
+ * so blocking data access and blocking sinks do not hold a platform thread, and uses the common fork-join pool
+ * otherwise. Virtual threads are looked up reflectively, as the library targets Java 11.
+ */
+public final class AsyncSupport {
+
+    private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+
+    private AsyncSupport() {
+    }
+
+    public static Executor defaultExecutor() {
+        return DEFAULT_EXECUTOR;
+    }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return ForkJoinPool.commonPool();
+        }
+    }
+
+    /**
+     * A task producing a result, which should stop early once cancellation is requested.
+     */
+    @FunctionalInterface
+    public interface CancellableTask<T> {
+        T run(CompletableFuture<T> future) throws Exception;
+    }
+
+    /**
+     * Submits a task and returns a future completed with its result or failure. Cancelling the future before the
+     * task starts skips it; cancelling it afterwards is visible to the task through {@link CompletableFuture#isCancelled()}.
+     *
+     * @param executor runs the task
+     * @param task     the task
+     * @param <T>      result type
+     * @return future of the result, failed with the {@link java.util.concurrent.RejectedExecutionException} if the
+     * executor does not accept the task
+     */
+    public static <T> CompletableFuture<T> submit(Executor executor, CancellableTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(task.run(future));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
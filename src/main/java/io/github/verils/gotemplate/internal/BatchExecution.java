@@ -0,0 +1,147 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.BatchSink;
+import io.github.verils.gotemplate.TemplateException;
+import io.github.verils.gotemplate.TemplateExecutionException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executes a template once per item of a batch.
+ * <p>
+ * Each worker keeps one {@link Executor} and one output buffer for all the items it renders, and takes the next
+ * item from the shared iterator when it is done with the previous one, so items are spread over the workers however
+ * long they take. A failed item, including one whose data throws while it is rendered, is reported to the sink and
+ * the worker goes on; a failure of the sink or of the iterator stops every worker, interrupting the executions in
+ * progress at their next node.
+ */
+public final class BatchExecution {
+
+    private final Supplier<Executor> executors;
+    private final String name;
+    private final Iterator<?> items;
+    private final BatchSink sink;
+
+    private final Object lock = new Object();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    // Guarded by lock
+    private int nextIndex;
+
+    private volatile Throwable abortCause;
+
+    public BatchExecution(Supplier<Executor> executors, String name, Iterable<?> items, BatchSink sink) {
+        this.executors = executors;
+        this.name = name;
+        this.items = items.iterator();
+        this.sink = sink;
+    }
+
+    /**
+     * Runs the batch on the calling thread and up to {@code parallelism - 1} workers of the executor, and returns
+     * once every item has been handled.
+     *
+     * @return number of items whose execution failed
+     * @throws IOException if the sink failed
+     */
+    public int run(int parallelism, java.util.concurrent.Executor threads) throws IOException {
+        CountDownLatch workers = new CountDownLatch(parallelism - 1);
+        for (int i = 1; i < parallelism; i++) {
+            try {
+                threads.execute(() -> {
+                    try {
+                        work();
+                    } finally {
+                        workers.countDown();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // The other workers take over its share
+                workers.countDown();
+            }
+        }
+        work();
+
+        try {
+            workers.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(new InterruptedIOException("interrupted while waiting for batch workers"));
+        }
+
+        Throwable cause = abortCause;
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (cause != null) {
+            throw new IOException("batch execution failed", cause);
+        }
+        return failures.get();
+    }
+
+    private void work() {
+        try {
+            Executor executor = executors.get();
+            StringWriter writer = new StringWriter();
+            StringBuffer output = writer.getBuffer();
+            while (true) {
+                int index;
+                Object item;
+                synchronized (lock) {
+                    if (abortCause != null || !items.hasNext()) {
+                        return;
+                    }
+                    item = items.next();
+                    index = nextIndex++;
+                }
+
+                output.setLength(0);
+                TemplateException failure = null;
+                try {
+                    executor.execute(name, item, writer, this::isAborted);
+                } catch (TemplateException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    // Thrown by the data of this item, such as a failing accessor, lazy value or iterator
+                    failure = new TemplateExecutionException(
+                            String.format("error executing template %s: %s", name, e.getMessage()), e);
+                }
+                if (failure != null) {
+                    if (isAborted()) {
+                        return;
+                    }
+                    failures.incrementAndGet();
+                    sink.failed(index, item, failure);
+                    continue;
+                }
+                if (isAborted()) {
+                    return;
+                }
+                sink.accept(index, item, output);
+            }
+        } catch (Throwable e) {
+            abort(e);
+        }
+    }
+
+    private boolean isAborted() {
+        return abortCause != null;
+    }
+
+    private void abort(Throwable cause) {
+        synchronized (lock) {
+            if (abortCause == null) {
+                abortCause = cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.OutputSink;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.CharBuffer;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Publisher of the output of a template execution in chunks.
+ * <p>
+ * The publisher is cold: every subscriber gets its own execution, started on the executor when it subscribes.
+ * The execution thread hands each chunk to the subscriber only when it has demand, and waits for more demand
+ * otherwise, so a slow subscriber pauses the execution instead of output piling up in memory. All signals to a
+ * subscriber come from its execution thread, after {@code onSubscribe}.
+ */
+public final class ChunkPublisher implements Flow.Publisher<CharBuffer> {
+
+    /**
+     * Executes the template into a sink, stopping once the condition holds.
+     */
+    @FunctionalInterface
+    public interface Execution {
+        void execute(OutputSink sink, BooleanSupplier cancelled) throws Exception;
+    }
+
+    private final Execution execution;
+    private final Executor executor;
+
+    public ChunkPublisher(Execution execution, Executor executor) {
+        this.execution = execution;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        ChunkSubscription subscription = new ChunkSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        try {
+            executor.execute(subscription::run);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            subscriber.onError(e);
+        }
+    }
+
+    private final class ChunkSubscription implements Flow.Subscription, OutputSink {
+
+        private final Flow.Subscriber<? super CharBuffer> subscriber;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition demanded = lock.newCondition();
+
+        // Guarded by lock
+        private long demand;
+        private boolean cancelled;
+        private IllegalArgumentException invalidRequest;
+
+        ChunkSubscription(Flow.Subscriber<? super CharBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            lock.lock();
+            try {
+                if (n <= 0) {
+                    // Reactive Streams rule 3.9, signalled by the execution thread once it stops
+                    if (invalidRequest == null) {
+                        invalidRequest = new IllegalArgumentException("non-positive request: " + n);
+                    }
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                demanded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                demanded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isStopped() {
+            lock.lock();
+            try {
+                return cancelled || invalidRequest != null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void write(char[] chunk, int offset, int length) throws IOException {
+            lock.lock();
+            try {
+                while (demand == 0 && !cancelled && invalidRequest == null) {
+                    demanded.await();
+                }
+                if (cancelled || invalidRequest != null) {
+                    throw new IOException("subscription cancelled");
+                }
+                demand--;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for demand");
+            } finally {
+                lock.unlock();
+            }
+
+            // The writer reuses its buffer, each chunk gets its own copy
+            char[] copy = new char[length];
+            System.arraycopy(chunk, offset, copy, 0, length);
+            subscriber.onNext(CharBuffer.wrap(copy));
+        }
+
+        void run() {
+            Throwable failure = null;
+            try {
+                if (!isStopped()) {
+                    execution.execute(this, this::isStopped);
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+
+            IllegalArgumentException invalidRequest;
+            boolean cancelled;
+            lock.lock();
+            try {
+                invalidRequest = this.invalidRequest;
+                cancelled = this.cancelled;
+                this.cancelled = true;
+            } finally {
+                lock.unlock();
+            }
+
+            if (invalidRequest != null && !cancelled) {
+                subscriber.onError(invalidRequest);
+            } else if (cancelled) {
+                return;
+            } else if (failure != null) {
+                subscriber.onError(failure);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.OutputSink;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writer that hands output to an {@link OutputSink} in chunks.
+ * <p>
+ * Output is buffered until the executor reaches a flush point, the end of a {@code range} iteration, with at least
+ * {@code threshold} characters buffered, so chunks end on record boundaries. A single iteration that writes more
+ * than twice the threshold is emitted as soon as the buffer is full, so memory stays bounded by the threshold. The
+ * sink is flushed after every chunk.
+ */
+public final class ChunkedWriter extends Writer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final OutputSink sink;
+    private final int threshold;
+    private final int capacity;
+
+    private char[] buffer;
+    private int count;
+
+    /**
+     * @param sink      destination of the chunks
+     * @param threshold number of buffered characters at which a flush point emits a chunk, must be positive
+     */
+    public ChunkedWriter(OutputSink sink, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("flush threshold must be positive");
+        }
+        this.sink = sink;
+        this.threshold = threshold;
+        this.capacity = (int) Math.min(2L * threshold, Integer.MAX_VALUE - 8);
+        this.buffer = new char[Math.min(capacity, INITIAL_CAPACITY)];
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (!reserve(len)) {
+            sink.write(cbuf, off, len);
+            sink.flush();
+            return;
+        }
+        System.arraycopy(cbuf, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if (!reserve(len)) {
+            char[] chars = new char[len];
+            str.getChars(off, off + len, chars, 0);
+            sink.write(chars, 0, len);
+            sink.flush();
+            return;
+        }
+        str.getChars(off, off + len, buffer, count);
+        count += len;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        reserve(1);
+        buffer[count++] = (char) c;
+    }
+
+    /**
+     * Emits the buffered output if it reached the threshold. Called by the executor at the end of each
+     * {@code range} iteration.
+     */
+    public void flushPoint() throws IOException {
+        if (count >= threshold) {
+            flush();
+        }
+    }
+
+    /**
+     * Emits the buffered output, if any, and flushes the sink.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            sink.write(buffer, 0, count);
+            count = 0;
+        }
+        sink.flush();
+    }
+
+    /**
+     * Flushes the remaining output, the sink itself is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Makes room for {@code len} more characters, emitting the buffer first if they do not fit.
+     *
+     * @return {@code false} if the characters do not fit even in an empty buffer and must be written directly
+     */
+    private boolean reserve(int len) throws IOException {
+        if (count + len > capacity) {
+            flush();
+            if (len > capacity) {
+                return false;
+            }
+        }
+        if (count + len > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, Math.max(2L * buffer.length, count + len)));
+        }
+        return true;
+    }
+}
@@ -6,67 +6,229 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Unified cache entry for class metadata.
  * <p>
- * This class consolidates all reflection-based metadata for a single class into one
- * immutable object, eliminating redundant scans and enabling fast-fail optimizations.
+ * This class consolidates all reflection-based metadata for a single class into one object. Nothing is scanned up
+ * front: template field accesses are resolved one identifier at a time by {@link #getMember(String)}, and every
+ * result, including misses, is memoized. The full scans (BeanInfo, all property descriptors, all public methods
+ * and fields) are only computed when requested, which the executor does to build error messages.
  * <p>
  * Performance benefits:
  * <ul>
- *   <li>Single comprehensive scan vs 3-4 separate scans</li>
- *   <li>Better CPU cache locality: related data in single object</li>
- *   <li>Invalid lookups eliminated: classes without annotations pay zero annotation scan cost</li>
+ *   <li>No {@link Introspector} call when rendering: getters are resolved with {@link Class#getMethod}</li>
+ *   <li>Only the identifiers a template actually reads are resolved, each once per class</li>
+ *   <li>Classes without annotations pay a single declared-member scan for {@code @TemplateField}</li>
  * </ul>
  */
 public class ClassMetadata {
-    // Indexed data
-    private final BeanInfo beanInfo;
-    private final Map<String, AccessibleObject> annotatedMembers;
-    private final Map<String, PropertyDescriptor> propertyIndex;  // original + Go-style names
-    private final Set<String> publicMethodNames;
-    private final Set<String> publicFieldNames;
+
+    private static final Object MISSING = new Object();
+
+    private final Class<?> clazz;
+
+    // Resolved template members by identifier, MISSING for identifiers that resolve to nothing
+    private final Map<String, Object> members = new ConcurrentHashMap<>();
+
+    // Lazily computed full scans
+    private volatile Map<String, AccessibleObject> annotatedMembers;
+    private volatile BeanInfo beanInfo;
+    private volatile Map<String, PropertyDescriptor> propertyIndex;  // original + Go-style names
+    private volatile Set<String> publicMethodNames;
+    private volatile Set<String> publicFieldNames;
+    private volatile Map<String, Method> recordComponents;  // component name -> accessor, empty if not a record
+    private volatile Map<String, MethodHandle> recordAccessors;  // component + Go-style names -> bound accessor
 
     /**
-     * Constructor: One-time comprehensive scan of the class.
-     * <p>
-     * Performs a single pass through the class hierarchy to collect all reflection-based
-     * metadata including BeanInfo, annotations, property descriptors, public methods,
-     * and public fields. This consolidated approach eliminates redundant scans and
-     * enables fast-fail optimizations in the Executor.
+     * Creates the metadata of a class. No reflection happens until the metadata is queried.
      *
      * @param clazz The class to introspect
-     * @throws IllegalArgumentException if BeanInfo cannot be obtained for the class
      */
     ClassMetadata(Class<?> clazz) {
-        // Scan BeanInfo
+        this.clazz = clazz;
+    }
+
+    /**
+     * Resolves the member a template field access {@code .identifier} reads on this class.
+     * <p>
+     * Candidates are tried in the order the executor has always used:
+     * <ol>
+     *   <li>a field or public no-arg method annotated with {@link TemplateField} of that name</li>
+     *   <li>a bean property getter, by property name or its Go-style capitalized form</li>
+     *   <li>a record component accessor, by component name or its Go-style capitalized form</li>
+     *   <li>a public no-arg method of that name</li>
+     *   <li>a public field of that name, then of its Go-style capitalized form</li>
+     * </ol>
+     * The result is memoized, so each identifier is resolved once per class.
+     *
+     * @param identifier the template field name
+     * @return the {@link Field} or {@link Method} to read, or {@code null} if the class has no such member
+     */
+    public AccessibleObject getMember(String identifier) {
+        Object member = members.get(identifier);
+        if (member == null) {
+            member = resolveMember(identifier);
+            members.put(identifier, member != null ? member : MISSING);
+        }
+        return member != MISSING ? (AccessibleObject) member : null;
+    }
+
+    /**
+     * Returns the accessor of a record component by component name or Go-style capitalized name.
+     * <p>
+     * The component table is built once per record class, with every canonical accessor bound to a
+     * {@link MethodHandle} of type {@code (Object)Object}, so reading a component is a single
+     * {@code invokeExact}. A name is only bound to a component when {@link #getMember(String)} resolves it to the
+     * component's accessor, so the resolution order is the same; names resolving to an annotated member, a bean
+     * getter such as {@code getX()}, or another member are left to {@link #getMember(String)}.
+     *
+     * @param identifier the template field name
+     * @return the accessor, or {@code null} if the class is not a record or has no such component
+     */
+    public MethodHandle getRecordAccessor(String identifier) {
+        Map<String, MethodHandle> recordAccessors = this.recordAccessors;
+        if (recordAccessors == null) {
+            recordAccessors = getRecordComponents().isEmpty() ? Collections.emptyMap() : buildRecordAccessors();
+            this.recordAccessors = recordAccessors;
+        }
+        return recordAccessors.get(identifier);
+    }
+
+    private Map<String, MethodHandle> buildRecordAccessors() {
+        Map<String, MethodHandle> accessors = new HashMap<>();
+        for (Map.Entry<String, Method> component : getRecordComponents().entrySet()) {
+            MethodHandle handle = unreflect(component.getValue());
+            if (handle == null) {
+                continue;
+            }
+            String name = component.getKey();
+            if (component.getValue().equals(getMember(name))) {
+                accessors.put(name, handle);
+            }
+            String goStyleName = toGoStyleName(name);
+            if (component.getValue().equals(getMember(goStyleName))) {
+                accessors.putIfAbsent(goStyleName, handle);
+            }
+        }
+        return accessors;
+    }
+
+    private Map<String, Method> getRecordComponents() {
+        Map<String, Method> recordComponents = this.recordComponents;
+        if (recordComponents == null) {
+            recordComponents = RecordSupport.getComponentAccessors(clazz);
+            this.recordComponents = recordComponents;
+        }
+        return recordComponents;
+    }
+
+    private static MethodHandle unreflect(Method accessor) {
         try {
-            this.beanInfo = Introspector.getBeanInfo(clazz);
-        } catch (IntrospectionException e) {
-            throw new IllegalArgumentException(
-                    String.format("Failed to get BeanInfo for class '%s'", clazz.getName()), e);
+            if (!Modifier.isPublic(accessor.getDeclaringClass().getModifiers())) {
+                accessor.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflect(accessor)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException | RuntimeException e) {
+            // Not accessible from here, e.g. a record in a module that is not open to us: use reflection
+            return null;
+        }
+    }
+
+    private AccessibleObject resolveMember(String identifier) {
+        AccessibleObject annotatedMember = getAnnotatedMember(identifier);
+        if (annotatedMember != null) {
+            return annotatedMember;
+        }
+
+        Method readMethod = findReadMethod(identifier);
+        if (readMethod != null) {
+            return readMethod;
+        }
+
+        Method accessor = getRecordComponents().get(uncapitalize(identifier));
+        if (accessor != null) {
+            return accessor;
+        }
+
+        Method method = findPublicMethod(identifier);
+        if (method != null && !"getClass".equals(identifier)) {
+            return method;
+        }
+
+        Field field = findPublicField(identifier);
+        if (field == null) {
+            String goStyleName = toGoStyleName(identifier);
+            if (!goStyleName.equals(identifier)) {
+                field = findPublicField(goStyleName);
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Find the getter of the bean property the identifier names, following the JavaBeans naming rules used by
+     * {@link Introspector}: a property {@code fooBar} is read by {@code getFooBar()} or, for {@code boolean},
+     * {@code isFooBar()}, and a property is also reachable by its capitalized name {@code FooBar}.
+     */
+    private Method findReadMethod(String identifier) {
+        String capitalized = toGoStyleName(identifier);
+        for (String suffix : capitalized.equals(identifier)
+                ? new String[]{identifier} : new String[]{capitalized, identifier}) {
+            String propertyName = Introspector.decapitalize(suffix);
+            if ("class".equals(propertyName)
+                    || !identifier.equals(propertyName) && !identifier.equals(toGoStyleName(propertyName))) {
+                continue;
+            }
+
+            Method isMethod = findPublicMethod("is" + suffix);
+            if (isMethod != null && isMethod.getReturnType() == boolean.class && !Modifier.isStatic(isMethod.getModifiers())) {
+                return isMethod;
+            }
+            Method getMethod = findPublicMethod("get" + suffix);
+            if (getMethod != null && getMethod.getReturnType() != void.class && !Modifier.isStatic(getMethod.getModifiers())) {
+                return getMethod;
+            }
         }
+        return null;
+    }
 
-        // Scan annotations
-        this.annotatedMembers = scanAnnotations(clazz);
+    private Method findPublicMethod(String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
 
-        // Build property index
-        this.propertyIndex = buildPropertyIndex(beanInfo);
+    private Field findPublicField(String name) {
+        try {
+            return clazz.getField(name);
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
 
-        // Scan public methods
-        this.publicMethodNames = scanPublicMethods(clazz);
+    private static String uncapitalize(String name) {
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
 
-        // Scan public fields
-        this.publicFieldNames = scanPublicFields(clazz);
+    private static String toGoStyleName(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
     }
 
     /**
@@ -129,8 +291,7 @@ public class ClassMetadata {
             map.put(pd.getName(), pd);
 
             // Also index by Go-style name (first letter capitalized)
-            String goStyle = Character.toUpperCase(pd.getName().charAt(0)) + pd.getName().substring(1);
-            map.putIfAbsent(goStyle, pd);
+            map.putIfAbsent(toGoStyleName(pd.getName()), pd);
         }
         return map;
     }
@@ -181,13 +342,24 @@ public class ClassMetadata {
     /**
      * Gets the BeanInfo for this class.
      * <p>
-     * Returns the cached BeanInfo object that was collected during construction.
-     * This provides access to property descriptors, method descriptors, and other
-     * JavaBeans metadata without requiring repeated introspection.
+     * Introspects the class on first call and caches the result. This provides access to
+     * property descriptors, method descriptors, and other JavaBeans metadata without
+     * requiring repeated introspection.
      *
      * @return the cached BeanInfo object
+     * @throws IllegalArgumentException if BeanInfo cannot be obtained for the class
      */
     public BeanInfo getBeanInfo() {
+        BeanInfo beanInfo = this.beanInfo;
+        if (beanInfo == null) {
+            try {
+                beanInfo = Introspector.getBeanInfo(clazz);
+            } catch (IntrospectionException e) {
+                throw new IllegalArgumentException(
+                        String.format("Failed to get BeanInfo for class '%s'", clazz.getName()), e);
+            }
+            this.beanInfo = beanInfo;
+        }
         return beanInfo;
     }
 
@@ -202,6 +374,11 @@ public class ClassMetadata {
      * @return map of template names to their annotated members
      */
     public Map<String, AccessibleObject> getAnnotatedMembers() {
+        Map<String, AccessibleObject> annotatedMembers = this.annotatedMembers;
+        if (annotatedMembers == null) {
+            annotatedMembers = scanAnnotations(clazz);
+            this.annotatedMembers = annotatedMembers;
+        }
         return annotatedMembers;
     }
 
@@ -216,7 +393,7 @@ public class ClassMetadata {
      * @return the annotated Field or Method, or {@code null} if not found
      */
     public AccessibleObject getAnnotatedMember(String identifier) {
-        return annotatedMembers.get(identifier);
+        return getAnnotatedMembers().get(identifier);
     }
 
     /**
@@ -230,6 +407,11 @@ public class ClassMetadata {
      * @return map of property names to their PropertyDescriptors
      */
     public Map<String, PropertyDescriptor> getPropertyDescriptors() {
+        Map<String, PropertyDescriptor> propertyIndex = this.propertyIndex;
+        if (propertyIndex == null) {
+            propertyIndex = buildPropertyIndex(getBeanInfo());
+            this.propertyIndex = propertyIndex;
+        }
         return propertyIndex;
     }
 
@@ -244,60 +426,68 @@ public class ClassMetadata {
      * @return the PropertyDescriptor, or {@code null} if not found
      */
     public PropertyDescriptor getPropertyDescriptor(String identifier) {
-        return propertyIndex.get(identifier);
+        return getPropertyDescriptors().get(identifier);
     }
 
     /**
      * Checks if the class has a public method with the specified name.
      * <p>
-     * Performs a fast lookup in the pre-scanned set of public method names.
-     * This is used by the Executor to quickly determine if a field access
-     * can be resolved as a method call before attempting reflection.
+     * Performs a lookup in the set of public method names, which is scanned
+     * on first use.
      *
      * @param identifier the method name to check
      * @return {@code true} if a public no-arg method with this name exists
      */
     public boolean hasPublicMethod(String identifier) {
-        return publicMethodNames.contains(identifier);
+        return getPublicMethodNames().contains(identifier);
     }
 
     /**
      * Gets the set of public method names.
      * <p>
-     * Returns all public no-arg method names (excluding {@code getClass}) that were
-     * discovered during class introspection. These methods can be invoked directly
+     * Returns all public no-arg method names (excluding {@code getClass}), scanned
+     * on first call. These methods can be invoked directly
      * in template field chains using Go-style notation.
      *
      * @return set of public no-arg method names
      */
     public Set<String> getPublicMethodNames() {
+        Set<String> publicMethodNames = this.publicMethodNames;
+        if (publicMethodNames == null) {
+            publicMethodNames = scanPublicMethods(clazz);
+            this.publicMethodNames = publicMethodNames;
+        }
         return publicMethodNames;
     }
 
     /**
      * Checks if the class has a public field with the specified name.
      * <p>
-     * Performs a fast lookup in the pre-scanned set of public field names.
-     * This is used by the Executor to quickly determine if a field access
-     * can be resolved as a direct field reference before attempting reflection.
+     * Performs a lookup in the set of public field names, which is scanned
+     * on first use.
      *
      * @param fieldName the field name to check
      * @return {@code true} if a public field with this name exists
      */
     public boolean hasPublicField(String fieldName) {
-        return this.publicFieldNames.contains(fieldName);
+        return getPublicFieldNames().contains(fieldName);
     }
 
     /**
      * Gets the set of public field names.
      * <p>
-     * Returns all public field names that were discovered during class introspection.
+     * Returns all public field names, scanned on first call.
      * These fields can be accessed directly in templates using Go-style notation
      * (e.g., {{.fieldName}}).
      *
      * @return set of public field names
      */
     public Set<String> getPublicFieldNames() {
+        Set<String> publicFieldNames = this.publicFieldNames;
+        if (publicFieldNames == null) {
+            publicFieldNames = scanPublicFields(clazz);
+            this.publicFieldNames = publicFieldNames;
+        }
         return publicFieldNames;
     }
 }
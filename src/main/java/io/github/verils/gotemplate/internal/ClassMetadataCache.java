@@ -0,0 +1,64 @@
+package io.github.verils.gotemplate.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store of {@link ClassMetadata} by class.
+ * <p>
+ * The {@link #shared() shared} store is backed by a {@link ClassValue}, so metadata is computed once per class for
+ * the whole process and is released together with the class when its class loader is unloaded. An
+ * {@link #isolated() isolated} store keeps metadata in a map owned by a single template instead.
+ */
+public abstract class ClassMetadataCache {
+
+    private static final ClassMetadataCache SHARED = new ClassMetadataCache() {
+
+        private final ClassValue<ClassMetadata> metadata = new ClassValue<ClassMetadata>() {
+            @Override
+            protected ClassMetadata computeValue(Class<?> type) {
+                return new ClassMetadata(type);
+            }
+        };
+
+        @Override
+        public ClassMetadata get(Class<?> type) {
+            return metadata.get(type);
+        }
+    };
+
+    /**
+     * Returns the process-wide store shared by all templates.
+     *
+     * @return shared store
+     */
+    public static ClassMetadataCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Creates a store holding metadata for a single owner, released when the owner is garbage collected.
+     *
+     * @return new isolated store
+     */
+    public static ClassMetadataCache isolated() {
+        return new ClassMetadataCache() {
+
+            private final Map<Class<?>, ClassMetadata> metadata = new ConcurrentHashMap<>();
+
+            @Override
+            public ClassMetadata get(Class<?> type) {
+                return metadata.computeIfAbsent(type, ClassMetadata::new);
+            }
+        };
+    }
+
+    /**
+     * Returns the metadata of a class, computing it on first access.
+     *
+     * @param type class to introspect
+     * @return metadata of the class
+     * @throws IllegalArgumentException if the class can not be introspected
+     */
+    public abstract ClassMetadata get(Class<?> type);
+}
@@ -0,0 +1,167 @@
+package io.github.verils.gotemplate.internal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * The builtin comparison functions {@code eq}, {@code ne}, {@code lt}, {@code le}, {@code gt} and {@code ge}.
+ * <p>
+ * The executor dispatches two operand comparisons here directly, without building an argument array or going
+ * through the varargs {@link io.github.verils.gotemplate.Function} interface. Integral operands are compared as
+ * {@code long}, so large values keep their precision, and strings and identical references are decided before any
+ * numeric conversion.
+ */
+public enum Comparison {
+
+    EQ("eq"), NE("ne"), LT("lt"), LE("le"), GT("gt"), GE("ge");
+
+    private final String identifier;
+
+    Comparison(String identifier) {
+        this.identifier = identifier;
+    }
+
+    /**
+     * Returns the comparison for a builtin function name.
+     *
+     * @param identifier function name
+     * @return the comparison, or {@code null} if the name is not a comparison function
+     */
+    public static Comparison of(String identifier) {
+        switch (identifier) {
+            case "eq":
+                return EQ;
+            case "ne":
+                return NE;
+            case "lt":
+                return LT;
+            case "le":
+                return LE;
+            case "gt":
+                return GT;
+            case "ge":
+                return GE;
+            default:
+                return null;
+        }
+    }
+
+    public String identifier() {
+        return identifier;
+    }
+
+    /**
+     * Compare two operands.
+     *
+     * @throws IllegalArgumentException if an ordering is requested for operands that can not be ordered
+     */
+    public boolean test(Object a, Object b) {
+        switch (this) {
+            case EQ:
+                return equal(a, b);
+            case NE:
+                return !equal(a, b);
+            case LT:
+                return compare(a, b) < 0;
+            case LE:
+                return compare(a, b) <= 0;
+            case GT:
+                return compare(a, b) > 0;
+            default:
+                return compare(a, b) >= 0;
+        }
+    }
+
+    /**
+     * Evaluate the comparison over all arguments: {@code eq} and {@code ne} compare the first argument with each
+     * of the others, the orderings compare each adjacent pair.
+     *
+     * @throws IllegalArgumentException if there are less than two arguments, or operands can not be ordered
+     */
+    public boolean testAll(Object... args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException(identifier + " requires at least 2 arguments");
+        }
+        for (int i = 1; i < args.length; i++) {
+            if (!test(this == EQ || this == NE ? args[0] : args[i - 1], args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Equality as used by {@code eq}: numbers are equal when their values are, other values by
+     * {@link Object#equals(Object)}.
+     */
+    public static boolean equal(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a instanceof String) {
+            return a.equals(b);
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return compareNumbers((Number) a, (Number) b) == 0;
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * Ordering as used by {@code lt}, {@code le}, {@code gt} and {@code ge}, defined for numbers and strings.
+     *
+     * @throws IllegalArgumentException if the operands can not be ordered
+     */
+    public static int compare(Object a, Object b) {
+        if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b);
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return compareNumbers((Number) a, (Number) b);
+        }
+        throw new IllegalArgumentException("incompatible types for comparison: " +
+                typeName(a) + " and " + typeName(b));
+    }
+
+    private static int compareNumbers(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        if ((isBig(a) || isBig(b)) && isFinite(a) && isFinite(b)) {
+            return toBigDecimal(a).compareTo(toBigDecimal(b));
+        }
+        return Double.compare(a.doubleValue(), b.doubleValue());
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    private static boolean isBig(Number n) {
+        return n instanceof BigDecimal || n instanceof BigInteger;
+    }
+
+    private static boolean isFinite(Number n) {
+        return !(n instanceof Double || n instanceof Float) || Double.isFinite(n.doubleValue());
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof BigDecimal) {
+            return (BigDecimal) n;
+        }
+        if (n instanceof BigInteger) {
+            return new BigDecimal((BigInteger) n);
+        }
+        if (isIntegral(n)) {
+            return BigDecimal.valueOf(n.longValue());
+        }
+        return new BigDecimal(n.toString());
+    }
+
+    private static String typeName(Object value) {
+        return value != null ? value.getClass().getName() : "null";
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.ExecutionLimits;
+import io.github.verils.gotemplate.Function;
+import io.github.verils.gotemplate.Functions;
+import io.github.verils.gotemplate.TemplateException;
+import io.github.verils.gotemplate.internal.ast.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-renders the parts of templates whose output does not depend on the data.
+ * <p>
+ * A node is constant when its output can only depend on literals: text, comments, actions calling built-in
+ * functions other than {@code call} with literal arguments or values of a specialized template, {@code if} blocks
+ * with a constant condition and constant branches, and invocations of templates with a constant body and a constant
+ * or no argument. Each run of constant nodes in a list is rendered once, when the list is first executed, and
+ * replaced by a single text node in the folded copy of the list. The parsed nodes themselves are never modified, so
+ * a folder is only valid for the templates it was created for and is replaced whenever templates are parsed.
+ * <p>
+ * Pre-rendering happens before any limit of the execution is checked, so it runs under limits of its own: a node
+ * whose output takes too many steps or characters to render, such as a deep chain of template invocations, is left
+ * for the execution.
+ */
+public final class ConstantFolder {
+
+    private static final ExecutionLimits RENDER_LIMITS = new ExecutionLimits()
+            .withMaxSteps(10_000)
+            .withMaxOutput(64 * 1024);
+
+    private final Map<String, Node> rootNodes;
+    private final Map<String, Function> functions;
+    private final ValueResolvers valueResolvers;
+
+    private final Map<ListNode, List<Node>> foldedLists = new ConcurrentHashMap<>();
+    private final Map<Node, Boolean> constantNodes = new ConcurrentHashMap<>();
+
+    public ConstantFolder(Map<String, Node> rootNodes, Map<String, Function> functions, ValueResolvers valueResolvers) {
+        this.rootNodes = rootNodes;
+        this.functions = functions;
+        this.valueResolvers = valueResolvers;
+    }
+
+    /**
+     * Returns the nodes of a list with each run of constant nodes replaced by its pre-rendered output.
+     */
+    public List<Node> fold(ListNode listNode) {
+        List<Node> folded = foldedLists.get(listNode);
+        if (folded == null) {
+            folded = computeFolded(listNode);
+            foldedLists.put(listNode, folded);
+        }
+        return folded;
+    }
+
+    private List<Node> computeFolded(ListNode listNode) {
+        List<Node> folded = new ArrayList<>();
+        List<Node> run = new ArrayList<>();
+        StringBuilder output = new StringBuilder();
+        for (Node node : listNode) {
+            String constant = isConstant(node, new HashSet<>()) ? render(node) : null;
+            if (constant != null) {
+                run.add(node);
+                output.append(constant);
+            } else {
+                endRun(folded, run, output);
+                folded.add(node);
+            }
+        }
+        endRun(folded, run, output);
+        return folded;
+    }
+
+    private static void endRun(List<Node> folded, List<Node> run, StringBuilder output) {
+        if (run.size() == 1 && run.get(0) instanceof TextNode) {
+            folded.add(run.get(0));
+        } else if (output.length() > 0) {
+            folded.add(new TextNode(output.toString()));
+        }
+        run.clear();
+        output.setLength(0);
+    }
+
+    /**
+     * Renders a constant node without data.
+     *
+     * @return the output, or {@code null} if rendering fails or exceeds the render limits, leaving the node to the
+     * execution
+     */
+    private String render(Node node) {
+        StringWriter writer = new StringWriter();
+        try {
+            new Executor(rootNodes, functions, null, true, null, valueResolvers)
+                    .writeConstant(writer, node, RENDER_LIMITS);
+        } catch (TemplateException | IOException | RuntimeException e) {
+            return null;
+        }
+        return writer.toString();
+    }
+
+    private boolean isConstant(Node node, Set<String> invokedTemplates) {
+        Boolean constant = constantNodes.get(node);
+        if (constant == null) {
+            constant = computeConstant(node, invokedTemplates);
+            constantNodes.put(node, constant);
+        }
+        return constant;
+    }
+
+    private boolean computeConstant(Node node, Set<String> invokedTemplates) {
+        if (node instanceof TextNode || node instanceof CommentNode) {
+            return true;
+        }
+        if (node instanceof ListNode) {
+            for (Node child : (ListNode) node) {
+                if (!isConstant(child, invokedTemplates)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (node instanceof ActionNode) {
+            return isConstantPipe(((ActionNode) node).getPipeNode());
+        }
+        if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            return isConstantPipe(ifNode.getPipeNode())
+                    && isConstant(ifNode.getIfListNode(), invokedTemplates)
+                    && (ifNode.getElseListNode() == null || isConstant(ifNode.getElseListNode(), invokedTemplates));
+        }
+        if (node instanceof TemplateNode) {
+            TemplateNode templateNode = (TemplateNode) node;
+            Node body = rootNodes.get(templateNode.getName());
+            if (body == null || !invokedTemplates.add(templateNode.getName())) {
+                return false;
+            }
+            try {
+                return (templateNode.getPipeNode() == null || isConstantPipe(templateNode.getPipeNode()))
+                        && isConstant(body, invokedTemplates);
+            } finally {
+                invokedTemplates.remove(templateNode.getName());
+            }
+        }
+        return false;
+    }
+
+    private boolean isConstantPipe(PipeNode pipeNode) {
+        if (pipeNode.getVariableCount() > 0) {
+            return false;
+        }
+        for (CommandNode command : pipeNode.getCommands()) {
+            List<Node> arguments = command.getArguments();
+            if (!(arguments.get(0) instanceof IdentifierNode) && arguments.size() > 1) {
+                return false;
+            }
+            for (Node argument : arguments) {
+                if (!isConstantArgument(argument)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isConstantArgument(Node argument) {
+        if (argument instanceof StringNode || argument instanceof NumberNode || argument instanceof BoolNode) {
+            return true;
+        }
+        if (argument instanceof ConstantNode) {
+            // How nil prints depends on the missing key policy of the execution
+            return ((ConstantNode) argument).getValue() != null;
+        }
+        if (argument instanceof IdentifierNode) {
+            return isPureFunction(((IdentifierNode) argument).getIdentifier());
+        }
+        return argument instanceof PipeNode && isConstantPipe((PipeNode) argument);
+    }
+
+    private boolean isPureFunction(String name) {
+        if (!functions.containsKey(name)) {
+            return ContextualEscaper.FUNCTIONS.containsKey(name);
+        }
+        return !"call".equals(name) && functions.get(name) == Functions.BUILTIN.get(name);
+    }
+}
@@ -0,0 +1,632 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.Function;
+import io.github.verils.gotemplate.Functions;
+import io.github.verils.gotemplate.TemplateParseException;
+import io.github.verils.gotemplate.internal.ast.*;
+import io.github.verils.gotemplate.internal.lang.CharUtils;
+import io.github.verils.gotemplate.internal.lang.EscapeUtils;
+
+import java.util.*;
+
+/**
+ * Parse time pass implementing html/template style contextual auto-escaping.
+ * <p>
+ * The pass walks the parsed tree in document order and tracks, through the text nodes, whether output lands in
+ * HTML text, a tag, an attribute value, a URL, a script or a style block. Every action that prints a value gets the
+ * escaper for its context appended to its pipeline, so execution only runs a table lookup over the printed value.
+ * <p>
+ * The analysis is a simplified form of Go's html/template: branches of {@code if}/{@code with} must end in the same
+ * context, {@code range} bodies must end in the context they start in, and {@code {{template}}} calls are only
+ * allowed in HTML text, since every template is analysed starting from HTML text. Every template must also end in
+ * HTML text, so a call leaves its caller in the context it was called in, whichever definition of the callee is
+ * executed. JavaScript comments and regular expression literals are not tracked.
+ */
+public class ContextualEscaper {
+
+    static final String HTML_ESCAPER = "_html_template_htmlescaper";
+    static final String NOSPACE_ESCAPER = "_html_template_nospaceescaper";
+    static final String NAME_FILTER = "_html_template_htmlnamefilter";
+    static final String JS_VAL_ESCAPER = "_html_template_jsvalescaper";
+    static final String JS_STR_ESCAPER = "_html_template_jsstrescaper";
+    static final String JS_TMPL_ESCAPER = "_html_template_jstmpllitescaper";
+    static final String CSS_ESCAPER = "_html_template_cssescaper";
+    static final String URL_FILTER = "_html_template_urlfilter";
+    static final String URL_NORMALIZER = "_html_template_urlnormalizer";
+    static final String URL_ESCAPER = "_html_template_urlescaper";
+
+    /**
+     * Output for values that are rejected by a filter, matching Go's html/template.
+     */
+    private static final String UNSAFE_VALUE = "ZgotmplZ";
+
+    private static final Set<String> URL_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "action", "archive", "background", "cite", "classid", "codebase", "data", "formaction", "href",
+            "icon", "longdesc", "manifest", "poster", "profile", "src", "srcset", "usemap", "xmlns"));
+
+    /**
+     * Escaper functions referenced by the pipelines this pass rewrites, keyed by their reserved names.
+     */
+    static final Map<String, Function> FUNCTIONS;
+
+    static {
+        Map<String, Function> functions = new HashMap<>();
+        functions.put(HTML_ESCAPER, args -> EscapeUtils.escapeHtml(stringify(args)));
+        functions.put(NOSPACE_ESCAPER, args -> EscapeUtils.escapeHtmlNoSpace(stringify(args)));
+        functions.put(NAME_FILTER, ContextualEscaper::filterAttributeName);
+        functions.put(JS_VAL_ESCAPER, ContextualEscaper::escapeJsValue);
+        functions.put(JS_STR_ESCAPER, args -> EscapeUtils.escapeJsStrict(stringify(args)));
+        functions.put(JS_TMPL_ESCAPER, args -> EscapeUtils.escapeJsTemplate(stringify(args)));
+        functions.put(CSS_ESCAPER, args -> EscapeUtils.escapeCss(stringify(args)));
+        functions.put(URL_FILTER, ContextualEscaper::filterUrl);
+        functions.put(URL_NORMALIZER, args -> EscapeUtils.normalizeUrl(stringify(args)));
+        functions.put(URL_ESCAPER, args -> EscapeUtils.escapeUrlQuery(stringify(args)));
+        FUNCTIONS = Collections.unmodifiableMap(functions);
+    }
+
+    private final Map<String, Function> functions;
+
+    /**
+     * @param functions functions of the templates, to tell the predefined {@code html} escaper from a replacement
+     */
+    public ContextualEscaper(Map<String, Function> functions) {
+        this.functions = functions;
+    }
+
+    /**
+     * Rewrite the action pipelines of all given templates. Every template is analysed starting in HTML text.
+     *
+     * @param nodes parsed templates, keyed by name
+     * @throws TemplateParseException if a template cannot be escaped unambiguously or does not end in HTML text
+     */
+    public void escape(Map<String, Node> nodes) throws TemplateParseException {
+        for (Map.Entry<String, Node> entry : nodes.entrySet()) {
+            Context start = new Context();
+            Context end = escapeNode(entry.getValue(), start);
+            if (!end.equals(start)) {
+                throw new TemplateParseException(String.format(
+                        "contextual escaping: template \"%s\" ends in %s, only HTML text is supported",
+                        entry.getKey(), end));
+            }
+        }
+    }
+
+    private Context escapeNode(Node node, Context context) throws TemplateParseException {
+        if (node instanceof ListNode) {
+            for (Node child : (ListNode) node) {
+                context = escapeNode(child, context);
+            }
+            return context;
+        }
+        if (node instanceof TextNode) {
+            return scan(((TextNode) node).getText(), context);
+        }
+        if (node instanceof ActionNode) {
+            return escapeAction((ActionNode) node, context);
+        }
+        if (node instanceof RangeNode) {
+            RangeNode rangeNode = (RangeNode) node;
+            Context afterBody = escapeNode(rangeNode.getIfListNode(), context);
+            if (!afterBody.equals(context)) {
+                throw new TemplateParseException(String.format(
+                        "contextual escaping: on range loop re-entry: %s differs from %s", afterBody, context));
+            }
+            return escapeBranches("range", rangeNode, context, afterBody);
+        }
+        if (node instanceof BranchNode) {
+            BranchNode branchNode = (BranchNode) node;
+            String name = node instanceof IfNode ? "if" : "with";
+            return escapeBranches(name, branchNode, context, escapeNode(branchNode.getIfListNode(), context));
+        }
+        if (node instanceof TemplateNode && context.state != State.TEXT) {
+            throw new TemplateParseException(String.format(
+                    "contextual escaping: {{template \"%s\"}} called in %s, only HTML text is supported",
+                    ((TemplateNode) node).getName(), context));
+        }
+        return context;
+    }
+
+    private Context escapeBranches(String name, BranchNode branchNode, Context context, Context afterIf)
+            throws TemplateParseException {
+        Context afterElse = branchNode.getElseListNode() != null
+                ? escapeNode(branchNode.getElseListNode(), context)
+                : context;
+        if (!afterIf.equals(afterElse)) {
+            throw new TemplateParseException(String.format(
+                    "contextual escaping: {{%s}} branches end in different contexts: %s, %s", name, afterIf, afterElse));
+        }
+        return afterIf;
+    }
+
+    private Context escapeAction(ActionNode actionNode, Context context) {
+        PipeNode pipeNode = actionNode.getPipeNode();
+        if (pipeNode.getVariableCount() > 0) {
+            // Declarations and assignments print nothing
+            return context;
+        }
+
+        Context next = context.copy();
+        List<String> escapers = new ArrayList<>(2);
+        switch (next.state) {
+            case TAG:
+            case ATTR_NAME:
+            case AFTER_NAME:
+                escapers.add(NAME_FILTER);
+                next.state = State.ATTR_NAME;
+                next.attr = Attr.NORMAL;
+                return append(pipeNode, escapers, next);
+            case BEFORE_VALUE:
+                enterValue(next, Delim.SPACE);
+                break;
+            default:
+                break;
+        }
+
+        switch (next.state) {
+            case URL:
+                if (next.urlPart == UrlPart.NONE) {
+                    escapers.add(URL_FILTER);
+                    next.urlPart = UrlPart.PRE_QUERY;
+                } else if (next.urlPart == UrlPart.PRE_QUERY) {
+                    escapers.add(URL_NORMALIZER);
+                } else {
+                    escapers.add(URL_ESCAPER);
+                }
+                break;
+            case JS:
+                escapers.add(next.jsState == JsState.EXPR ? JS_VAL_ESCAPER
+                        : next.jsState == JsState.TEMPLATE ? JS_TMPL_ESCAPER
+                        : JS_STR_ESCAPER);
+                break;
+            case CSS:
+                escapers.add(CSS_ESCAPER);
+                break;
+            default:
+                break;
+        }
+        if (next.delim == Delim.SPACE) {
+            escapers.add(NOSPACE_ESCAPER);
+        } else if (next.delim != Delim.NONE || escapers.isEmpty()) {
+            escapers.add(HTML_ESCAPER);
+        }
+        return append(pipeNode, escapers, next);
+    }
+
+    private Context append(PipeNode pipeNode, List<String> escapers, Context next) {
+        List<CommandNode> commands = pipeNode.getCommands();
+        Node last = commands.get(commands.size() - 1).getFirstArgument();
+        if (last instanceof IdentifierNode && "html".equals(((IdentifierNode) last).getIdentifier())
+                && functions.get("html") == Functions.BUILTIN.get("html") && escapers.size() == 1 && HTML_ESCAPER.equals(escapers.get(0))) {
+            // Already escaped by the predefined escaper, which is equivalent in this context
+            return next;
+        }
+        for (String escaper : escapers) {
+            CommandNode commandNode = new CommandNode();
+            commandNode.append(new IdentifierNode(escaper));
+            pipeNode.append(commandNode);
+        }
+        return next;
+    }
+
+    private Context scan(String text, Context context) {
+        Context c = context.copy();
+        int i = 0;
+        while (i < text.length()) {
+            i = step(c, text, i);
+        }
+        return c;
+    }
+
+    /**
+     * Consume text starting at {@code i} in context {@code c}, updating the context in place.
+     *
+     * @return the index of the first character not consumed
+     */
+    private int step(Context c, String text, int i) {
+        int length = text.length();
+        switch (c.state) {
+            case TEXT:
+                return stepText(c, text, i);
+            case RCDATA:
+                return stepUntilEndTag(c, text, i, c.element.name().toLowerCase(Locale.ROOT));
+            case COMMENT: {
+                int end = text.indexOf("-->", i);
+                if (end < 0) {
+                    return length;
+                }
+                c.state = State.TEXT;
+                return end + 3;
+            }
+            case TAG: {
+                char ch = text.charAt(i);
+                if (ch == '>') {
+                    return endTag(c, i);
+                }
+                if (CharUtils.isSpace(ch) || ch == '/') {
+                    return i + 1;
+                }
+                int end = i;
+                while (end < length && !isAttributeNameEnd(text.charAt(end))) {
+                    end++;
+                }
+                c.state = State.ATTR_NAME;
+                c.attr = attrOf(text.substring(i, end));
+                return end;
+            }
+            case ATTR_NAME: {
+                char ch = text.charAt(i);
+                if (ch == '=') {
+                    c.state = State.BEFORE_VALUE;
+                    return i + 1;
+                }
+                if (CharUtils.isSpace(ch)) {
+                    c.state = State.AFTER_NAME;
+                    return i + 1;
+                }
+                if (ch == '>' || ch == '/') {
+                    c.state = State.TAG;
+                    c.attr = Attr.NONE;
+                    return i;
+                }
+                return i + 1;
+            }
+            case AFTER_NAME: {
+                char ch = text.charAt(i);
+                if (CharUtils.isSpace(ch)) {
+                    return i + 1;
+                }
+                if (ch == '=') {
+                    c.state = State.BEFORE_VALUE;
+                    return i + 1;
+                }
+                c.state = State.TAG;
+                c.attr = Attr.NONE;
+                return i;
+            }
+            case BEFORE_VALUE: {
+                char ch = text.charAt(i);
+                if (CharUtils.isSpace(ch)) {
+                    return i + 1;
+                }
+                if (ch == '>') {
+                    c.state = State.TAG;
+                    c.attr = Attr.NONE;
+                    return i;
+                }
+                if (ch == '"' || ch == '\'') {
+                    enterValue(c, ch == '"' ? Delim.DOUBLE_QUOTE : Delim.SINGLE_QUOTE);
+                    return i + 1;
+                }
+                enterValue(c, Delim.SPACE);
+                return i;
+            }
+            default:
+                return c.delim != Delim.NONE ? stepAttributeValue(c, text, i) : stepElement(c, text, i);
+        }
+    }
+
+    private int stepText(Context c, String text, int i) {
+        int length = text.length();
+        int lt = text.indexOf('<', i);
+        if (lt < 0) {
+            return length;
+        }
+        if (text.startsWith("<!--", lt)) {
+            c.state = State.COMMENT;
+            return lt + 4;
+        }
+
+        int start = lt + 1;
+        boolean endTag = start < length && text.charAt(start) == '/';
+        if (endTag) {
+            start++;
+        }
+        if (start >= length || !Character.isLetter(text.charAt(start))) {
+            return lt + 1;
+        }
+        int end = start;
+        while (end < length && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '-')) {
+            end++;
+        }
+
+        c.state = State.TAG;
+        c.element = endTag ? Element.NONE : elementOf(text.substring(start, end));
+        return end;
+    }
+
+    private int stepAttributeValue(Context c, String text, int i) {
+        int length = text.length();
+        int end;
+        if (c.delim == Delim.SPACE) {
+            end = i;
+            while (end < length && !CharUtils.isSpace(text.charAt(end)) && text.charAt(end) != '>') {
+                end++;
+            }
+        } else {
+            end = text.indexOf(c.delim == Delim.DOUBLE_QUOTE ? '"' : '\'', i);
+            if (end < 0) {
+                end = length;
+            }
+        }
+
+        stepValueContent(c, text, i, end);
+        if (end == length) {
+            return length;
+        }
+
+        boolean quoted = c.delim != Delim.SPACE;
+        c.state = State.TAG;
+        c.attr = Attr.NONE;
+        c.delim = Delim.NONE;
+        c.urlPart = UrlPart.NONE;
+        c.jsState = JsState.EXPR;
+        return quoted ? end + 1 : end;
+    }
+
+    private int stepElement(Context c, String text, int i) {
+        if (c.state == State.JS) {
+            return stepUntilEndTag(c, text, i, "script");
+        }
+        return stepUntilEndTag(c, text, i, "style");
+    }
+
+    private int stepUntilEndTag(Context c, String text, int i, String element) {
+        int end = indexOfEndTag(text, element, i);
+        stepValueContent(c, text, i, end < 0 ? text.length() : end);
+        if (end < 0) {
+            return text.length();
+        }
+        c.state = State.TAG;
+        c.element = Element.NONE;
+        c.jsState = JsState.EXPR;
+        return end + 2 + element.length();
+    }
+
+    private void stepValueContent(Context c, String text, int start, int end) {
+        if (c.state == State.URL) {
+            for (int i = start; i < end; i++) {
+                char ch = text.charAt(i);
+                if (ch == '?' || ch == '#') {
+                    c.urlPart = UrlPart.QUERY;
+                } else if (c.urlPart == UrlPart.NONE) {
+                    c.urlPart = UrlPart.PRE_QUERY;
+                }
+            }
+        } else if (c.state == State.JS) {
+            for (int i = start; i < end; i++) {
+                char ch = text.charAt(i);
+                if (c.jsState == JsState.EXPR) {
+                    c.jsState = ch == '"' ? JsState.DOUBLE_QUOTE
+                            : ch == '\'' ? JsState.SINGLE_QUOTE
+                            : ch == '`' ? JsState.TEMPLATE
+                            : JsState.EXPR;
+                } else if (ch == '\\') {
+                    i++;
+                } else if (ch == c.jsState.quote) {
+                    c.jsState = JsState.EXPR;
+                }
+            }
+        }
+    }
+
+    private int endTag(Context c, int i) {
+        switch (c.element) {
+            case SCRIPT:
+                c.state = State.JS;
+                c.jsState = JsState.EXPR;
+                break;
+            case STYLE:
+                c.state = State.CSS;
+                break;
+            case TEXTAREA:
+            case TITLE:
+                c.state = State.RCDATA;
+                break;
+            default:
+                c.state = State.TEXT;
+        }
+        c.attr = Attr.NONE;
+        return i + 1;
+    }
+
+    private void enterValue(Context c, Delim delim) {
+        c.delim = delim;
+        switch (c.attr) {
+            case URL:
+                c.state = State.URL;
+                c.urlPart = UrlPart.NONE;
+                break;
+            case JS:
+                c.state = State.JS;
+                c.jsState = JsState.EXPR;
+                break;
+            case CSS:
+                c.state = State.CSS;
+                break;
+            default:
+                c.state = State.ATTR;
+        }
+    }
+
+    private static int indexOfEndTag(String text, String element, int from) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        return lower.indexOf("</" + element, from);
+    }
+
+    private static boolean isAttributeNameEnd(char ch) {
+        return CharUtils.isSpace(ch) || ch == '=' || ch == '>' || ch == '/';
+    }
+
+    private static Attr attrOf(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        int colon = lower.indexOf(':');
+        if (colon >= 0 && !lower.startsWith("xmlns")) {
+            // Namespaced attributes, e.g. xlink:href, behave like their local name
+            lower = lower.substring(colon + 1);
+        }
+        if (lower.startsWith("on")) {
+            return Attr.JS;
+        }
+        if ("style".equals(lower)) {
+            return Attr.CSS;
+        }
+        if (URL_ATTRIBUTES.contains(lower) || lower.startsWith("xmlns")) {
+            return Attr.URL;
+        }
+        return Attr.NORMAL;
+    }
+
+    private static Element elementOf(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "script":
+                return Element.SCRIPT;
+            case "style":
+                return Element.STYLE;
+            case "textarea":
+                return Element.TEXTAREA;
+            case "title":
+                return Element.TITLE;
+            default:
+                return Element.NONE;
+        }
+    }
+
+    /**
+     * The escapers are appended without arguments, so the pipeline value arrives as the last argument, or not at
+     * all when it is {@code null}.
+     */
+    private static String stringify(Object[] args) {
+        Object value = args.length > 0 ? args[args.length - 1] : null;
+        return value != null ? String.valueOf(value) : "";
+    }
+
+    private static Object filterAttributeName(Object[] args) {
+        String name = stringify(args);
+        if (name.isEmpty() || attrOf(name) != Attr.NORMAL) {
+            return UNSAFE_VALUE;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (!Character.isLetterOrDigit(ch) && ch != '-' && ch != '_' && ch != ':') {
+                return UNSAFE_VALUE;
+            }
+        }
+        return name;
+    }
+
+    private static Object escapeJsValue(Object[] args) {
+        Object value = args.length > 0 ? args[args.length - 1] : null;
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return String.valueOf(value);
+        }
+        return '"' + EscapeUtils.escapeJsStrict(String.valueOf(value)) + '"';
+    }
+
+    private static Object filterUrl(Object[] args) {
+        String url = stringify(args);
+        int colon = url.indexOf(':');
+        if (colon >= 0) {
+            int slash = url.indexOf('/');
+            if (slash < 0 || colon < slash) {
+                String scheme = url.substring(0, colon).toLowerCase(Locale.ROOT);
+                if (!"http".equals(scheme) && !"https".equals(scheme) && !"mailto".equals(scheme)) {
+                    return "#" + UNSAFE_VALUE;
+                }
+            }
+        }
+        return EscapeUtils.normalizeUrl(url);
+    }
+
+    private enum State {
+        TEXT, RCDATA, COMMENT, TAG, ATTR_NAME, AFTER_NAME, BEFORE_VALUE, ATTR, URL, JS, CSS
+    }
+
+    private enum Delim {
+        NONE, DOUBLE_QUOTE, SINGLE_QUOTE, SPACE
+    }
+
+    private enum Attr {
+        NONE, NORMAL, URL, JS, CSS
+    }
+
+    private enum Element {
+        NONE, SCRIPT, STYLE, TEXTAREA, TITLE
+    }
+
+    private enum UrlPart {
+        NONE, PRE_QUERY, QUERY
+    }
+
+    private enum JsState {
+        EXPR((char) 0), DOUBLE_QUOTE('"'), SINGLE_QUOTE('\''), TEMPLATE('`');
+
+        private final char quote;
+
+        JsState(char quote) {
+            this.quote = quote;
+        }
+    }
+
+    /**
+     * The output context at a point of the template.
+     */
+    private static final class Context {
+
+        private State state = State.TEXT;
+        private Delim delim = Delim.NONE;
+        private Attr attr = Attr.NONE;
+        private Element element = Element.NONE;
+        private UrlPart urlPart = UrlPart.NONE;
+        private JsState jsState = JsState.EXPR;
+
+        private Context copy() {
+            Context copy = new Context();
+            copy.state = state;
+            copy.delim = delim;
+            copy.attr = attr;
+            copy.element = element;
+            copy.urlPart = urlPart;
+            copy.jsState = jsState;
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Context)) {
+                return false;
+            }
+            Context other = (Context) o;
+            return state == other.state && delim == other.delim && attr == other.attr
+                    && element == other.element && urlPart == other.urlPart && jsState == other.jsState;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(state, delim, attr, element, urlPart, jsState);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("context ").append(state);
+            if (delim != Delim.NONE) {
+                sb.append(' ').append(delim);
+            }
+            if (element != Element.NONE) {
+                sb.append(' ').append(element);
+            }
+            if (urlPart != UrlPart.NONE) {
+                sb.append(' ').append(urlPart);
+            }
+            if (jsState != JsState.EXPR) {
+                sb.append(' ').append(jsState);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.internal.ast.*;
+
+import java.util.*;
+
+/**
+ * Computes the data paths a template can read, without executing it.
+ * <p>
+ * The analysis follows the value of dot and of variables through {@code range} and {@code with} blocks, variable
+ * declarations and {@code {{template}}} invocations. A path is recorded for each field the template evaluates,
+ * relative to the data the analyzed template is executed with. Elements of a ranged value are denoted by
+ * {@code []}, such as {@code Items[].Name}. Fields of values the analysis can not trace back to the data, such as
+ * function results, range indexes and keys, are not recorded, although the arguments they were computed from are.
+ * Recursive template invocations are followed one level deep, which shows the paths that repeat at each level,
+ * such as {@code Tree.Name} and {@code Tree.Children[].Name}.
+ */
+public final class DataPathAnalyzer {
+
+    private final Map<String, Node> rootNodes;
+
+    private final Set<String> paths = new TreeSet<>();
+    private final Set<String> visitedInvocations = new HashSet<>();
+    private final Map<String, Integer> invocationDepths = new HashMap<>();
+
+    public DataPathAnalyzer(Map<String, Node> rootNodes) {
+        this.rootNodes = rootNodes;
+    }
+
+    /**
+     * Returns the sorted data paths read by a template and the templates it invokes.
+     */
+    public Set<String> analyze(String name) {
+        visitTemplate(name, "");
+        return paths;
+    }
+
+    private void visitTemplate(String name, String dot) {
+        Node body = rootNodes.get(name);
+        int depth = invocationDepths.getOrDefault(name, 0);
+        if (body == null || depth > 1 || !visitedInvocations.add(name + '\0' + dot)) {
+            return;
+        }
+        invocationDepths.put(name, depth + 1);
+        Map<String, String> variables = new HashMap<>();
+        variables.put("$", dot);
+        visit(body, dot, variables);
+        invocationDepths.put(name, depth);
+    }
+
+    /**
+     * Visits a node where dot has the given path, {@code null} if its value does not come from the data.
+     */
+    private void visit(Node node, String dot, Map<String, String> variables) {
+        if (node instanceof ListNode) {
+            for (Node child : (ListNode) node) {
+                visit(child, dot, variables);
+            }
+        } else if (node instanceof ActionNode) {
+            visitPipe(((ActionNode) node).getPipeNode(), dot, variables, true);
+        } else if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            Map<String, String> scope = new HashMap<>(variables);
+            visitPipe(ifNode.getPipeNode(), dot, scope, true);
+            visitBlock(ifNode.getIfListNode(), dot, scope);
+            visitBlock(ifNode.getElseListNode(), dot, variables);
+        } else if (node instanceof RangeNode) {
+            visitRange((RangeNode) node, dot, variables);
+        } else if (node instanceof WithNode) {
+            WithNode withNode = (WithNode) node;
+            Map<String, String> scope = new HashMap<>(variables);
+            String value = visitPipe(withNode.getPipeNode(), dot, scope, true);
+            visitBlock(withNode.getIfListNode(), value, scope);
+            visitBlock(withNode.getElseListNode(), dot, variables);
+        } else if (node instanceof TemplateNode) {
+            TemplateNode templateNode = (TemplateNode) node;
+            PipeNode pipeNode = templateNode.getPipeNode();
+            // Without a traced argument only the templates the invoked template invokes in turn are recorded
+            String argument = pipeNode != null ? visitPipe(pipeNode, dot, variables, true) : null;
+            visitTemplate(templateNode.getName(), argument);
+        }
+    }
+
+    private void visitBlock(ListNode listNode, String dot, Map<String, String> variables) {
+        if (listNode != null) {
+            visit(listNode, dot, new HashMap<>(variables));
+        }
+    }
+
+    private void visitRange(RangeNode rangeNode, String dot, Map<String, String> variables) {
+        PipeNode pipeNode = rangeNode.getPipeNode();
+        String value = visitPipe(pipeNode, dot, variables, false);
+        String element = value != null ? value + "[]" : null;
+
+        Map<String, String> scope = new HashMap<>(variables);
+        List<VariableNode> declared = pipeNode.getVariables();
+        for (int i = 0; i < declared.size(); i++) {
+            // With two variables the first one is the index or key
+            boolean isElement = i == declared.size() - 1;
+            scope.put(declared.get(i).getIdentifier(0), isElement ? element : null);
+        }
+        visitBlock(rangeNode.getIfListNode(), element, scope);
+        visitBlock(rangeNode.getElseListNode(), dot, variables);
+    }
+
+    /**
+     * Records the paths read by a pipeline.
+     *
+     * @return the path of the pipeline value, {@code null} if it does not come from the data
+     */
+    private String visitPipe(PipeNode pipeNode, String dot, Map<String, String> variables, boolean assign) {
+        String value = null;
+        List<CommandNode> commands = pipeNode.getCommands();
+        for (CommandNode command : commands) {
+            value = visitCommand(command, dot, variables);
+        }
+        if (commands.size() != 1) {
+            value = null;
+        }
+        if (assign) {
+            for (VariableNode variable : pipeNode.getVariables()) {
+                variables.put(variable.getIdentifier(0), value);
+            }
+        }
+        return value;
+    }
+
+    private String visitCommand(CommandNode command, String dot, Map<String, String> variables) {
+        String value = null;
+        for (Node argument : command.getArguments()) {
+            value = visitArgument(argument, dot, variables);
+        }
+        return command.getArgumentCount() == 1 ? value : null;
+    }
+
+    private String visitArgument(Node argument, String dot, Map<String, String> variables) {
+        if (argument instanceof DotNode) {
+            return dot;
+        }
+        if (argument instanceof FieldNode) {
+            return record(dot, ((FieldNode) argument).getIdentifiers(), 0);
+        }
+        if (argument instanceof VariableNode) {
+            String[] identifiers = ((VariableNode) argument).getIdentifiers();
+            return record(variables.get(identifiers[0]), identifiers, 1);
+        }
+        if (argument instanceof ChainNode) {
+            ChainNode chainNode = (ChainNode) argument;
+            String value = visitArgument(chainNode.getNode(), dot, variables);
+            return record(value, chainNode.getFields().toArray(new String[0]), 0);
+        }
+        if (argument instanceof PipeNode) {
+            return visitPipe((PipeNode) argument, dot, variables, true);
+        }
+        return null;
+    }
+
+    private String record(String base, String[] identifiers, int start) {
+        if (base == null || start == identifiers.length) {
+            return base;
+        }
+        StringBuilder path = new StringBuilder(base);
+        for (int i = start; i < identifiers.length; i++) {
+            if (path.length() > 0) {
+                path.append('.');
+            }
+            path.append(identifiers[i]);
+        }
+        String value = path.toString();
+        paths.add(value);
+        return value;
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.ExecutionLimits;
+import io.github.verils.gotemplate.TemplateLimitExceededException;
+import io.github.verils.gotemplate.TemplateLimitExceededException.Limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resources used by one execution, checked against its limits. A budget is used by a single thread; parts of the
+ * execution rendered on other threads use a {@link #fork()}. Steps are counted for the execution as a whole: once a
+ * budget is forked, it and its forks count them on a shared counter.
+ */
+public final class ExecutionBudget {
+
+    // Steps between two reads of the clock
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private final ExecutionLimits limits;
+    private final boolean hasDeadline;
+    private final long deadline;
+
+    private long steps;
+
+    // Steps of the execution once parts of it are rendered on other threads, null until then
+    private AtomicLong sharedSteps;
+
+    private long output;
+    private int templateDepth;
+
+    /**
+     * Starts the budget of an execution, whose timeout starts now.
+     */
+    public ExecutionBudget(ExecutionLimits limits) {
+        this(limits, limits.timeout() != null ? System.nanoTime() + limits.timeout().toNanos() : 0, 0);
+    }
+
+    private ExecutionBudget(ExecutionLimits limits, long deadline, int templateDepth) {
+        this.limits = limits;
+        this.hasDeadline = limits.timeout() != null;
+        this.deadline = deadline;
+        this.templateDepth = templateDepth;
+    }
+
+    /**
+     * Returns a budget for a part of the execution rendered on another thread, with the same deadline, current
+     * template depth and step counter, and its own output counter. Must be called on the thread using this budget.
+     */
+    public ExecutionBudget fork() {
+        if (sharedSteps == null) {
+            sharedSteps = new AtomicLong(steps);
+        }
+        ExecutionBudget fork = new ExecutionBudget(limits, deadline, templateDepth);
+        fork.sharedSteps = sharedSteps;
+        return fork;
+    }
+
+    public void step() throws TemplateLimitExceededException {
+        long steps = sharedSteps != null ? sharedSteps.incrementAndGet() : ++this.steps;
+        if (steps > limits.maxSteps()) {
+            throw new TemplateLimitExceededException(Limit.STEPS,
+                    String.format("execution exceeds the limit of %d steps", limits.maxSteps()));
+        }
+        if (hasDeadline && steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            throw new TemplateLimitExceededException(Limit.TIMEOUT,
+                    String.format("execution exceeds the timeout of %d ms", limits.timeout().toMillis()));
+        }
+    }
+
+    public void output(int length) throws TemplateLimitExceededException {
+        output += length;
+        if (output > limits.maxOutput()) {
+            throw new TemplateLimitExceededException(Limit.OUTPUT,
+                    String.format("output exceeds the limit of %d characters", limits.maxOutput()));
+        }
+    }
+
+    public void enterTemplate(String name) throws TemplateLimitExceededException {
+        if (++templateDepth > limits.maxTemplateDepth()) {
+            throw new TemplateLimitExceededException(Limit.TEMPLATE_DEPTH, String.format(
+                    "template %s exceeds the limit of %d nested invocations", name, limits.maxTemplateDepth()));
+        }
+    }
+
+    public void exitTemplate() {
+        templateDepth--;
+    }
+}
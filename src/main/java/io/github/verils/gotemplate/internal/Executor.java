@@ -2,28 +2,90 @@ package io.github.verils.gotemplate.internal;
 
 import io.github.verils.gotemplate.*;
 import io.github.verils.gotemplate.internal.ast.*;
+import io.github.verils.gotemplate.internal.jfr.JfrSupport;
+import io.github.verils.gotemplate.internal.jfr.TemplateEvents;
 import io.github.verils.gotemplate.internal.lang.ErrorUtils;
 
 import java.beans.BeanInfo;
-import java.beans.PropertyDescriptor;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.stream.BaseStream;
 
 public class Executor {
 
     private static final String NO_VALUE = "<no value>";
 
+    // Fewest iterations rendered by one task of a parallel range, smaller ranges are not worth splitting
+    private static final int PARALLEL_RANGE_MIN_CHUNK = 64;
+
     private final Map<String, Node> rootNodes;
     private final Map<String, Function> functions;
     private final MissingKeyPolicy missingKeyPolicy;
     private final boolean mapKeySorting;
 
     // Unified ClassMetadata cache: replaces beanInfoCache, annotationCache, and propertyDescriptorCache
-    // This cache is passed from Template and shares its lifecycle (instance-level, no memory leak)
-    private final Map<Class<?>, ClassMetadata> classMetadataCache;
+    // This cache is passed from Template, either the process-wide store or one owned by the Template
+    private final ClassMetadataCache classMetadataCache;
+
+    private final ValueResolvers valueResolvers;
+
+    // Values of Lazy data computed so far in this execution
+    private Map<Lazy<?>, Object> lazyValues;
+
+    // Polled at every node when the execution can be cancelled, null otherwise
+    private BooleanSupplier cancelled;
+
+    // Top-level variables, cleared and reused when the executor runs several executions
+    private Map<String, Object> rootVariables;
+
+    // Renders chunks of large range loops in parallel, null to render every range sequentially
+    private ForkJoinPool parallelRangePool;
+
+    // Renders sibling template invocations concurrently, null to render them in turn
+    private java.util.concurrent.Executor parallelTemplateExecutor;
+
+    // Output of template invocations by key, null when no output is cached
+    private FragmentStore fragmentStore;
+
+    // Pre-rendered constant parts of the templates, null to execute every node
+    private ConstantFolder constantFolder;
+
+    // Limits of each execution, null for none
+    private ExecutionLimits limits;
+
+    // Resources used by the current execution, null when it is not limited
+    private ExecutionBudget budget;
+
+    // Receives the measurements of each execution, null for none
+    private TemplateMetrics metrics;
+
+    // One in this many executions reports the time spent in each node, 0 for none
+    private int nodeSampling;
+
+    // Observes the nodes of every execution, null to only observe sampled executions
+    private NodeObserver observer;
+
+    // Observes the nodes of the current execution, null when it is not observed
+    private NodeObserver nodeObserver;
+
+    // Template the nodes being executed belong to
+    private String currentTemplate;
+
+    // Characters written by the current execution
+    private long outputLength;
 
     public Executor(Map<String, Node> rootNodes, Map<String, Function> functions) {
         this(rootNodes, functions, MissingKeyPolicy.INVALID, true, null);
@@ -44,43 +106,274 @@ public class Executor {
      * @param functions          Available functions
      * @param missingKeyPolicy   Policy for handling missing keys
      * @param mapKeySorting      Whether to sort map keys during iteration
-     * @param classMetadataCache Shared ClassMetadata cache (instance-level, from Template)
+     * @param classMetadataCache ClassMetadata cache from Template, {@code null} for the process-wide cache
+     */
+    public Executor(Map<String, Node> rootNodes, Map<String, Function> functions,
+                    MissingKeyPolicy missingKeyPolicy, boolean mapKeySorting,
+                    ClassMetadataCache classMetadataCache) {
+        this(rootNodes, functions, missingKeyPolicy, mapKeySorting, classMetadataCache, null);
+    }
+
+    /**
+     * Constructor with custom value resolvers.
+     *
+     * @param rootNodes          The parsed template nodes
+     * @param functions          Available functions
+     * @param missingKeyPolicy   Policy for handling missing keys
+     * @param mapKeySorting      Whether to sort map keys during iteration
+     * @param classMetadataCache ClassMetadata cache from Template, {@code null} for the process-wide cache
+     * @param valueResolvers     Resolvers for custom data models, {@code null} for none
      */
     public Executor(Map<String, Node> rootNodes, Map<String, Function> functions,
                     MissingKeyPolicy missingKeyPolicy, boolean mapKeySorting,
-                    Map<Class<?>, ClassMetadata> classMetadataCache) {
+                    ClassMetadataCache classMetadataCache, ValueResolvers valueResolvers) {
         this.rootNodes = rootNodes;
         this.functions = functions;
         this.missingKeyPolicy = missingKeyPolicy != null ? missingKeyPolicy : MissingKeyPolicy.INVALID;
         this.mapKeySorting = mapKeySorting;
-        this.classMetadataCache = classMetadataCache != null ? classMetadataCache : new ConcurrentHashMap<>();
+        this.classMetadataCache = classMetadataCache != null ? classMetadataCache : ClassMetadataCache.shared();
+        this.valueResolvers = valueResolvers != null ? valueResolvers : ValueResolvers.empty();
+    }
+
+    /**
+     * Executor rendering part of a parallel range of its parent: it shares the parent's configuration and lazy
+     * values, stops with the given condition, uses the given fork of the parent's budget, and renders nested ranges
+     * sequentially.
+     */
+    private Executor(Executor parent, BooleanSupplier cancelled, ExecutionBudget budget) {
+        this.rootNodes = parent.rootNodes;
+        this.functions = parent.functions;
+        this.missingKeyPolicy = parent.missingKeyPolicy;
+        this.mapKeySorting = parent.mapKeySorting;
+        this.classMetadataCache = parent.classMetadataCache;
+        this.valueResolvers = parent.valueResolvers;
+        this.fragmentStore = parent.fragmentStore;
+        this.constantFolder = parent.constantFolder;
+        this.lazyValues = parent.lazyValues;
+        this.cancelled = cancelled;
+        this.limits = parent.limits;
+        this.budget = budget;
+    }
+
+    /**
+     * Enables parallel rendering of large {@code range} loops.
+     * <p>
+     * A range over a list with random access, an array or an integer is split into chunks of iterations rendered
+     * on the pool into separate buffers, which are written in order, when it has enough iterations and its body
+     * has no {@code break}. Variables declared in a range body are scoped to the iteration, so iterations are
+     * independent apart from what functions and data accessors do themselves.
+     *
+     * @param pool renders chunks of iterations, {@code null} to render every range sequentially
+     * @return this executor
+     */
+    public Executor withParallelRange(ForkJoinPool pool) {
+        this.parallelRangePool = pool;
+        return this;
+    }
+
+    /**
+     * Enables constant folding: lists of nodes are executed with their constant parts pre-rendered as text.
+     *
+     * @param constantFolder folder for the templates this executor executes, {@code null} to execute every node
+     * @return this executor
+     */
+    public Executor withConstantFolder(ConstantFolder constantFolder) {
+        this.constantFolder = constantFolder;
+        return this;
+    }
+
+    /**
+     * Enables caching of the output of {@code {{template}}} invocations. Invocations of templates with a key
+     * function write the stored output for their key when there is one, and store their output otherwise.
+     *
+     * @param fragmentStore stores template output, {@code null} to execute every invocation
+     * @return this executor
+     */
+    public Executor withFragmentStore(FragmentStore fragmentStore) {
+        this.fragmentStore = fragmentStore;
+        return this;
+    }
+
+    /**
+     * Limits the resources each execution can use.
+     *
+     * @param limits limits checked as nodes are executed, {@code null} for none
+     * @return this executor
+     */
+    public Executor withLimits(ExecutionLimits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Reports the duration, output length and failure of each execution to the metrics.
+     *
+     * @param metrics      receives the measurements, {@code null} for none
+     * @param nodeSampling one in this many executions, picked at random, also reports the time spent in each
+     *                     action, block and template invocation, {@code 0} for none
+     * @return this executor
+     */
+    public Executor withMetrics(TemplateMetrics metrics, int nodeSampling) {
+        this.metrics = metrics;
+        this.nodeSampling = nodeSampling;
+        return this;
     }
 
+    /**
+     * Observes the actions, blocks and template invocations of every execution, in place of the node sampling of
+     * the metrics. Parallel ranges and template invocations are rendered by other executors, which are not
+     * observed, so they should be disabled to observe every node.
+     *
+     * @param observer notified of each node, {@code null} for none
+     * @return this executor
+     */
+    public Executor withObserver(NodeObserver observer) {
+        this.observer = observer;
+        return this;
+    }
+
+    /**
+     * Enables concurrent rendering of sibling {@code {{template}}} invocations.
+     * <p>
+     * When a list of nodes invokes two or more templates with arguments that do not use variables, those
+     * invocations are started on the executor as the list is entered, each into its own buffer, and their outputs
+     * are written in document order as the list is rendered. An invocation that has not started by the time its
+     * output is needed is rendered on the current thread instead, so a busy executor never blocks the execution.
+     *
+     * @param executor renders template invocations, {@code null} to render them in turn
+     * @return this executor
+     */
+    public Executor withParallelTemplates(java.util.concurrent.Executor executor) {
+        this.parallelTemplateExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Executes a template. An executor can run any number of executions one after another, each starting from a
+     * clean state, but not several at once.
+     */
     public void execute(String name, Object data, Writer writer) throws IOException,
             TemplateNotFoundException, TemplateExecutionException {
+        execute(name, data, writer, null);
+    }
+
+    /**
+     * Executes a template that can be cancelled cooperatively: the condition is checked before each node is
+     * written, and the execution ends with a {@link TemplateExecutionException} once it holds.
+     *
+     * @param cancelled returns {@code true} once the execution should stop, {@code null} if it can not be cancelled
+     */
+    public void execute(String name, Object data, Writer writer, BooleanSupplier cancelled) throws IOException,
+            TemplateNotFoundException, TemplateExecutionException {
+        this.cancelled = cancelled;
+        this.lazyValues = null;
+        this.budget = limits != null ? new ExecutionBudget(limits) : null;
         ListNode listNode = (ListNode) rootNodes.get(name);
         if (listNode == null) {
             throw new TemplateNotFoundException(String.format("template '%s' not found", name));
         }
 
+        if (rootVariables == null) {
+            rootVariables = new HashMap<>();
+        } else {
+            rootVariables.clear();
+        }
+        rootVariables.put("$", data);
+
+        currentTemplate = name;
+        outputLength = 0;
+        Object event = JfrSupport.AVAILABLE ? TemplateEvents.beginExecution() : null;
+        if (metrics == null && event == null) {
+            nodeObserver = observer;
+            writeNode(writer, listNode, data, rootVariables);
+            return;
+        }
+        boolean sampled = metrics != null && nodeSampling > 0
+                && ThreadLocalRandom.current().nextInt(nodeSampling) == 0;
+        nodeObserver = observer != null ? observer : sampled ? new NodeTimer(metrics) : null;
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            writeNode(writer, listNode, data, rootVariables);
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.executed(name, System.nanoTime() - start, outputLength, failure);
+            }
+            if (event != null) {
+                TemplateEvents.commitExecution(event, name, outputLength, failure != null);
+            }
+        }
+    }
+
+    /**
+     * Writes a node with the given dot value.
+     *
+     * @param beanInfo ignored, class metadata is resolved on demand while executing field accesses
+     */
+    public void writeNode(Writer writer, Node node, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        writeNode(writer, node, data, variables);
+    }
+
+    /**
+     * Writes a node without data, within the given limits, as constant nodes are pre-rendered.
+     */
+    public void writeConstant(Writer writer, Node node, ExecutionLimits limits) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        this.budget = new ExecutionBudget(limits);
         Map<String, Object> variables = new HashMap<>();
-        variables.put("$", data);
+        variables.put("$", null);
+        writeNode(writer, node, null, variables);
+    }
+
+    /**
+     * Evaluates a field path, such as {@code Site.Name}, against the given data, starting at the given identifier.
+     */
+    public Object evaluateField(String[] identifiers, int start, Object data) throws TemplateExecutionException {
+        return executeFieldPath(identifiers, start, data);
+    }
+
+    /**
+     * Evaluates the truth of a value the way {@code if} does.
+     */
+    public boolean evaluateTruth(Object value) throws TemplateExecutionException {
+        return isTrue(value);
+    }
 
-        if (data != null) {
-            BeanInfo beanInfo = getBeanInfo(data);
-            writeNode(writer, listNode, data, beanInfo, variables);
+    private void writeNode(Writer writer, Node node, Object data, Map<String, Object> variables) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        checkCancelled();
+        if (budget != null) {
+            budget.step();
+        }
+        if (nodeObserver != null && node instanceof PositionedNode) {
+            writeObservedNode(writer, (PositionedNode) node, data, variables);
         } else {
-            writeNode(writer, listNode, null, null, variables);
+            dispatchNode(writer, node, data, variables);
+        }
+    }
+
+    private void writeObservedNode(Writer writer, PositionedNode node, Object data, Map<String, Object> variables)
+            throws IOException, TemplateExecutionException, TemplateNotFoundException {
+        String templateName = currentTemplate;
+        nodeObserver.enter(templateName, node);
+        try {
+            dispatchNode(writer, node, data, variables);
+        } finally {
+            nodeObserver.exit(templateName, node);
         }
     }
 
     @SuppressWarnings("StatementWithEmptyBody")
-    public void writeNode(Writer writer, Node node, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws IOException,
+    private void dispatchNode(Writer writer, Node node, Object data, Map<String, Object> variables) throws IOException,
             TemplateExecutionException, TemplateNotFoundException {
         if (node instanceof ListNode) {
-            writeList(writer, (ListNode) node, data, beanInfo, variables);
+            writeList(writer, (ListNode) node, data, variables);
         } else if (node instanceof ActionNode) {
-            writeAction(writer, (ActionNode) node, data, beanInfo, variables);
+            writeAction(writer, (ActionNode) node, data, variables);
         } else if (node instanceof CommentNode) {
             // Ignore comment
         } else if (node instanceof BreakNode) {
@@ -88,50 +381,206 @@ public class Executor {
         } else if (node instanceof ContinueNode) {
             throw ContinueException.INSTANCE;
         } else if (node instanceof IfNode) {
-            writeIf(writer, (IfNode) node, data, beanInfo, variables);
+            writeIf(writer, (IfNode) node, data, variables);
         } else if (node instanceof RangeNode) {
-            writeRange(writer, (RangeNode) node, data, beanInfo, variables);
+            writeRange(writer, (RangeNode) node, data, variables);
         } else if (node instanceof TemplateNode) {
             writeTemplate(writer, (TemplateNode) node, data, variables);
         } else if (node instanceof TextNode) {
             writeText(writer, (TextNode) node);
         } else if (node instanceof WithNode) {
-            writeWith(writer, (WithNode) node, data, beanInfo, variables);
+            writeWith(writer, (WithNode) node, data, variables);
         } else {
             throw new TemplateExecutionException(String.format("unknown node: %s", node.toString()));
         }
     }
 
-    private void writeAction(Writer writer, ActionNode actionNode, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws IOException,
+    private void checkCancelled() throws TemplateExecutionException {
+        if (cancelled != null && cancelled.getAsBoolean()) {
+            throw new TemplateExecutionException("template execution cancelled");
+        }
+    }
+
+    private void writeAction(Writer writer, ActionNode actionNode, Object data, Map<String, Object> variables) throws IOException,
             TemplateExecutionException {
         PipeNode pipeNode = actionNode.getPipeNode();
-        Object value = executePipe(pipeNode, data, beanInfo, variables);
+        Object value = executePipe(pipeNode, data, variables);
         if (pipeNode.getVariableCount() == 0) {
             printValue(writer, value);
         }
     }
 
-    private void writeIf(Writer writer, IfNode ifNode, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws IOException,
+    private void writeIf(Writer writer, IfNode ifNode, Object data, Map<String, Object> variables) throws IOException,
             TemplateExecutionException, TemplateNotFoundException {
         Map<String, Object> blockVariables = new HashMap<>(variables);
-        Object value = executePipe(ifNode.getPipeNode(), data, beanInfo, blockVariables);
+        Object value = executePipe(ifNode.getPipeNode(), data, blockVariables);
         if (isTrue(value)) {
-            writeNode(writer, ifNode.getIfListNode(), data, beanInfo, blockVariables);
+            writeNode(writer, ifNode.getIfListNode(), data, blockVariables);
         } else if (ifNode.getElseListNode() != null) {
-            writeNode(writer, ifNode.getElseListNode(), data, beanInfo, blockVariables);
+            writeNode(writer, ifNode.getElseListNode(), data, blockVariables);
         }
     }
 
-    private void writeList(Writer writer, ListNode listNode, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws IOException,
+    private void writeList(Writer writer, ListNode listNode, Object data, Map<String, Object> variables) throws IOException,
             TemplateExecutionException, TemplateNotFoundException {
-        for (Node node : listNode) {
-            writeNode(writer, node, data, beanInfo, variables);
+        Iterable<Node> nodes = getNodes(listNode);
+        if (parallelTemplateExecutor != null && countIndependentTemplates(nodes) > 1) {
+            writeListWithParallelTemplates(writer, nodes, data, variables);
+            return;
+        }
+        for (Node node : nodes) {
+            writeNode(writer, node, data, variables);
         }
     }
 
-    private void writeRange(Writer writer, RangeNode rangeNode, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws IOException,
+    private Iterable<Node> getNodes(ListNode listNode) {
+        return constantFolder != null ? constantFolder.fold(listNode) : listNode;
+    }
+
+    private static int countIndependentTemplates(Iterable<Node> nodes) {
+        int count = 0;
+        for (Node node : nodes) {
+            if (isIndependentTemplate(node)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether the node invokes a template with an argument that does not depend on variables, which the
+     * surrounding list may declare or assign while the invocation runs.
+     */
+    private static boolean isIndependentTemplate(Node node) {
+        if (!(node instanceof TemplateNode)) {
+            return false;
+        }
+        PipeNode pipeNode = ((TemplateNode) node).getPipeNode();
+        return pipeNode == null || !referencesVariables(pipeNode);
+    }
+
+    private static boolean referencesVariables(Node node) {
+        if (node instanceof VariableNode) {
+            return true;
+        }
+        if (node instanceof PipeNode) {
+            PipeNode pipeNode = (PipeNode) node;
+            if (pipeNode.getVariableCount() > 0) {
+                return true;
+            }
+            for (CommandNode command : pipeNode.getCommands()) {
+                if (referencesVariables(command)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (node instanceof CommandNode) {
+            for (Node argument : ((CommandNode) node).getArguments()) {
+                if (referencesVariables(argument)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return node instanceof ChainNode && referencesVariables(((ChainNode) node).getNode());
+    }
+
+    /**
+     * An invocation of a template rendered concurrently, claimed by whichever thread gets to it first.
+     */
+    private static final class TemplateTask {
+        final TemplateNode node;
+        final AtomicBoolean claimed = new AtomicBoolean();
+        CompletableFuture<String> output;
+
+        TemplateTask(TemplateNode node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * Writes the nodes of a list, after constant folding, whose independent template invocations are rendered
+     * concurrently. The other nodes are written in turn on this thread, and the output of each invocation is written
+     * in its place. When a node fails, the invocations still running are stopped, and the first failure is thrown.
+     */
+    private void writeListWithParallelTemplates(Writer writer, Iterable<Node> nodes, Object data,
+                                                Map<String, Object> variables) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        shareLazyValues();
+
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        BooleanSupplier parentCancelled = cancelled;
+        BooleanSupplier taskCancelled = () -> stopped.get()
+                || (parentCancelled != null && parentCancelled.getAsBoolean());
+
+        List<TemplateTask> tasks = new ArrayList<>();
+        for (Node node : nodes) {
+            if (isIndependentTemplate(node)) {
+                TemplateTask task = new TemplateTask((TemplateNode) node);
+                ExecutionBudget taskBudget = budget != null ? budget.fork() : null;
+                task.output = AsyncSupport.submit(parallelTemplateExecutor, future -> {
+                    if (!task.claimed.compareAndSet(false, true)) {
+                        return null;
+                    }
+                    try {
+                        StringWriter buffer = new StringWriter();
+                        new Executor(this, taskCancelled, taskBudget).writeTemplate(buffer, task.node, data,
+                                Collections.emptyMap());
+                        return buffer.toString();
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                        stopped.set(true);
+                        throw e;
+                    }
+                });
+                tasks.add(task);
+            }
+        }
+
+        Iterator<TemplateTask> pending = tasks.iterator();
+        try {
+            for (Node node : nodes) {
+                if (!isIndependentTemplate(node)) {
+                    writeNode(writer, node, data, variables);
+                    continue;
+                }
+
+                TemplateTask task = pending.next();
+                if (task.claimed.compareAndSet(false, true)) {
+                    // Not started yet, render it here rather than wait for the executor
+                    writeNode(writer, task.node, data, variables);
+                    continue;
+                }
+                try {
+                    printText(writer, task.output.get());
+                } catch (ExecutionException e) {
+                    throw rethrowFailure(failure.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while rendering a template");
+                }
+            }
+        } finally {
+            stopped.set(true);
+        }
+    }
+
+    /**
+     * Makes the memoized lazy values safe to share with executors rendering on other threads.
+     */
+    private void shareLazyValues() {
+        if (lazyValues == null) {
+            lazyValues = Collections.synchronizedMap(new IdentityHashMap<>());
+        } else if (lazyValues instanceof IdentityHashMap) {
+            lazyValues = Collections.synchronizedMap(lazyValues);
+        }
+    }
+
+    private void writeRange(Writer writer, RangeNode rangeNode, Object data, Map<String, Object> variables) throws IOException,
             TemplateExecutionException, TemplateNotFoundException {
-        Object numberOrIterable = executePipe(rangeNode.getPipeNode(), data, beanInfo, new HashMap<>(variables), false);
+        Object numberOrIterable = unwrapValue(executePipe(rangeNode.getPipeNode(), data, new HashMap<>(variables), false));
 
         // Get variable names from the range node's pipe
         List<VariableNode> rangeVars = rangeNode.getPipeNode().getVariables();
@@ -151,9 +600,17 @@ public class Executor {
 
         boolean iterated = false;
 
-        // Support range over integers (Go compatibility)
-        // e.g., {{range $i := 5}} iterates from 0 to 4
-        if (numberOrIterable instanceof Number) {
+        ValueResolver<Object> resolver = getValueResolver(numberOrIterable);
+        Iterator<?> resolvedElements = resolver != null ? resolver.iterator(numberOrIterable) : null;
+        List<?> partitionedElements = resolvedElements == null ? getParallelRangeElements(rangeNode, numberOrIterable) : null;
+        if (resolvedElements != null) {
+            iterated = writeRangeIterator(writer, rangeNode, resolvedElements, indexVarName, valueVarName, variables);
+        } else if (partitionedElements != null) {
+            writeRangeParallel(writer, rangeNode, partitionedElements, indexVarName, valueVarName, variables);
+            iterated = true;
+        } else if (numberOrIterable instanceof Number) {
+            // Support range over integers (Go compatibility)
+            // e.g., {{range $i := 5}} iterates from 0 to 4
             int count = ((Number) numberOrIterable).intValue();
             // Only iterate if count is positive
             if (count > 0) {
@@ -164,63 +621,389 @@ public class Executor {
                     }
                 }
             }
+        } else if (numberOrIterable != null && numberOrIterable.getClass().isArray()) {
+            iterated = writeRangeArray(writer, rangeNode, numberOrIterable, indexVarName, valueVarName, variables);
+        } else if (numberOrIterable instanceof Map) {
+            iterated = writeRangeMap(writer, rangeNode, (Map<?, ?>) numberOrIterable, indexVarName, valueVarName, variables);
+        } else if (numberOrIterable instanceof Iterable) {
+            // Collections and any other Iterable, e.g. a lazily fetched result set
+            Iterator<?> iterator = ((Iterable<?>) numberOrIterable).iterator();
+            iterated = writeRangeIterator(writer, rangeNode, iterator, indexVarName, valueVarName, variables);
+        } else if (numberOrIterable instanceof Iterator) {
+            Iterator<?> iterator = (Iterator<?>) numberOrIterable;
+            iterated = writeRangeIterator(writer, rangeNode, iterator, indexVarName, valueVarName, variables);
+        } else if (numberOrIterable instanceof BaseStream) {
+            // Streams are closed however the loop ends, releasing resources such as database cursors
+            try (BaseStream<?, ?> stream = (BaseStream<?, ?>) numberOrIterable) {
+                iterated = writeRangeIterator(writer, rangeNode, stream.iterator(), indexVarName, valueVarName, variables);
+            }
+        } else if (numberOrIterable instanceof Spliterator) {
+            Iterator<?> iterator = Spliterators.iterator((Spliterator<?>) numberOrIterable);
+            iterated = writeRangeIterator(writer, rangeNode, iterator, indexVarName, valueVarName, variables);
+        } else if (numberOrIterable instanceof Enumeration) {
+            Iterator<?> iterator = ((Enumeration<?>) numberOrIterable).asIterator();
+            iterated = writeRangeIterator(writer, rangeNode, iterator, indexVarName, valueVarName, variables);
         }
 
-        if (numberOrIterable != null && numberOrIterable.getClass().isArray()) {
-            int length = Array.getLength(numberOrIterable);
-            for (int i = 0; i < length; i++) {
-                Object value = Array.get(numberOrIterable, i);
-                iterated = true;
-                if (writeRangeValueAndShouldBreak(writer, rangeNode, i, value, indexVarName, valueVarName, variables)) {
-                    break;
+        if (!iterated && rangeNode.getElseListNode() != null) {
+            writeNode(writer, rangeNode.getElseListNode(), data, new HashMap<>(variables));
+        }
+    }
+
+    /**
+     * Returns the elements of a range to render in parallel, by position, or {@code null} to render it
+     * sequentially: parallel ranges must be enabled, the source must have random access and enough elements for
+     * two chunks, and the body must not {@code break} out of the loop.
+     */
+    private List<?> getParallelRangeElements(RangeNode rangeNode, Object source) {
+        if (parallelRangePool == null) {
+            return null;
+        }
+
+        List<?> elements;
+        if (source instanceof List && source instanceof RandomAccess) {
+            elements = (List<?>) source;
+        } else if (source instanceof Object[]) {
+            elements = Arrays.asList((Object[]) source);
+        } else if (source != null && source.getClass().isArray()) {
+            elements = new AbstractList<Object>() {
+                private final int length = Array.getLength(source);
+
+                @Override
+                public Object get(int index) {
+                    return Array.get(source, index);
+                }
+
+                @Override
+                public int size() {
+                    return length;
+                }
+            };
+        } else if (source instanceof Number) {
+            int count = ((Number) source).intValue();
+            elements = new AbstractList<Integer>() {
+                @Override
+                public Integer get(int index) {
+                    return index;
+                }
+
+                @Override
+                public int size() {
+                    return Math.max(count, 0);
+                }
+            };
+        } else {
+            return null;
+        }
+
+        if (elements.size() < 2 * PARALLEL_RANGE_MIN_CHUNK || containsBreak(rangeNode.getIfListNode())) {
+            return null;
+        }
+        return elements;
+    }
+
+    /**
+     * Whether a {@code break} in the list would end the enclosing range. Breaks in nested range bodies end those
+     * ranges instead.
+     */
+    private static boolean containsBreak(ListNode listNode) {
+        if (listNode == null) {
+            return false;
+        }
+        for (Node node : listNode) {
+            if (node instanceof BreakNode) {
+                return true;
+            }
+            if (node instanceof ListNode && containsBreak((ListNode) node)) {
+                return true;
+            }
+            if (node instanceof BranchNode) {
+                BranchNode branchNode = (BranchNode) node;
+                if (!(node instanceof RangeNode) && containsBreak(branchNode.getIfListNode())) {
+                    return true;
+                }
+                if (containsBreak(branchNode.getElseListNode())) {
+                    return true;
                 }
             }
         }
+        return false;
+    }
 
-        if (numberOrIterable instanceof Collection) {
-            Collection<?> collection = (Collection<?>) numberOrIterable;
-            int index = 0;
-            for (Object object : collection) {
-                iterated = true;
-                if (writeRangeValueAndShouldBreak(writer, rangeNode, index, object, indexVarName, valueVarName, variables)) {
-                    break;
+    /**
+     * Renders the iterations of a range in chunks on the parallel range pool and writes the chunks in order. A few
+     * chunks are rendered ahead of the one being written, so memory stays bounded for long ranges. When a chunk
+     * fails, the other chunks are stopped, the chunks before it are written, and the first failure is thrown.
+     */
+    private void writeRangeParallel(Writer writer, RangeNode rangeNode, List<?> elements, String indexVarName,
+                                    String valueVarName, Map<String, Object> variables) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        shareLazyValues();
+
+        int size = elements.size();
+        int parallelism = parallelRangePool.getParallelism();
+        int chunkSize = Math.max(PARALLEL_RANGE_MIN_CHUNK, (size + parallelism * 4 - 1) / (parallelism * 4));
+        int chunkCount = (size + chunkSize - 1) / chunkSize;
+
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        BooleanSupplier parentCancelled = cancelled;
+        BooleanSupplier chunkCancelled = () -> stopped.get()
+                || (parentCancelled != null && parentCancelled.getAsBoolean());
+
+        Deque<ForkJoinTask<String>> pending = new ArrayDeque<>();
+        int nextChunk = 0;
+        try {
+            for (int written = 0; written < chunkCount; written++) {
+                while (nextChunk < chunkCount && pending.size() < parallelism * 2) {
+                    int from = nextChunk * chunkSize;
+                    int to = Math.min(from + chunkSize, size);
+                    ExecutionBudget chunkBudget = budget != null ? budget.fork() : null;
+                    pending.add(parallelRangePool.submit(() -> {
+                        try {
+                            Executor executor = new Executor(this, chunkCancelled, chunkBudget);
+                            StringWriter chunk = new StringWriter();
+                            for (int i = from; i < to; i++) {
+                                executor.writeRangeValueAndShouldBreak(chunk, rangeNode, i, elements.get(i),
+                                        indexVarName, valueVarName, variables);
+                            }
+                            return chunk.toString();
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                            stopped.set(true);
+                            throw e;
+                        }
+                    }));
+                    nextChunk++;
                 }
-                index++;
+
+                String chunk;
+                try {
+                    chunk = pending.remove().get();
+                } catch (ExecutionException e) {
+                    throw rethrowFailure(failure.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while rendering a parallel range");
+                }
+                printText(writer, chunk);
+                endRangeIteration(writer);
+            }
+        } finally {
+            stopped.set(true);
+            for (ForkJoinTask<String> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static RuntimeException rethrowFailure(Throwable failure) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        if (failure instanceof TemplateExecutionException) {
+            throw (TemplateExecutionException) failure;
+        } else if (failure instanceof TemplateNotFoundException) {
+            throw (TemplateNotFoundException) failure;
+        } else if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw (RuntimeException) failure;
+    }
+
+    /**
+     * Iterates the remaining elements of an iterator, pulling one element at a time, with the element position as
+     * the index.
+     *
+     * @return {@code true} if there was at least one element
+     */
+    private boolean writeRangeIterator(Writer writer, RangeNode rangeNode, Iterator<?> iterator, String indexVarName,
+                                       String valueVarName, Map<String, Object> variables) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        boolean iterated = false;
+        int index = 0;
+        while (iterator.hasNext()) {
+            iterated = true;
+            if (writeRangeValueAndShouldBreak(writer, rangeNode, index, iterator.next(), indexVarName, valueVarName, variables)) {
+                break;
             }
+            index++;
         }
+        return iterated;
+    }
 
-        if (numberOrIterable instanceof Map) {
-            Map<?, ?> map = (Map<?, ?>) numberOrIterable;
+    /**
+     * Iterates a map, in natural key order when map key sorting is enabled.
+     * <p>
+     * Sorted maps with natural ordering and maps whose keys already come in order are iterated in place; other
+     * maps are sorted once as an array of entries.
+     *
+     * @return {@code true} if the map has at least one entry
+     */
+    private boolean writeRangeMap(Writer writer, RangeNode rangeNode, Map<?, ?> map, String indexVarName,
+                                  String valueVarName, Map<String, Object> variables) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        Iterable<? extends Map.Entry<?, ?>> entries = map.entrySet();
+        if (mapKeySorting && !isInNaturalKeyOrder(map)) {
+            Map.Entry<?, ?>[] sorted = map.entrySet().toArray(new Map.Entry<?, ?>[0]);
+            Arrays.sort(sorted, Executor::compareEntryKeys);
+            entries = Arrays.asList(sorted);
+        }
 
-            // Sort map keys if enabled using TreeMap for natural ordering
-            List<Map.Entry<?, ?>> entries;
-            if (mapKeySorting) {
-                map = new TreeMap<>(map);
+        for (Map.Entry<?, ?> entry : entries) {
+            // For maps, when two vars are specified, first is key, second is value
+            if (writeRangeValueAndShouldBreak(writer, rangeNode, entry.getKey(), entry.getValue(), indexVarName, valueVarName, variables)) {
+                break;
             }
-            entries = new ArrayList<>(map.entrySet());
+        }
+        return !map.isEmpty();
+    }
 
-            for (Map.Entry<?, ?> entry : entries) {
-                // For maps, when two vars are specified, first is key, second is value
-                Object entryValue = entry.getValue();
-                Object entryKey = entry.getKey();
-                iterated = true;
-                if (writeRangeValueAndShouldBreak(writer, rangeNode, entryKey, entryValue, indexVarName, valueVarName, variables)) {
+    private static boolean isInNaturalKeyOrder(Map<?, ?> map) {
+        if (map instanceof SortedMap && ((SortedMap<?, ?>) map).comparator() == null) {
+            return true;
+        }
+        Object previous = null;
+        boolean first = true;
+        for (Object key : map.keySet()) {
+            if (!first && (!(key instanceof Comparable) || compareKeys(previous, key) > 0)) {
+                return false;
+            }
+            previous = key;
+            first = false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeys(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static int compareEntryKeys(Map.Entry<?, ?> a, Map.Entry<?, ?> b) {
+        return compareKeys(a.getKey(), b.getKey());
+    }
+
+    /**
+     * Iterates an array without reflective element access for {@code Object[]} and the common primitive arrays.
+     * Primitive arrays whose range body only prints {@code {{.}}} between text are written without boxing.
+     *
+     * @return {@code true} if the array has at least one element
+     */
+    private boolean writeRangeArray(Writer writer, RangeNode rangeNode, Object array, String indexVarName,
+                                    String valueVarName, Map<String, Object> variables) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        if (array instanceof Object[]) {
+            Object[] values = (Object[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (writeRangeValueAndShouldBreak(writer, rangeNode, i, values[i], indexVarName, valueVarName, variables)) {
                     break;
                 }
             }
+            return values.length > 0;
         }
 
-        if (!iterated && rangeNode.getElseListNode() != null) {
-            writeNode(writer, rangeNode.getElseListNode(), data, beanInfo, new HashMap<>(variables));
+        // An observed execution writes every node, so that the observer sees the nodes of the body
+        String[] segments = nodeObserver == null ? getPrintOnlySegments(rangeNode.getIfListNode()) : null;
+        if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (segments != null) {
+                    printSegments(writer, segments, Integer.toString(values[i]));
+                } else if (writeRangeValueAndShouldBreak(writer, rangeNode, i, values[i], indexVarName, valueVarName, variables)) {
+                    break;
+                }
+            }
+            return values.length > 0;
+        }
+        if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (segments != null) {
+                    printSegments(writer, segments, Long.toString(values[i]));
+                } else if (writeRangeValueAndShouldBreak(writer, rangeNode, i, values[i], indexVarName, valueVarName, variables)) {
+                    break;
+                }
+            }
+            return values.length > 0;
+        }
+        if (array instanceof double[]) {
+            double[] values = (double[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (segments != null) {
+                    printSegments(writer, segments, Double.toString(values[i]));
+                } else if (writeRangeValueAndShouldBreak(writer, rangeNode, i, values[i], indexVarName, valueVarName, variables)) {
+                    break;
+                }
+            }
+            return values.length > 0;
+        }
+        if (array instanceof byte[]) {
+            byte[] values = (byte[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (segments != null) {
+                    printSegments(writer, segments, Byte.toString(values[i]));
+                } else if (writeRangeValueAndShouldBreak(writer, rangeNode, i, values[i], indexVarName, valueVarName, variables)) {
+                    break;
+                }
+            }
+            return values.length > 0;
+        }
+
+        int length = Array.getLength(array);
+        for (int i = 0; i < length; i++) {
+            if (writeRangeValueAndShouldBreak(writer, rangeNode, i, Array.get(array, i), indexVarName, valueVarName, variables)) {
+                break;
+            }
         }
+        return length > 0;
+    }
+
+    /**
+     * Splits a range body made only of text and {@code {{.}}} actions into the texts to print, with
+     * {@code null} marking where the element goes.
+     *
+     * @return the segments, or {@code null} if the body does anything else
+     */
+    private String[] getPrintOnlySegments(ListNode listNode) {
+        List<String> segments = new ArrayList<>();
+        for (Node node : listNode) {
+            if (node instanceof TextNode) {
+                segments.add(((TextNode) node).getText());
+            } else if (node instanceof ActionNode && isDotPipe(((ActionNode) node).getPipeNode())) {
+                segments.add(null);
+            } else {
+                return null;
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private boolean isDotPipe(PipeNode pipeNode) {
+        List<CommandNode> commands = pipeNode.getCommands();
+        return pipeNode.getVariableCount() == 0 && commands.size() == 1
+                && commands.get(0).getArgumentCount() == 1 && commands.get(0).getFirstArgument() instanceof DotNode;
+    }
+
+    private void printSegments(Writer writer, String[] segments, String value) throws IOException,
+            TemplateExecutionException {
+        checkCancelled();
+        if (budget != null) {
+            budget.step();
+        }
+        for (String segment : segments) {
+            printText(writer, segment != null ? segment : value);
+        }
+        endRangeIteration(writer);
     }
 
     /**
      * Writes one iteration of a {@code range} block.
      * <p>
-     * The iteration value is unwrapped when it is an {@link Optional}, then rendered as the dot value for the
+     * The iteration value is unwrapped when it is an {@link Optional} or a {@link Lazy}, then rendered as the dot value for the
      * range body. Index/key and value variables declared by the range pipeline are bound in a copied variable
-     * scope so assignments from this iteration do not leak into sibling iterations or the outer scope.
+     * scope so assignments from this iteration do not leak into sibling iterations or the outer scope. The end of
+     * the iteration is a flush point for chunked output.
      *
      * @param writer       the destination writer
      * @param rangeNode    the range node whose body should be executed
@@ -237,8 +1020,12 @@ public class Executor {
     private boolean writeRangeValueAndShouldBreak(Writer writer, RangeNode rangeNode, Object index, Object value,
                                                   String indexVarName, String valueVarName, Map<String, Object> variables) throws IOException,
             TemplateExecutionException, TemplateNotFoundException {
-        // Unwrap Optional if present
-        value = unwrapOptional(value);
+        if (budget != null) {
+            budget.step();
+        }
+
+        // Unwrap Optional or Lazy if present
+        value = unwrapValue(value);
 
         // Create a copy of variables for this iteration to avoid pollution
         Map<String, Object> iterationVars = new HashMap<>(variables);
@@ -254,32 +1041,43 @@ public class Executor {
         }
 
         ListNode ifListNode = rangeNode.getIfListNode();
+        boolean shouldBreak;
         try {
-            for (Node node : ifListNode) {
-                BeanInfo itemBeanInfo = value != null ? getBeanInfo(value) : null;
-                writeNode(writer, node, value, itemBeanInfo, iterationVars);
-            }
-            return false;
+            writeList(writer, ifListNode, value, iterationVars);
+            shouldBreak = false;
         } catch (ContinueException e) {
-            return false;
+            shouldBreak = false;
         } catch (BreakException e) {
-            return true;
+            shouldBreak = true;
         }
+        endRangeIteration(writer);
+        return shouldBreak;
     }
 
-    private void writeText(Writer writer, TextNode textNode) throws IOException {
+    /**
+     * The end of a range iteration is a flush point for chunked output, so chunks end on record boundaries.
+     */
+    private void endRangeIteration(Writer writer) throws IOException {
+        if (writer instanceof ChunkedWriter) {
+            ((ChunkedWriter) writer).flushPoint();
+        }
+    }
+
+    private void writeText(Writer writer, TextNode textNode) throws IOException, TemplateLimitExceededException {
         printText(writer, textNode.getText());
     }
 
-    private void writeWith(Writer writer, WithNode withNode, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws IOException,
+    private void writeWith(Writer writer, WithNode withNode, Object data, Map<String, Object> variables) throws IOException,
             TemplateExecutionException, TemplateNotFoundException {
         Map<String, Object> blockVariables = new HashMap<>(variables);
-        Object value = executePipe(withNode.getPipeNode(), data, beanInfo, blockVariables);
+        Object value = executePipe(withNode.getPipeNode(), data, blockVariables);
+        if (value instanceof Lazy) {
+            value = unwrapValue(value);
+        }
         if (isTrue(value)) {
-            BeanInfo valueBeanInfo = getBeanInfo(value);
-            writeNode(writer, withNode.getIfListNode(), value, valueBeanInfo, blockVariables);
+            writeNode(writer, withNode.getIfListNode(), value, blockVariables);
         } else if (withNode.getElseListNode() != null) {
-            writeNode(writer, withNode.getElseListNode(), data, beanInfo, blockVariables);
+            writeNode(writer, withNode.getElseListNode(), data, blockVariables);
         }
     }
 
@@ -291,28 +1089,76 @@ public class Executor {
         if (listNode == null) {
             throw new TemplateExecutionException(String.format("template %s not defined", name));
         }
-
-        BeanInfo beanInfo = data != null ? getBeanInfo(data) : null;
         Object value = templateNode.getPipeNode() != null
-                ? executePipe(templateNode.getPipeNode(), data, beanInfo, variables)
+                ? executePipe(templateNode.getPipeNode(), data, variables)
                 : null;
 
-        Map<String, Object> templateVariables = new HashMap<>();
-        templateVariables.put("$", value);
+        if (budget != null) {
+            budget.enterTemplate(name);
+        }
+        String caller = currentTemplate;
+        currentTemplate = name;
+        Object event = JfrSupport.AVAILABLE ? TemplateEvents.beginTemplateInvocation() : null;
+        try {
+            Object fragmentKey = getFragmentKey(name, listNode, value);
+            if (fragmentKey != null) {
+                writeFragment(writer, listNode, value, fragmentKey);
+            } else {
+                writeTemplateBody(writer, listNode, value);
+            }
+        } finally {
+            if (event != null) {
+                TemplateEvents.commitTemplateInvocation(event, name, caller);
+            }
+            currentTemplate = caller;
+            if (budget != null) {
+                budget.exitTemplate();
+            }
+        }
+    }
 
-        if (value == null) {
-            writeNode(writer, listNode, null, null, templateVariables);
+    private void writeFragment(Writer writer, ListNode listNode, Object value, Object fragmentKey)
+            throws IOException, TemplateExecutionException, TemplateNotFoundException {
+        char[] fragment = fragmentStore.get(fragmentKey);
+        if (fragment == null) {
+            // The output is counted as it is rendered into the buffer
+            StringWriter buffer = new StringWriter();
+            writeTemplateBody(buffer, listNode, value);
+            fragment = buffer.toString().toCharArray();
+            fragmentStore.put(fragmentKey, fragment);
         } else {
-            BeanInfo valueBeanInfo = getBeanInfo(value);
-            writeNode(writer, listNode, value, valueBeanInfo, templateVariables);
+            outputLength += fragment.length;
+            if (budget != null) {
+                budget.output(fragment.length);
+            }
         }
+        writer.write(fragment);
     }
 
-    private Object executePipe(PipeNode pipeNode, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws TemplateExecutionException {
-        return executePipe(pipeNode, data, beanInfo, variables, true);
+    private Object getFragmentKey(String name, ListNode listNode, Object value) throws TemplateExecutionException {
+        if (fragmentStore == null) {
+            return null;
+        }
+        try {
+            return fragmentStore.keyFor(name, listNode, value);
+        } catch (RuntimeException e) {
+            throw new TemplateExecutionException(
+                    String.format("error computing fragment key of template %s: %s", name, e.getMessage()), e);
+        }
+    }
+
+    private void writeTemplateBody(Writer writer, ListNode listNode, Object value) throws IOException,
+            TemplateExecutionException, TemplateNotFoundException {
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("$", value);
+        writeNode(writer, listNode, value, templateVariables);
+    }
+
+    private Object executePipe(PipeNode pipeNode, Object data, Map<String, Object> variables) throws TemplateExecutionException {
+        return executePipe(pipeNode, data, variables, true);
     }
 
-    private Object executePipe(PipeNode pipeNode, Object data, BeanInfo beanInfo, Map<String, Object> variables,
+    private Object executePipe(PipeNode pipeNode, Object data, Map<String, Object> variables,
                                boolean assignVariables) throws TemplateExecutionException {
         if (pipeNode == null) {
             return data;
@@ -320,7 +1166,7 @@ public class Executor {
 
         Object value = null;
         for (CommandNode command : pipeNode.getCommands()) {
-            value = executeCommand(command, data, beanInfo, value, variables);
+            value = executeCommand(command, data, value, variables);
         }
 
         // Handle variable assignments: {{$x := .Value | upper}}
@@ -334,14 +1180,14 @@ public class Executor {
         return value;
     }
 
-    private Object executeCommand(CommandNode command, Object data, BeanInfo beanInfo, Object currentPipelineValue, Map<String, Object> variables)
+    private Object executeCommand(CommandNode command, Object data, Object currentPipelineValue, Map<String, Object> variables)
             throws TemplateExecutionException {
         Node firstArgument = command.getFirstArgument();
         if (firstArgument instanceof FieldNode) {
             return executeField((FieldNode) firstArgument, data);
         }
         if (firstArgument instanceof IdentifierNode) {
-            return executeFunction((IdentifierNode) firstArgument, command.getArguments(), data, beanInfo, currentPipelineValue, variables);
+            return executeFunction((IdentifierNode) firstArgument, command.getArguments(), data, currentPipelineValue, variables);
         }
 
 
@@ -367,15 +1213,18 @@ public class Executor {
         if (firstArgument instanceof BoolNode) {
             return ((BoolNode) firstArgument).getValue();
         }
+        if (firstArgument instanceof ConstantNode) {
+            return ((ConstantNode) firstArgument).getValue();
+        }
         if (firstArgument instanceof VariableNode) {
             return executeVariable((VariableNode) firstArgument, variables);
         }
         if (firstArgument instanceof ChainNode) {
-            return executeChain((ChainNode) firstArgument, data, beanInfo, variables);
+            return executeChain((ChainNode) firstArgument, data, variables);
         }
         if (firstArgument instanceof PipeNode) {
             // Support pipeline expressions as commands: {{template "name" (.X | printf "%s")}}
-            return executePipe((PipeNode) firstArgument, data, beanInfo, variables);
+            return executePipe((PipeNode) firstArgument, data, variables);
         }
 
         throw new TemplateExecutionException(String.format("can't evaluate command %s", firstArgument));
@@ -411,8 +1260,8 @@ public class Executor {
                 return null;
             }
 
-            // Unwrap Optional if present
-            currentData = unwrapOptional(currentData);
+            // Unwrap Optional or Lazy if present
+            currentData = unwrapValue(currentData);
             if (currentData == null) {
                 if (missingKeyPolicy == MissingKeyPolicy.ERROR) {
                     throw new TemplateExecutionException(String.format(
@@ -421,132 +1270,180 @@ public class Executor {
                 return null;
             }
 
+            ValueResolver<Object> resolver = getValueResolver(currentData);
+            if (resolver != null) {
+                Object event = beginFieldResolution();
+                Class<?> dataClass = currentData.getClass();
+                currentData = resolveField(resolver, currentData, identifier, fullPath);
+                if (event != null) {
+                    TemplateEvents.commitFieldResolution(event, dataClass, identifier, "value resolver");
+                }
+                continue;
+            }
+
             if (currentData instanceof Map) {
                 Map<?, ?> map = (Map<?, ?>) currentData;
                 if (!map.containsKey(identifier)) {
                     currentData = handleMissingMapKey(identifier, map);
                     continue;
                 }
-                currentData = unwrapOptional(map.get(identifier));
+                currentData = unwrapValue(map.get(identifier));
                 continue;
             }
 
-            // Get ClassMetadata for fast access
-            Class<?> clazz = currentData.getClass();
-            ClassMetadata classMetadata = classMetadataCache.computeIfAbsent(clazz, ClassMetadata::new);
+            // Resolve the member once per class and identifier, ClassMetadata memoizes it
+            Object event = beginFieldResolution();
+            ClassMetadata classMetadata = classMetadataCache.get(currentData.getClass());
 
-            Object value = null;
-            boolean found = false;
-
-            // Priority 1: Check @TemplateField annotations (fast-fail if no annotated members)
-            AccessibleObject annotatedMember = classMetadata.getAnnotatedMember(identifier);
-            if (annotatedMember != null) {
+            MethodHandle recordAccessor = classMetadata.getRecordAccessor(identifier);
+            if (recordAccessor != null) {
+                if (event != null) {
+                    TemplateEvents.commitFieldResolution(event, currentData.getClass(), identifier,
+                            "record component");
+                }
+                Object value;
                 try {
-                    if (annotatedMember instanceof Field) {
-                        value = unwrapOptional(((Field) annotatedMember).get(currentData));
-                    } else if (annotatedMember instanceof Method) {
-                        value = unwrapOptional(((Method) annotatedMember).invoke(currentData));
-                    }
-                    found = true;
-                } catch (IllegalAccessException | InvocationTargetException e) {
+                    value = (Object) recordAccessor.invokeExact(currentData);
+                } catch (Throwable e) {
                     throw new TemplateExecutionException(String.format(
                             "can't evaluate field %s", fullPath), e);
                 }
+                currentData = unwrapValue(value);
+                continue;
             }
 
-            // Priority 2: Try PropertyDescriptor index (fast-fail if no property descriptors)
-            if (!found) {
-                PropertyDescriptor pd = classMetadata.getPropertyDescriptor(identifier);
-                if (pd != null) {
-                    Method readMethod = pd.getReadMethod();
-                    if (readMethod != null) {
-                        try {
-                            value = unwrapOptional(readMethod.invoke(currentData));
-                            found = true;
-                        } catch (IllegalArgumentException e) {
-                            // "object is not an instance of declaring class" - method from incompatible class
-                            // Fall through to other methods
-                        } catch (IllegalAccessException | InvocationTargetException e) {
-                            throw new TemplateExecutionException(String.format(
-                                    "can't evaluate field %s", fullPath), e);
-                        }
-                    }
-                }
+            AccessibleObject member = classMetadata.getMember(identifier);
+            if (event != null) {
+                String resolution = member == null ? "missing" : member instanceof Field ? "field" : "method";
+                TemplateEvents.commitFieldResolution(event, currentData.getClass(), identifier, resolution);
             }
-
-            // Go permits no-arg method access in chains. In Java, only public no-arg methods
-            // are exposed this way; methods with arguments remain unsupported.
-            // Fast-fail if no public methods
-            if (!found)
-                if (classMetadata.hasPublicMethod(identifier)) {
-                    try {
-                        Method method = clazz.getMethod(identifier);
-                        value = unwrapOptional(method.invoke(currentData));
-                        found = true;
-                    } catch (NoSuchMethodException e) {
-                        // Should not happen since we checked publicMethodNames, but be safe
-                    } catch (IllegalAccessException | InvocationTargetException e) {
-                        throw new TemplateExecutionException(String.format(
-                                "can't evaluate field %s", fullPath), e);
-                    }
-                }
-
-            // If no getter found, try public fields (fast-fail if no public fields)
-            if (!found)
-                if (classMetadata.hasPublicField(identifier)) {
-                    try {
-                        Field field = clazz.getField(identifier);
-                        value = unwrapOptional(field.get(currentData));
-                        found = true;
-                    } catch (NoSuchFieldException e) {
-                        // Should not happen since we checked publicFieldNames, but be safe
-                    } catch (IllegalAccessException e) {
-                        throw new TemplateExecutionException(String.format(
-                                "can't evaluate field %s", fullPath), e);
-                    }
-                }
-
-            // If still not found, try Go-style capitalization for public fields
-            if (!found) {
-                String goStyleName = toGoStylePropertyName(identifier);
-                if (!goStyleName.equals(identifier) && classMetadata.hasPublicField(goStyleName)) {
-                    try {
-                        Field field = clazz.getField(goStyleName);
-                        value = unwrapOptional(field.get(currentData));
-                        found = true;
-                    } catch (NoSuchFieldException e) {
-                        // Should not happen since we checked publicFieldNames, but be safe
-                    } catch (IllegalAccessException e) {
-                        throw new TemplateExecutionException(String.format(
-                                "can't evaluate field %s", fullPath), e);
-                    }
-                }
-            }
-
-            if (!found) {
+            if (member == null) {
                 // Build enhanced error message with available fields and suggestions
                 String errorMessage = buildFieldNotFoundError(fullPath, identifier, classMetadata);
                 throw new TemplateExecutionException(errorMessage);
             }
 
+            Object value;
+            try {
+                value = member instanceof Field
+                        ? ((Field) member).get(currentData)
+                        : ((Method) member).invoke(currentData);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new TemplateExecutionException(String.format(
+                        "can't evaluate field %s", fullPath), e);
+            }
+
             // Update currentData for next iteration
-            currentData = value;
+            currentData = unwrapValue(value);
         }
 
         return currentData;
     }
 
     /**
-     * Unwrap Optional values (inlined for performance)
+     * Starts a field resolution event when one is recorded, the resolution of a field that is not a map key.
+     */
+    private static Object beginFieldResolution() {
+        return JfrSupport.AVAILABLE ? TemplateEvents.beginFieldResolution() : null;
+    }
+
+    private ValueResolver<Object> getValueResolver(Object value) {
+        return value != null && !valueResolvers.isEmpty() ? valueResolvers.get(value.getClass()) : null;
+    }
+
+    private Object resolveField(ValueResolver<Object> resolver, Object value, String identifier, String fullPath)
+            throws TemplateExecutionException {
+        Object field;
+        try {
+            field = resolver.getField(value, identifier);
+        } catch (RuntimeException e) {
+            throw new TemplateExecutionException(String.format("can't evaluate field %s", fullPath), e);
+        }
+        if (field == ValueResolver.MISSING) {
+            if (missingKeyPolicy == MissingKeyPolicy.ERROR) {
+                throw new TemplateExecutionException(String.format("can't evaluate field %s in type %s",
+                        fullPath, value.getClass().getName()));
+            }
+            return null;
+        }
+        return unwrapValue(field);
+    }
+
+    /**
+     * Unwrap Optional and Lazy values (inlined for performance)
      *
      * @param obj The object to unwrap
      * @return The unwrapped value, or null if Optional is empty
      */
-    private Object unwrapOptional(Object obj) {
-        // Inlined instanceof check to avoid method call overhead in hot paths
+    private Object unwrapValue(Object obj) throws TemplateExecutionException {
+        // Inlined instanceof checks to avoid method call overhead in hot paths
+        if (obj instanceof Lazy) {
+            obj = getLazyValue((Lazy<?>) obj);
+        }
         return (obj instanceof Optional) ? ((Optional<?>) obj).orElse(null) : obj;
     }
 
+    /**
+     * Computes a lazy value on its first read in this execution, later reads get the memoized result.
+     */
+    private Object getLazyValue(Lazy<?> lazy) throws TemplateExecutionException {
+        if (lazyValues == null) {
+            lazyValues = new IdentityHashMap<>();
+        }
+        Map<Lazy<?>, Object> values = lazyValues;
+        if (values instanceof IdentityHashMap) {
+            if (values.containsKey(lazy)) {
+                return values.get(lazy);
+            }
+            Object value = computeLazyValue(lazy);
+            values.put(lazy, value);
+            return value;
+        }
+
+        // Shared with parallel parts of the execution: each value is computed under its own lock, so its supplier
+        // runs at most once while different values are still computed concurrently
+        LazySlot slot;
+        synchronized (values) {
+            Object entry = values.get(lazy);
+            if (entry instanceof LazySlot) {
+                slot = (LazySlot) entry;
+            } else if (entry != null || values.containsKey(lazy)) {
+                return entry;
+            } else {
+                slot = new LazySlot();
+                values.put(lazy, slot);
+            }
+        }
+        synchronized (slot) {
+            if (!slot.computed) {
+                slot.value = computeLazyValue(lazy);
+                slot.computed = true;
+            }
+            return slot.value;
+        }
+    }
+
+    private Object computeLazyValue(Lazy<?> lazy) throws TemplateExecutionException {
+        Object value;
+        try {
+            value = lazy.get();
+        } catch (RuntimeException e) {
+            throw new TemplateExecutionException(String.format("error computing lazy value: %s", e.getMessage()), e);
+        }
+        if (value instanceof Lazy) {
+            value = getLazyValue((Lazy<?>) value);
+        }
+        return value;
+    }
+
+    /**
+     * Value of a lazy value read by parallel parts of an execution, computed by the first part reading it.
+     */
+    private static final class LazySlot {
+        private boolean computed;
+        private Object value;
+    }
+
     private Object executeVariable(VariableNode variableNode, Map<String, Object> variables) throws TemplateExecutionException {
         String varName = variableNode.getIdentifier(0);
         if (!variables.containsKey(varName)) {
@@ -560,26 +1457,40 @@ public class Executor {
         return executeFieldPath(identifiers, 1, value);
     }
 
-    private Object executeChain(ChainNode chainNode, Object data, BeanInfo beanInfo, Map<String, Object> variables)
+    private Object executeChain(ChainNode chainNode, Object data, Map<String, Object> variables)
             throws TemplateExecutionException {
-        Object value = executeArgument(chainNode.getNode(), data, beanInfo, variables);
+        Object value = executeArgument(chainNode.getNode(), data, variables);
         return executeFieldPath(chainNode.getFields().toArray(new String[0]), 0, value);
     }
 
-    private Object executeFunction(IdentifierNode identifierNode, List<Node> cmdArgNodes, Object data, BeanInfo beanInfo,
+    private Object executeFunction(IdentifierNode identifierNode, List<Node> cmdArgNodes, Object data,
                                    Object finalValue, Map<String, Object> variables) throws TemplateExecutionException {
         String identifier = identifierNode.getIdentifier();
 
         if ("and".equals(identifier) || "or".equals(identifier)) {
-            return executeShortCircuitFunction(identifier, cmdArgNodes, data, beanInfo, finalValue, variables);
+            return executeShortCircuitFunction(identifier, cmdArgNodes, data, finalValue, variables);
         }
 
         if ("index".equals(identifier) && functions.get("index") == Functions.BUILTIN.get("index")) {
-            return executeIndex(cmdArgNodes.subList(1, cmdArgNodes.size()), data, beanInfo, finalValue, variables);
+            return executeIndex(cmdArgNodes.subList(1, cmdArgNodes.size()), data, finalValue, variables);
+        }
+
+        if (("len".equals(identifier) || "not".equals(identifier)) && !valueResolvers.isEmpty()
+                && hasOneOperand(cmdArgNodes, finalValue) && functions.get(identifier) == Functions.BUILTIN.get(identifier)) {
+            Object operand = finalValue != null ? finalValue : executeArgument(cmdArgNodes.get(1), data, variables);
+            return executeResolvedFunction(identifier, operand);
+        }
+
+        Comparison comparison = Comparison.of(identifier);
+        if (comparison != null && hasTwoOperands(cmdArgNodes, finalValue)
+                && functions.get(identifier) == Functions.BUILTIN.get(identifier)) {
+            return executeComparison(comparison, cmdArgNodes, data, finalValue, variables);
         }
 
-        if (functions.containsKey(identifier)) {
-            Function function = functions.get(identifier);
+        // Escapers inserted by contextual escaping are not registered, so templates can not call them by name
+        boolean escaper = !functions.containsKey(identifier) && ContextualEscaper.FUNCTIONS.containsKey(identifier);
+        if (escaper || functions.containsKey(identifier)) {
+            Function function = escaper ? ContextualEscaper.FUNCTIONS.get(identifier) : functions.get(identifier);
             if (function == null) {
                 throw new TemplateExecutionException("call of null for " + identifier);
             }
@@ -594,11 +1505,11 @@ public class Executor {
                 // when implementing functions like 'default', for example.)
 
                 functionArgs = new Object[functionArgNodes.size() + 1];
-                executeArguments(data, beanInfo, functionArgNodes, functionArgs, variables);
+                executeArguments(data, functionArgNodes, functionArgs, variables);
                 functionArgs[functionArgNodes.size()] = finalValue;
             } else {
                 functionArgs = new Object[functionArgNodes.size()];
-                executeArguments(data, beanInfo, functionArgNodes, functionArgs, variables);
+                executeArguments(data, functionArgNodes, functionArgs, variables);
             }
 
             try {
@@ -615,16 +1526,69 @@ public class Executor {
         throw new TemplateExecutionException(errorMsg);
     }
 
-    private Object executeIndex(List<Node> functionArgNodes, Object data, BeanInfo beanInfo,
+    private boolean hasOneOperand(List<Node> cmdArgNodes, Object finalValue) {
+        return finalValue == null ? cmdArgNodes.size() == 2 : cmdArgNodes.size() == 1;
+    }
+
+    /**
+     * {@code len} and {@code not} of a single operand, answered by the operand's value resolver if it has one.
+     */
+    private Object executeResolvedFunction(String identifier, Object operand) throws TemplateExecutionException {
+        ValueResolver<Object> resolver = getValueResolver(operand);
+        if (resolver != null) {
+            try {
+                if ("not".equals(identifier)) {
+                    return !resolver.isTrue(operand);
+                }
+                int length = resolver.length(operand);
+                if (length >= 0) {
+                    return length;
+                }
+            } catch (RuntimeException e) {
+                String errorMsg = buildFunctionExecutionError(identifier, new Object[]{operand}, e);
+                throw new TemplateExecutionException(errorMsg, e);
+            }
+        }
+
+        Object[] functionArgs = {operand};
+        try {
+            return functions.get(identifier).invoke(functionArgs);
+        } catch (RuntimeException e) {
+            String errorMsg = buildFunctionExecutionError(identifier, functionArgs, e);
+            throw new TemplateExecutionException(errorMsg, e);
+        }
+    }
+
+    private boolean hasTwoOperands(List<Node> cmdArgNodes, Object finalValue) {
+        return finalValue == null ? cmdArgNodes.size() == 3 : cmdArgNodes.size() == 2;
+    }
+
+    /**
+     * Two operand comparisons skip the argument array and the varargs call of the builtin function, they are the
+     * most common conditions in filtering templates.
+     */
+    private Object executeComparison(Comparison comparison, List<Node> cmdArgNodes, Object data,
+                                     Object finalValue, Map<String, Object> variables) throws TemplateExecutionException {
+        Object left = executeArgument(cmdArgNodes.get(1), data, variables);
+        Object right = finalValue != null ? finalValue : executeArgument(cmdArgNodes.get(2), data, variables);
+        try {
+            return comparison.test(left, right);
+        } catch (RuntimeException e) {
+            String errorMsg = buildFunctionExecutionError(comparison.identifier(), new Object[]{left, right}, e);
+            throw new TemplateExecutionException(errorMsg, e);
+        }
+    }
+
+    private Object executeIndex(List<Node> functionArgNodes, Object data,
                                 Object finalValue, Map<String, Object> variables) throws TemplateExecutionException {
         Object[] functionArgs;
         if (finalValue != null) {
             functionArgs = new Object[functionArgNodes.size() + 1];
-            executeArguments(data, beanInfo, functionArgNodes, functionArgs, variables);
+            executeArguments(data, functionArgNodes, functionArgs, variables);
             functionArgs[functionArgNodes.size()] = finalValue;
         } else {
             functionArgs = new Object[functionArgNodes.size()];
-            executeArguments(data, beanInfo, functionArgNodes, functionArgs, variables);
+            executeArguments(data, functionArgNodes, functionArgs, variables);
         }
 
         if (functionArgs.length < 2) {
@@ -632,6 +1596,32 @@ public class Executor {
         }
 
         Object collection = functionArgs[0];
+        int keyIndex = 1;
+        ValueResolver<Object> resolver;
+        while (keyIndex < functionArgs.length && (resolver = getValueResolver(collection)) != null) {
+            Object element;
+            try {
+                element = resolver.index(collection, functionArgs[keyIndex]);
+            } catch (RuntimeException e) {
+                throw new TemplateExecutionException(buildFunctionExecutionError("index", functionArgs, e), e);
+            }
+            if (element == ValueResolver.MISSING) {
+                break;
+            }
+            collection = unwrapValue(element);
+            keyIndex++;
+        }
+        if (keyIndex == functionArgs.length) {
+            return collection;
+        }
+        if (keyIndex > 1) {
+            // Continue with the built-in index from the last resolved element
+            Object[] remainingArgs = new Object[functionArgs.length - keyIndex + 1];
+            remainingArgs[0] = collection;
+            System.arraycopy(functionArgs, keyIndex, remainingArgs, 1, remainingArgs.length - 1);
+            functionArgs = remainingArgs;
+        }
+
         Object key = functionArgs[1];
         if (collection == null) {
             if (missingKeyPolicy == MissingKeyPolicy.ERROR) {
@@ -644,7 +1634,7 @@ public class Executor {
             if (!map.containsKey(key)) {
                 return handleMissingMapKey(String.valueOf(key), map);
             }
-            return unwrapOptional(map.get(key));
+            return unwrapValue(map.get(key));
         }
 
         Function indexFunction = functions.get("index");
@@ -705,13 +1695,13 @@ public class Executor {
         return message.toString();
     }
 
-    private Object executeShortCircuitFunction(String identifier, List<Node> cmdArgNodes, Object data, BeanInfo beanInfo,
+    private Object executeShortCircuitFunction(String identifier, List<Node> cmdArgNodes, Object data,
                                                Object finalValue, Map<String, Object> variables) throws TemplateExecutionException {
         List<Node> functionArgNodes = cmdArgNodes.subList(1, cmdArgNodes.size());
 
         Object last = null;
         for (Node argNode : functionArgNodes) {
-            last = executeArgument(argNode, data, beanInfo, variables);
+            last = executeArgument(argNode, data, variables);
             if ("and".equals(identifier) && !isTrue(last)) {
                 return last;
             }
@@ -733,14 +1723,14 @@ public class Executor {
         return last;
     }
 
-    private void executeArguments(Object data, BeanInfo beanInfo, List<Node> args, Object[] argumentValues, Map<String, Object> variables) throws TemplateExecutionException {
+    private void executeArguments(Object data, List<Node> args, Object[] argumentValues, Map<String, Object> variables) throws TemplateExecutionException {
         for (int i = 0; i < args.size(); i++) {
-            Object value = executeArgument(args.get(i), data, beanInfo, variables);
+            Object value = executeArgument(args.get(i), data, variables);
             argumentValues[i] = value;
         }
     }
 
-    private Object executeArgument(Node argument, Object data, BeanInfo beanInfo, Map<String, Object> variables) throws TemplateExecutionException {
+    private Object executeArgument(Node argument, Object data, Map<String, Object> variables) throws TemplateExecutionException {
         if (argument instanceof DotNode) {
             return data;
         }
@@ -770,6 +1760,10 @@ public class Executor {
             return null;
         }
 
+        if (argument instanceof ConstantNode) {
+            return ((ConstantNode) argument).getValue();
+        }
+
         if (argument instanceof FieldNode) {
             FieldNode fieldNode = (FieldNode) argument;
             return executeField(fieldNode, data);
@@ -780,45 +1774,17 @@ public class Executor {
         }
 
         if (argument instanceof ChainNode) {
-            return executeChain((ChainNode) argument, data, beanInfo, variables);
+            return executeChain((ChainNode) argument, data, variables);
         }
 
         if (argument instanceof PipeNode) {
             PipeNode pipeNode = (PipeNode) argument;
-            return executePipe(pipeNode, data, beanInfo, variables);
+            return executePipe(pipeNode, data, variables);
         }
 
         throw new TemplateExecutionException(String.format("can't extract value of argument %s", argument));
     }
 
-
-    /**
-     * Introspect the data object with unified ClassMetadata caching.
-     * <p>
-     * Performance note: BeanInfo is cached per Template instance via ClassMetadata to avoid repeated
-     * introspection operations during template execution. The cache shares the lifecycle
-     * of the Template, preventing memory leaks.
-     *
-     * @param data Data object for the template
-     * @return BeanInfo telling the details of data object
-     */
-    private BeanInfo getBeanInfo(Object data) {
-        Class<?> type = data.getClass();
-        ClassMetadata classMetadata = classMetadataCache.computeIfAbsent(type, ClassMetadata::new);
-        return classMetadata.getBeanInfo();
-    }
-
-
-    /**
-     * Get go style property name
-     *
-     * @param propertyDescriptorName Name of property in an object
-     * @return Go style property name
-     */
-    private String toGoStylePropertyName(String propertyDescriptorName) {
-        return Character.toUpperCase(propertyDescriptorName.charAt(0)) + propertyDescriptorName.substring(1);
-    }
-
     /**
      * Builds an enhanced error message when a field is not found.
      * <p>
@@ -902,7 +1868,18 @@ public class Executor {
      * @param value The result of the pipe evaluation
      * @return true if evaluation returns a positive result
      */
-    private boolean isTrue(Object value) {
+    private boolean isTrue(Object value) throws TemplateExecutionException {
+        if (value instanceof Lazy) {
+            value = unwrapValue(value);
+        }
+        ValueResolver<Object> resolver = getValueResolver(value);
+        if (resolver != null) {
+            try {
+                return resolver.isTrue(value);
+            } catch (RuntimeException e) {
+                throw new TemplateExecutionException(String.format("can't evaluate truth of %s", value), e);
+            }
+        }
         if (value instanceof Boolean) {
             return (Boolean) value;
         }
@@ -944,7 +1921,10 @@ public class Executor {
         return value != null;
     }
 
-    private void printValue(Writer writer, Object value) throws IOException {
+    private void printValue(Writer writer, Object value) throws IOException, TemplateExecutionException {
+        if (value instanceof Lazy) {
+            value = unwrapValue(value);
+        }
         if (value == null) {
             // Go template behavior: display "<no value>" for null
             printText(writer, NO_VALUE);
@@ -960,7 +1940,11 @@ public class Executor {
         }
     }
 
-    private void printText(Writer writer, String text) throws IOException {
+    private void printText(Writer writer, String text) throws IOException, TemplateLimitExceededException {
+        outputLength += text.length();
+        if (budget != null) {
+            budget.output(text.length());
+        }
         writer.write(text);
     }
 
@@ -0,0 +1,183 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.internal.ast.Node;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Store of rendered template output by template name and key.
+ * <p>
+ * Entries are also keyed by the identity of the parsed template body, so templates of the same name in different
+ * templates sharing the store do not see each other's output, and output of a template that has been parsed again
+ * is no longer used; it is evicted like any entry that is not read anymore.
+ * <p>
+ * Entries are kept in least recently used order and the least recently used entry is evicted once the store is
+ * full. Entries older than the time to live are dropped when next read. All operations hold the store's lock, which
+ * is only held for map operations, never while rendering.
+ */
+public final class FragmentStore {
+
+    private final int maximumSize;
+    private final Map<String, Function<Object, ?>> keyFunctions = new ConcurrentHashMap<>();
+
+    private volatile long timeToLiveNanos;
+    private volatile LongSupplier ticker = System::nanoTime;
+
+    // Guarded by this
+    private final LinkedHashMap<FragmentKey, Fragment> fragments = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public FragmentStore(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @param timeToLiveNanos how long an entry is kept after it is stored, {@code 0} to keep entries until evicted
+     */
+    public void setTimeToLiveNanos(long timeToLiveNanos) {
+        this.timeToLiveNanos = timeToLiveNanos;
+    }
+
+    public long getTimeToLiveNanos() {
+        return timeToLiveNanos;
+    }
+
+    public void setTicker(LongSupplier ticker) {
+        this.ticker = ticker;
+    }
+
+    public void setKeyFunction(String templateName, Function<Object, ?> keyFunction) {
+        if (keyFunction == null) {
+            keyFunctions.remove(templateName);
+        } else {
+            keyFunctions.put(templateName, keyFunction);
+        }
+    }
+
+    public boolean isCached(String templateName) {
+        return keyFunctions.containsKey(templateName);
+    }
+
+    /**
+     * Derives the key of an invocation of a template.
+     *
+     * @param body parsed body of the invoked template
+     * @return the key, or {@code null} if the output of this invocation is not cached
+     */
+    public Object keyFor(String templateName, Node body, Object data) {
+        Function<Object, ?> keyFunction = keyFunctions.get(templateName);
+        if (keyFunction == null) {
+            return null;
+        }
+        Object key = keyFunction.apply(data);
+        return key != null ? new FragmentKey(templateName, body, key) : null;
+    }
+
+    /**
+     * Returns the stored output for a key, or {@code null} if there is none or it has expired.
+     */
+    public synchronized char[] get(Object key) {
+        Fragment fragment = fragments.get(key);
+        if (fragment != null && isExpired(fragment, ticker.getAsLong())) {
+            fragments.remove(key);
+            evictions++;
+            fragment = null;
+        }
+        if (fragment == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return fragment.output;
+    }
+
+    public synchronized void put(Object key, char[] output) {
+        fragments.put((FragmentKey) key, new Fragment(output, ticker.getAsLong()));
+        Iterator<Fragment> eldest = fragments.values().iterator();
+        while (fragments.size() > maximumSize) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private boolean isExpired(Fragment fragment, long now) {
+        long timeToLive = timeToLiveNanos;
+        return timeToLive > 0 && now - fragment.storedAt >= timeToLive;
+    }
+
+    public synchronized void invalidate(String templateName) {
+        fragments.keySet().removeIf(key -> key.templateName.equals(templateName));
+    }
+
+    public synchronized void invalidateAll() {
+        fragments.clear();
+    }
+
+    public synchronized int size() {
+        return fragments.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static final class Fragment {
+        final char[] output;
+        final long storedAt;
+
+        Fragment(char[] output, long storedAt) {
+            this.output = output;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private static final class FragmentKey {
+        final String templateName;
+        final Node body;
+        final Object key;
+
+        FragmentKey(String templateName, Node body, Object key) {
+            this.templateName = templateName;
+            this.body = body;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FragmentKey)) {
+                return false;
+            }
+            FragmentKey other = (FragmentKey) o;
+            return templateName.equals(other.templateName) && body == other.body && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(templateName, System.identityHashCode(body), key);
+        }
+    }
+}
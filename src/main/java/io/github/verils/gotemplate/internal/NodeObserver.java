@@ -0,0 +1,27 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.internal.ast.BranchNode;
+import io.github.verils.gotemplate.internal.ast.PositionedNode;
+
+/**
+ * Observes the execution of the actions, blocks and template invocations of one execution. Calls come from the
+ * executing thread, in nesting order: every {@link #enter} is followed by the {@link #exit} of the same node, even
+ * when the node fails.
+ */
+public interface NodeObserver {
+
+    void enter(String templateName, PositionedNode node);
+
+    void exit(String templateName, PositionedNode node);
+
+    /**
+     * Returns a node as written in the template, without the body of blocks, such as {@code {{range .Orders}}}.
+     */
+    static String describe(PositionedNode node) {
+        if (node instanceof BranchNode) {
+            BranchNode branchNode = (BranchNode) node;
+            return "{{" + branchNode.getPipeNode().getContext() + " " + branchNode.getPipeNode() + "}}";
+        }
+        return node.toString();
+    }
+}
@@ -0,0 +1,204 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.internal.ast.PositionedNode;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures the time spent and the bytes allocated in each node of the executions run on the profiling thread.
+ * <p>
+ * The total of a node includes the nodes it executes, its self part excludes them. A node executed again before it
+ * exits, such as the invocation of a recursive template, adds its self part every time but its total only once, so
+ * totals never exceed the time of the execution. Allocations are measured when the runtime supports counting the
+ * bytes allocated by a thread, and are zero otherwise.
+ */
+public final class NodeProfiler implements NodeObserver {
+
+    private static final LongSupplier ALLOCATED_BYTES = allocatedBytesCounter();
+
+    private final Map<PositionedNode, Sample> samples = new IdentityHashMap<>();
+
+    // Nodes being executed, innermost last
+    private Frame[] frames = new Frame[16];
+    private int depth;
+
+    private long startTime;
+    private long startBytes;
+    private long totalTime;
+    private long allocatedBytes;
+
+    /**
+     * Returns whether the runtime measures the bytes allocated by a thread.
+     */
+    public static boolean isAllocationMeasured() {
+        return ALLOCATED_BYTES != null;
+    }
+
+    /**
+     * Starts measuring the execution as a whole.
+     */
+    public void start() {
+        startBytes = allocatedBytes();
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Stops measuring the execution as a whole.
+     */
+    public void stop() {
+        totalTime = System.nanoTime() - startTime;
+        allocatedBytes = allocatedBytes() - startBytes;
+    }
+
+    @Override
+    public void enter(String templateName, PositionedNode node) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = new Frame();
+            frames[depth] = frame;
+        }
+        depth++;
+        Sample sample = samples.get(node);
+        if (sample == null) {
+            sample = new Sample(templateName, node);
+            samples.put(node, sample);
+        }
+        sample.active++;
+        frame.sample = sample;
+        frame.childTime = 0;
+        frame.childBytes = 0;
+        frame.startBytes = allocatedBytes();
+        frame.startTime = System.nanoTime();
+    }
+
+    @Override
+    public void exit(String templateName, PositionedNode node) {
+        long time = System.nanoTime();
+        long bytes = allocatedBytes();
+        Frame frame = frames[--depth];
+        time -= frame.startTime;
+        bytes -= frame.startBytes;
+
+        Sample sample = frame.sample;
+        sample.count++;
+        sample.selfTime += time - frame.childTime;
+        sample.selfBytes += bytes - frame.childBytes;
+        if (--sample.active == 0) {
+            sample.totalTime += time;
+            sample.totalBytes += bytes;
+        }
+        if (depth > 0) {
+            frames[depth - 1].childTime += time;
+            frames[depth - 1].childBytes += bytes;
+        }
+    }
+
+    /**
+     * Returns the time of the execution as a whole, in nanoseconds.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Returns the bytes allocated by the execution as a whole.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the measurements of the executed nodes, in no particular order.
+     */
+    public Collection<Sample> getSamples() {
+        return samples.values();
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATED_BYTES != null ? ALLOCATED_BYTES.getAsLong() : 0;
+    }
+
+    /**
+     * Returns a counter of the bytes allocated by the current thread, or {@code null} if the runtime has none, as
+     * in images without the {@code jdk.management} module.
+     */
+    private static LongSupplier allocatedBytesCounter() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+                return null;
+            }
+            return () -> threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static final class Frame {
+        private Sample sample;
+        private long startTime;
+        private long startBytes;
+        private long childTime;
+        private long childBytes;
+    }
+
+    /**
+     * Measurements of one node. Times are in nanoseconds.
+     */
+    public static final class Sample {
+
+        private final String templateName;
+        private final PositionedNode node;
+        private long count;
+        private long totalTime;
+        private long selfTime;
+        private long totalBytes;
+        private long selfBytes;
+
+        // Executions of the node that have not exited yet
+        private int active;
+
+        private Sample(String templateName, PositionedNode node) {
+            this.templateName = templateName;
+            this.node = node;
+        }
+
+        public String getTemplateName() {
+            return templateName;
+        }
+
+        public PositionedNode getNode() {
+            return node;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        public long getSelfTime() {
+            return selfTime;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getSelfBytes() {
+            return selfBytes;
+        }
+    }
+}
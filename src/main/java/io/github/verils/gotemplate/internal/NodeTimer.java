@@ -0,0 +1,36 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.TemplateMetrics;
+import io.github.verils.gotemplate.internal.ast.PositionedNode;
+
+import java.util.Arrays;
+
+/**
+ * Reports the time spent in each node of a sampled execution to the metrics.
+ */
+final class NodeTimer implements NodeObserver {
+
+    private final TemplateMetrics metrics;
+
+    // Start times of the nodes being executed, innermost last
+    private long[] startTimes = new long[16];
+    private int depth;
+
+    NodeTimer(TemplateMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void enter(String templateName, PositionedNode node) {
+        if (depth == startTimes.length) {
+            startTimes = Arrays.copyOf(startTimes, depth * 2);
+        }
+        startTimes[depth++] = System.nanoTime();
+    }
+
+    @Override
+    public void exit(String templateName, PositionedNode node) {
+        long duration = System.nanoTime() - startTimes[--depth];
+        metrics.nodeExecuted(templateName, node.getLine(), node.getColumn(), NodeObserver.describe(node), duration);
+    }
+}
@@ -112,6 +112,7 @@ public class Parser {
                     listNode.append(commentNode);
                     break;
                 case LEFT_DELIM:
+                    Token leftDelimiter = token;
                     token = moveToNextNonSpaceToken(lexer, state);
                     if (token == null) {
                         throwUnexpectError("unclosed delimiter: " + lexer.getLeftDelimiter(), lookNextItem(lexer, state));
@@ -128,6 +129,7 @@ public class Parser {
 
                     // Stop parsing list in current context, keep the last node, let the method caller handles it
                     Node lastNode = listNode.getLast();
+                    setPosition(lastNode, leftDelimiter);
                     if (lastNode instanceof ElseNode) {
                         break loop;
                     }
@@ -143,6 +145,15 @@ public class Parser {
     }
 
 
+    /**
+     * Records where an action starts in the source, for the nodes whose execution can be observed.
+     */
+    private static void setPosition(Node node, Token token) {
+        if (node instanceof PositionedNode) {
+            ((PositionedNode) node).setPosition(token.line(), token.column());
+        }
+    }
+
     private void parseAction(ListNode listNode, Lexer lexer, State state) throws TemplateParseException {
         Token token = moveToNextNonSpaceToken(lexer, state);
         if (token == null) {
@@ -432,6 +443,7 @@ public class Parser {
 
                     ListNode elseListNode = new ListNode();
                     parseIf(elseListNode, lexer, state);
+                    setPosition(elseListNode.getLast(), token);
                     branchNode.setElseListNode(elseListNode);
 
                     return;
@@ -443,6 +455,7 @@ public class Parser {
 
                 ListNode elseListNode = new ListNode();
                 parseWith(elseListNode, lexer, state);
+                setPosition(elseListNode.getLast(), token);
                 branchNode.setElseListNode(elseListNode);
 
                 return;
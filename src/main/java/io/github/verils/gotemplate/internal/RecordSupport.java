@@ -0,0 +1,76 @@
+package io.github.verils.gotemplate.internal;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Access to record components on runtimes that have records, while the library itself targets Java 11.
+ * <p>
+ * {@code Class.isRecord()} and {@code Class.getRecordComponents()} are looked up once; on older runtimes no class
+ * is a record.
+ */
+final class RecordSupport {
+
+    private static final Method IS_RECORD;
+    private static final Method GET_RECORD_COMPONENTS;
+    private static final Method GET_NAME;
+    private static final Method GET_ACCESSOR;
+
+    static {
+        Method isRecord = null;
+        Method getRecordComponents = null;
+        Method getName = null;
+        Method getAccessor = null;
+        try {
+            isRecord = Class.class.getMethod("isRecord");
+            getRecordComponents = Class.class.getMethod("getRecordComponents");
+            Class<?> recordComponent = getRecordComponents.getReturnType().getComponentType();
+            getName = recordComponent.getMethod("getName");
+            getAccessor = recordComponent.getMethod("getAccessor");
+        } catch (NoSuchMethodException e) {
+            isRecord = null;
+        }
+        IS_RECORD = isRecord;
+        GET_RECORD_COMPONENTS = getRecordComponents;
+        GET_NAME = getName;
+        GET_ACCESSOR = getAccessor;
+    }
+
+    private RecordSupport() {
+    }
+
+    static boolean isRecord(Class<?> clazz) {
+        if (IS_RECORD == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_RECORD.invoke(clazz);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the accessor methods of a record's components in declaration order.
+     *
+     * @param clazz class to inspect
+     * @return component name to accessor, empty if the class is not a record
+     */
+    static Map<String, Method> getComponentAccessors(Class<?> clazz) {
+        if (!isRecord(clazz)) {
+            return Collections.emptyMap();
+        }
+        try {
+            Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(clazz);
+            Map<String, Method> accessors = new LinkedHashMap<>();
+            for (Object component : components) {
+                accessors.put((String) GET_NAME.invoke(component), (Method) GET_ACCESSOR.invoke(component));
+            }
+            return accessors;
+        } catch (ReflectiveOperationException e) {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.TemplateExecutionException;
+import io.github.verils.gotemplate.internal.ast.*;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Partially evaluates a template against the static part of its data.
+ * <p>
+ * Fields under the static paths, accessed as {@code .Path} where dot is still the data or as {@code $.Path}
+ * anywhere in the template, are evaluated against the static data and replaced by constant nodes. {@code if}
+ * blocks whose condition is such a field are replaced by the branch the condition selects. Everything else is left
+ * for the execution with the dynamic data, where the constant folder pre-renders the parts that became constant.
+ * Fields that can not be evaluated are left as they are, so that the execution reports the error.
+ * <p>
+ * Nodes are copied on write: the parsed nodes are never modified, and subtrees without static fields are shared
+ * with the original template.
+ */
+public final class Specializer {
+
+    private final Executor evaluator;
+    private final Object staticData;
+    private final Set<String> staticPaths;
+
+    public Specializer(Executor evaluator, Object staticData, Set<String> staticPaths) {
+        this.evaluator = evaluator;
+        this.staticData = staticData;
+        this.staticPaths = staticPaths;
+    }
+
+    /**
+     * Returns the residual of a template body, or the body itself if it accesses no static field.
+     */
+    public ListNode specialize(ListNode listNode) {
+        return rewriteList(listNode, true);
+    }
+
+    private ListNode rewriteList(ListNode listNode, boolean dotIsRoot) {
+        if (listNode == null) {
+            return null;
+        }
+        ListNode rewritten = new ListNode();
+        boolean changed = false;
+        for (Node node : listNode) {
+            Node rewrittenNode = rewrite(node, dotIsRoot);
+            changed |= rewrittenNode != node;
+            rewritten.append(rewrittenNode);
+        }
+        return changed ? rewritten : listNode;
+    }
+
+    private Node rewrite(Node node, boolean dotIsRoot) {
+        if (node instanceof ListNode) {
+            return rewriteList((ListNode) node, dotIsRoot);
+        }
+        if (node instanceof ActionNode) {
+            PipeNode pipeNode = ((ActionNode) node).getPipeNode();
+            PipeNode rewrittenPipe = rewritePipe(pipeNode, dotIsRoot);
+            if (rewrittenPipe == pipeNode) {
+                return node;
+            }
+            ActionNode actionNode = new ActionNode();
+            actionNode.setPipeNode(rewrittenPipe);
+            actionNode.setPosition(((ActionNode) node).getLine(), ((ActionNode) node).getColumn());
+            return actionNode;
+        }
+        if (node instanceof IfNode) {
+            return rewriteIf((IfNode) node, dotIsRoot);
+        }
+        if (node instanceof RangeNode) {
+            return rewriteBranch((BranchNode) node, new RangeNode(), dotIsRoot);
+        }
+        if (node instanceof WithNode) {
+            return rewriteBranch((BranchNode) node, new WithNode(), dotIsRoot);
+        }
+        if (node instanceof TemplateNode) {
+            TemplateNode templateNode = (TemplateNode) node;
+            PipeNode rewrittenPipe = rewritePipe(templateNode.getPipeNode(), dotIsRoot);
+            if (rewrittenPipe == templateNode.getPipeNode()) {
+                return node;
+            }
+            TemplateNode rewritten = new TemplateNode(templateNode.getName());
+            rewritten.setPipeNode(rewrittenPipe);
+            rewritten.setPosition(templateNode.getLine(), templateNode.getColumn());
+            return rewritten;
+        }
+        return node;
+    }
+
+    private Node rewriteIf(IfNode ifNode, boolean dotIsRoot) {
+        PipeNode pipeNode = rewritePipe(ifNode.getPipeNode(), dotIsRoot);
+        ListNode ifListNode = rewriteList(ifNode.getIfListNode(), dotIsRoot);
+        ListNode elseListNode = rewriteList(ifNode.getElseListNode(), dotIsRoot);
+
+        Boolean condition = evaluateCondition(pipeNode);
+        if (condition != null) {
+            ListNode selected = condition ? ifListNode : elseListNode;
+            if (selected == null) {
+                return new ListNode();
+            }
+            return declaresVariables(selected) ? scoped(ifNode, selected) : selected;
+        }
+        if (pipeNode == ifNode.getPipeNode() && ifListNode == ifNode.getIfListNode()
+                && elseListNode == ifNode.getElseListNode()) {
+            return ifNode;
+        }
+        IfNode rewritten = new IfNode();
+        rewritten.setPosition(ifNode.getLine(), ifNode.getColumn());
+        rewritten.setPipeNode(pipeNode);
+        rewritten.setIfListNode(ifListNode);
+        rewritten.setElseListNode(elseListNode);
+        return rewritten;
+    }
+
+    private static boolean declaresVariables(ListNode listNode) {
+        for (Node node : listNode) {
+            if (node instanceof ActionNode && ((ActionNode) node).getPipeNode().getVariableCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wraps a branch in an {@code if} block that always runs it, keeping the variables it declares or assigns
+     * scoped to the branch.
+     */
+    private static IfNode scoped(IfNode ifNode, ListNode branch) {
+        CommandNode commandNode = new CommandNode();
+        commandNode.append(new ConstantNode(Boolean.TRUE));
+        PipeNode pipeNode = new PipeNode("if");
+        pipeNode.append(commandNode);
+
+        IfNode scoped = new IfNode();
+        scoped.setPosition(ifNode.getLine(), ifNode.getColumn());
+        scoped.setPipeNode(pipeNode);
+        scoped.setIfListNode(branch);
+        return scoped;
+    }
+
+    /**
+     * Rewrites {@code range} and {@code with} blocks, whose body runs with another dot.
+     */
+    private Node rewriteBranch(BranchNode branchNode, BranchNode rewritten, boolean dotIsRoot) {
+        PipeNode pipeNode = rewritePipe(branchNode.getPipeNode(), dotIsRoot);
+        ListNode ifListNode = rewriteList(branchNode.getIfListNode(), false);
+        ListNode elseListNode = rewriteList(branchNode.getElseListNode(), dotIsRoot);
+        if (pipeNode == branchNode.getPipeNode() && ifListNode == branchNode.getIfListNode()
+                && elseListNode == branchNode.getElseListNode()) {
+            return branchNode;
+        }
+        rewritten.setPosition(branchNode.getLine(), branchNode.getColumn());
+        rewritten.setPipeNode(pipeNode);
+        rewritten.setIfListNode(ifListNode);
+        rewritten.setElseListNode(elseListNode);
+        return rewritten;
+    }
+
+    /**
+     * Returns the truth of a condition that is a single constant, {@code null} for any other condition.
+     */
+    private Boolean evaluateCondition(PipeNode pipeNode) {
+        List<CommandNode> commands = pipeNode.getCommands();
+        if (pipeNode.getVariableCount() > 0 || commands.size() != 1 || commands.get(0).getArgumentCount() != 1
+                || !(commands.get(0).getFirstArgument() instanceof ConstantNode)) {
+            return null;
+        }
+        try {
+            return evaluator.evaluateTruth(((ConstantNode) commands.get(0).getFirstArgument()).getValue());
+        } catch (TemplateExecutionException e) {
+            return null;
+        }
+    }
+
+    private PipeNode rewritePipe(PipeNode pipeNode, boolean dotIsRoot) {
+        if (pipeNode == null) {
+            return null;
+        }
+        PipeNode rewritten = new PipeNode(pipeNode.getContext());
+        boolean changed = false;
+        for (CommandNode command : pipeNode.getCommands()) {
+            CommandNode rewrittenCommand = new CommandNode();
+            for (Node argument : command.getArguments()) {
+                Node rewrittenArgument = rewriteArgument(argument, dotIsRoot);
+                changed |= rewrittenArgument != argument;
+                rewrittenCommand.append(rewrittenArgument);
+            }
+            rewritten.append(rewrittenCommand);
+        }
+        if (!changed) {
+            return pipeNode;
+        }
+        pipeNode.getVariables().forEach(rewritten::append);
+        return rewritten;
+    }
+
+    private Node rewriteArgument(Node argument, boolean dotIsRoot) {
+        if (argument instanceof FieldNode) {
+            return dotIsRoot ? evaluate(argument, ((FieldNode) argument).getIdentifiers(), 0) : argument;
+        }
+        if (argument instanceof VariableNode) {
+            String[] identifiers = ((VariableNode) argument).getIdentifiers();
+            return "$".equals(identifiers[0]) ? evaluate(argument, identifiers, 1) : argument;
+        }
+        if (argument instanceof PipeNode) {
+            return rewritePipe((PipeNode) argument, dotIsRoot);
+        }
+        if (argument instanceof ChainNode) {
+            ChainNode chainNode = (ChainNode) argument;
+            Node node = rewriteArgument(chainNode.getNode(), dotIsRoot);
+            if (node == chainNode.getNode()) {
+                return argument;
+            }
+            ChainNode rewritten = new ChainNode(node);
+            chainNode.getFields().forEach(field -> rewritten.append("." + field));
+            return rewritten;
+        }
+        return argument;
+    }
+
+    private Node evaluate(Node argument, String[] identifiers, int start) {
+        if (!isStatic(identifiers, start)) {
+            return argument;
+        }
+        try {
+            return new ConstantNode(evaluator.evaluateField(identifiers, start, staticData));
+        } catch (TemplateExecutionException e) {
+            return argument;
+        }
+    }
+
+    private boolean isStatic(String[] identifiers, int start) {
+        StringBuilder path = new StringBuilder();
+        for (int i = start; i < identifiers.length; i++) {
+            if (i > start) {
+                path.append('.');
+            }
+            path.append(identifiers[i]);
+            if (staticPaths.contains(path.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.ValueResolver;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable set of {@link ValueResolver}s by registered type.
+ * <p>
+ * The resolver of a runtime class is looked up once and cached: the resolver registered for the class itself, or
+ * else for its nearest superclass, or else for the first of its interfaces, breadth first. Registering a resolver
+ * returns a new set, so templates copied from each other never see each other's registrations.
+ */
+public final class ValueResolvers {
+
+    private static final ValueResolvers EMPTY = new ValueResolvers(Collections.emptyMap());
+
+    private final Map<Class<?>, ValueResolver<?>> registered;
+
+    // Resolver by runtime class, an empty Optional for classes without resolver
+    private final Map<Class<?>, Optional<ValueResolver<Object>>> resolved = new ConcurrentHashMap<>();
+
+    private ValueResolvers(Map<Class<?>, ValueResolver<?>> registered) {
+        this.registered = registered;
+    }
+
+    public static ValueResolvers empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a set with the resolver registered for a type, replacing any resolver registered for the same type.
+     *
+     * @param type     the type
+     * @param resolver the resolver
+     * @return new set of resolvers
+     */
+    public ValueResolvers with(Class<?> type, ValueResolver<?> resolver) {
+        Map<Class<?>, ValueResolver<?>> registered = new LinkedHashMap<>(this.registered);
+        registered.put(type, resolver);
+        return new ValueResolvers(Collections.unmodifiableMap(registered));
+    }
+
+    public boolean isEmpty() {
+        return registered.isEmpty();
+    }
+
+    /**
+     * Returns the registered resolvers by type, in registration order.
+     *
+     * @return unmodifiable map of resolvers
+     */
+    public Map<Class<?>, ValueResolver<?>> asMap() {
+        return registered;
+    }
+
+    /**
+     * Returns the resolver to use for values of a class.
+     *
+     * @param type the runtime class of a value
+     * @return the resolver, or {@code null} if no resolver applies
+     */
+    public ValueResolver<Object> get(Class<?> type) {
+        if (registered.isEmpty()) {
+            return null;
+        }
+        return resolved.computeIfAbsent(type, this::find).orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<ValueResolver<Object>> find(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            ValueResolver<?> resolver = registered.get(current);
+            if (resolver != null) {
+                return Optional.of((ValueResolver<Object>) resolver);
+            }
+        }
+
+        Deque<Class<?>> interfaces = new ArrayDeque<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            Collections.addAll(interfaces, current.getInterfaces());
+        }
+        while (!interfaces.isEmpty()) {
+            Class<?> current = interfaces.poll();
+            ValueResolver<?> resolver = registered.get(current);
+            if (resolver != null) {
+                return Optional.of((ValueResolver<Object>) resolver);
+            }
+            Collections.addAll(interfaces, current.getInterfaces());
+        }
+        return Optional.empty();
+    }
+}
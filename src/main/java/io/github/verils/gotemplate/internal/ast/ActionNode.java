@@ -1,9 +1,12 @@
 package io.github.verils.gotemplate.internal.ast;
 
-public class ActionNode implements Node {
+public class ActionNode implements PositionedNode {
 
     private PipeNode pipeNode;
 
+    private int line;
+    private int column;
+
     public PipeNode getPipeNode() {
         return pipeNode;
     }
@@ -12,6 +15,22 @@ public class ActionNode implements Node {
         this.pipeNode = pipeNode;
     }
 
+    @Override
+    public void setPosition(int line, int column) {
+        this.line = line;
+        this.column = column;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getColumn() {
+        return column;
+    }
+
     @Override
     public String toString() {
         String pipe = pipeNode != null ? pipeNode.toString() : "";
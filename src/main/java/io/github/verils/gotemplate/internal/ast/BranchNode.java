@@ -1,11 +1,14 @@
 package io.github.verils.gotemplate.internal.ast;
 
-public abstract class BranchNode implements Node {
+public abstract class BranchNode implements PositionedNode {
 
     private PipeNode pipeNode;
     private ListNode ifListNode;
     private ListNode elseListNode;
 
+    private int line;
+    private int column;
+
     public PipeNode getPipeNode() {
         return pipeNode;
     }
@@ -30,6 +33,22 @@ public abstract class BranchNode implements Node {
         this.elseListNode = elseListNode;
     }
 
+    @Override
+    public void setPosition(int line, int column) {
+        this.line = line;
+        this.column = column;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getColumn() {
+        return column;
+    }
+
     @Override
     public String toString() {
         String name = pipeNode.getContext();
@@ -0,0 +1,22 @@
+package io.github.verils.gotemplate.internal.ast;
+
+/**
+ * A value computed before execution, such as a field of the static data a template was specialized for.
+ */
+public class ConstantNode implements Node {
+
+    private final Object value;
+
+    public ConstantNode(Object value) {
+        this.value = value;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.verils.gotemplate.internal.ast;
+
+/**
+ * A node that starts an action in the template source, whose execution can be observed.
+ */
+public interface PositionedNode extends Node {
+
+    /**
+     * Sets the position of the action in the template source, starting at line 1 and column 1.
+     */
+    void setPosition(int line, int column);
+
+    int getLine();
+
+    int getColumn();
+}
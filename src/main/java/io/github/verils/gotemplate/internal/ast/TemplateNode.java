@@ -2,12 +2,15 @@ package io.github.verils.gotemplate.internal.ast;
 
 import io.github.verils.gotemplate.internal.lang.StringUtils;
 
-public class TemplateNode implements Node {
+public class TemplateNode implements PositionedNode {
 
     private final String name;
 
     private PipeNode pipeNode;
 
+    private int line;
+    private int column;
+
     public TemplateNode(String name) {
         this.name = name;
     }
@@ -24,6 +27,22 @@ public class TemplateNode implements Node {
         this.pipeNode = pipeNode;
     }
 
+    @Override
+    public void setPosition(int line, int column) {
+        this.line = line;
+        this.column = column;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getColumn() {
+        return column;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,21 @@
+package io.github.verils.gotemplate.internal.jfr;
+
+import jdk.jfr.*;
+
+@Name("io.github.verils.gotemplate.Execution")
+@Label("Template Execution")
+@Category("Go Templates")
+@Description("Execution of a template")
+@Enabled(false)
+public final class ExecutionEvent extends Event {
+
+    @Label("Template Name")
+    String templateName;
+
+    @Label("Output Length")
+    @Description("Number of characters written")
+    long outputLength;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,22 @@
+package io.github.verils.gotemplate.internal.jfr;
+
+import jdk.jfr.*;
+
+@Name("io.github.verils.gotemplate.FieldResolution")
+@Label("Template Field Resolution")
+@Category("Go Templates")
+@Description("Resolution of a field of an object by a value resolver or by reflection, map keys are not reported")
+@Enabled(false)
+@StackTrace(false)
+public final class FieldResolutionEvent extends Event {
+
+    @Label("Data Class")
+    Class<?> dataClass;
+
+    @Label("Identifier")
+    String identifier;
+
+    @Label("Resolution")
+    @Description("How the field was resolved: value resolver, record component, field, method or missing")
+    String resolution;
+}
@@ -0,0 +1,22 @@
+package io.github.verils.gotemplate.internal.jfr;
+
+/**
+ * Whether JDK Flight Recorder is available. Runtimes built without the {@code jdk.jfr} module, such as minimal
+ * jlink images, run templates without emitting events; {@link TemplateEvents} must only be used when this is true.
+ */
+public final class JfrSupport {
+
+    public static final boolean AVAILABLE = isAvailable();
+
+    private JfrSupport() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.verils.gotemplate.internal.jfr;
+
+import jdk.jfr.*;
+
+@Name("io.github.verils.gotemplate.Parse")
+@Label("Template Parse")
+@Category("Go Templates")
+@Description("Parsing of template source")
+@Enabled(false)
+public final class ParseEvent extends Event {
+
+    @Label("Template Name")
+    String templateName;
+
+    @Label("Source Length")
+    @Description("Number of characters of the parsed source")
+    int sourceLength;
+
+    @Label("Template Count")
+    @Description("Number of templates defined by the source")
+    int templateCount;
+
+    @Label("Failed")
+    boolean failed;
+}
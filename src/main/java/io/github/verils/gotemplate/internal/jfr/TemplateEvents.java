@@ -0,0 +1,87 @@
+package io.github.verils.gotemplate.internal.jfr;
+
+/**
+ * Emits the Flight Recorder events of template parsing and execution.
+ * <p>
+ * Each {@code begin} method returns {@code null} unless its event is enabled in a running recording, so call sites
+ * only pay for a check while nothing is recorded. The returned object is passed back to the matching
+ * {@code commit} method once the measured work is done. Events are typed as {@link Object} at call sites so that
+ * classes using them load without the {@code jdk.jfr} module; see {@link JfrSupport#AVAILABLE}.
+ */
+public final class TemplateEvents {
+
+    // Instances used to check whether an event is enabled, which does not depend on the instance
+    private static final ParseEvent PARSE = new ParseEvent();
+    private static final ExecutionEvent EXECUTION = new ExecutionEvent();
+    private static final TemplateInvocationEvent TEMPLATE_INVOCATION = new TemplateInvocationEvent();
+    private static final FieldResolutionEvent FIELD_RESOLUTION = new FieldResolutionEvent();
+
+    private TemplateEvents() {
+    }
+
+    public static Object beginParse() {
+        return PARSE.isEnabled() ? begin(new ParseEvent()) : null;
+    }
+
+    public static void commitParse(Object event, String templateName, int sourceLength, int templateCount,
+                                   boolean failed) {
+        ParseEvent parseEvent = (ParseEvent) event;
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.templateName = templateName;
+            parseEvent.sourceLength = sourceLength;
+            parseEvent.templateCount = templateCount;
+            parseEvent.failed = failed;
+            parseEvent.commit();
+        }
+    }
+
+    public static Object beginExecution() {
+        return EXECUTION.isEnabled() ? begin(new ExecutionEvent()) : null;
+    }
+
+    public static void commitExecution(Object event, String templateName, long outputLength, boolean failed) {
+        ExecutionEvent executionEvent = (ExecutionEvent) event;
+        executionEvent.end();
+        if (executionEvent.shouldCommit()) {
+            executionEvent.templateName = templateName;
+            executionEvent.outputLength = outputLength;
+            executionEvent.failed = failed;
+            executionEvent.commit();
+        }
+    }
+
+    public static Object beginTemplateInvocation() {
+        return TEMPLATE_INVOCATION.isEnabled() ? begin(new TemplateInvocationEvent()) : null;
+    }
+
+    public static void commitTemplateInvocation(Object event, String templateName, String callerName) {
+        TemplateInvocationEvent invocationEvent = (TemplateInvocationEvent) event;
+        invocationEvent.end();
+        if (invocationEvent.shouldCommit()) {
+            invocationEvent.templateName = templateName;
+            invocationEvent.callerName = callerName;
+            invocationEvent.commit();
+        }
+    }
+
+    public static Object beginFieldResolution() {
+        return FIELD_RESOLUTION.isEnabled() ? begin(new FieldResolutionEvent()) : null;
+    }
+
+    public static void commitFieldResolution(Object event, Class<?> dataClass, String identifier, String resolution) {
+        FieldResolutionEvent resolutionEvent = (FieldResolutionEvent) event;
+        resolutionEvent.end();
+        if (resolutionEvent.shouldCommit()) {
+            resolutionEvent.dataClass = dataClass;
+            resolutionEvent.identifier = identifier;
+            resolutionEvent.resolution = resolution;
+            resolutionEvent.commit();
+        }
+    }
+
+    private static <T extends jdk.jfr.Event> T begin(T event) {
+        event.begin();
+        return event;
+    }
+}
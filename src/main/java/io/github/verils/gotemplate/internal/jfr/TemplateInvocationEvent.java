@@ -0,0 +1,19 @@
+package io.github.verils.gotemplate.internal.jfr;
+
+import jdk.jfr.*;
+
+@Name("io.github.verils.gotemplate.TemplateInvocation")
+@Label("Template Invocation")
+@Category("Go Templates")
+@Description("Execution of a template invoked with {{template}}")
+@Enabled(false)
+@StackTrace(false)
+public final class TemplateInvocationEvent extends Event {
+
+    @Label("Template Name")
+    String templateName;
+
+    @Label("Caller Name")
+    @Description("Name of the template containing the invocation")
+    String callerName;
+}
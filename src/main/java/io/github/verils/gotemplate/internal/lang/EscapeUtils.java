@@ -0,0 +1,217 @@
+package io.github.verils.gotemplate.internal.lang;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Table driven escaping for HTML, JavaScript, CSS and URL output.
+ * <p>
+ * Every escaping context owns a replacement table indexed by ASCII code; a {@code null} entry means the character
+ * is written unchanged. The tables are built once, so escaping is a single scan over the input, and inputs which
+ * contain nothing to escape are returned as is without copying.
+ */
+public final class EscapeUtils {
+
+    private static final int NON_ASCII_KEEP = 0;
+    private static final int NON_ASCII_JS = 1;
+    private static final int NON_ASCII_PERCENT = 2;
+    private static final int NON_ASCII_CSS = 3;
+
+    private static final String[] HTML = new String[128];
+    private static final String[] HTML_NOSPACE = new String[128];
+    private static final String[] JS = new String[128];
+    private static final String[] JS_STRICT = new String[128];
+    private static final String[] JS_TEMPLATE = new String[128];
+    private static final String[] CSS = new String[128];
+    private static final String[] URL_QUERY = new String[128];
+    private static final String[] URL_NORMALIZE = new String[128];
+
+    static {
+        HTML['&'] = "&amp;";
+        HTML['<'] = "&lt;";
+        HTML['>'] = "&gt;";
+        HTML['"'] = "&quot;";
+        HTML['\''] = "&#39;";
+
+        System.arraycopy(HTML, 0, HTML_NOSPACE, 0, HTML.length);
+        for (char c : new char[]{' ', '\t', '\n', '\f', '\r', '=', '`'}) {
+            HTML_NOSPACE[c] = "&#" + (int) c + ";";
+        }
+
+        for (int c = 0; c < 128; c++) {
+            if (c < 32 || c > 126) {
+                JS[c] = String.format("\\u%04x", c);
+            }
+        }
+        JS['\\'] = "\\\\";
+        JS['"'] = "\\\"";
+        JS['\''] = "\\'";
+        JS['\n'] = "\\n";
+        JS['\r'] = "\\r";
+        JS['\t'] = "\\t";
+
+        // Inside <script> and event handler attributes the escaped text must not be able to close the element or the
+        // string, or be read as markup.
+        System.arraycopy(JS, 0, JS_STRICT, 0, JS.length);
+        for (char c : new char[]{'<', '>', '&', '=', '`', '/', '+'}) {
+            JS_STRICT[c] = String.format("\\u%04x", (int) c);
+        }
+
+        // Inside a template literal it must also not be able to start a substitution.
+        System.arraycopy(JS_STRICT, 0, JS_TEMPLATE, 0, JS_STRICT.length);
+        for (char c : new char[]{'$', '{', '}'}) {
+            JS_TEMPLATE[c] = String.format("\\u%04x", (int) c);
+        }
+
+        for (int c = 0; c < 128; c++) {
+            if (!isAsciiAlphanumeric(c)) {
+                CSS[c] = "\\" + Integer.toHexString(c) + " ";
+                URL_QUERY[c] = percentEncode(c);
+                URL_NORMALIZE[c] = percentEncode(c);
+            }
+        }
+        for (char c : "-._~".toCharArray()) {
+            URL_QUERY[c] = null;
+        }
+        for (char c : "-._~!#$&'()*+,/:;=?@[]%".toCharArray()) {
+            URL_NORMALIZE[c] = null;
+        }
+    }
+
+    private EscapeUtils() {
+    }
+
+    /**
+     * Escape the five HTML special characters {@code & < > " '}, for text and quoted attribute values.
+     *
+     * @param input text to escape
+     * @return escaped text, or {@code input} itself when nothing needs escaping
+     */
+    public static String escapeHtml(String input) {
+        return escape(input, HTML, NON_ASCII_KEEP);
+    }
+
+    /**
+     * Escape text for an unquoted attribute value, which additionally must not contain whitespace, {@code =} or
+     * backticks.
+     *
+     * @param input text to escape
+     * @return escaped text, or {@code input} itself when nothing needs escaping
+     */
+    public static String escapeHtmlNoSpace(String input) {
+        return escape(input, HTML_NOSPACE, NON_ASCII_KEEP);
+    }
+
+    /**
+     * Escape text as the body of a JavaScript string literal, keeping the output of the {@code js} builtin.
+     *
+     * @param input text to escape
+     * @return escaped text, or {@code input} itself when nothing needs escaping
+     */
+    public static String escapeJs(String input) {
+        return escape(input, JS, NON_ASCII_JS);
+    }
+
+    /**
+     * Escape text as the body of a JavaScript string literal embedded in HTML. Compared to {@link #escapeJs(String)}
+     * this also escapes characters which could close the surrounding element or attribute.
+     *
+     * @param input text to escape
+     * @return escaped text, or {@code input} itself when nothing needs escaping
+     */
+    public static String escapeJsStrict(String input) {
+        return escape(input, JS_STRICT, NON_ASCII_JS);
+    }
+
+    /**
+     * Escape text as the body of a JavaScript template literal embedded in HTML. Compared to
+     * {@link #escapeJsStrict(String)} this also escapes the dollar sign and braces, so the text
+     * can not start a substitution.
+     *
+     * @param input text to escape
+     * @return escaped text, or {@code input} itself when nothing needs escaping
+     */
+    public static String escapeJsTemplate(String input) {
+        return escape(input, JS_TEMPLATE, NON_ASCII_JS);
+    }
+
+    /**
+     * Escape text for use inside a CSS value, hex escaping every character that is not a letter or digit.
+     *
+     * @param input text to escape
+     * @return escaped text, or {@code input} itself when nothing needs escaping
+     */
+    public static String escapeCss(String input) {
+        return escape(input, CSS, NON_ASCII_CSS);
+    }
+
+    /**
+     * Percent encode text for a URL query or fragment component. Only unreserved characters are kept.
+     *
+     * @param input text to escape
+     * @return escaped text, or {@code input} itself when nothing needs escaping
+     */
+    public static String escapeUrlQuery(String input) {
+        return escape(input, URL_QUERY, NON_ASCII_PERCENT);
+    }
+
+    /**
+     * Normalize a URL by percent encoding characters which are not allowed in URLs, keeping reserved characters
+     * and existing escapes.
+     *
+     * @param input text to escape
+     * @return escaped text, or {@code input} itself when nothing needs escaping
+     */
+    public static String normalizeUrl(String input) {
+        return escape(input, URL_NORMALIZE, NON_ASCII_PERCENT);
+    }
+
+    private static String escape(String input, String[] table, int nonAscii) {
+        int length = input.length();
+        int i = 0;
+        while (i < length && !needsEscape(input.charAt(i), table, nonAscii)) {
+            i++;
+        }
+        if (i == length) {
+            return input;
+        }
+
+        StringBuilder sb = new StringBuilder(length + 16);
+        sb.append(input, 0, i);
+        for (; i < length; i++) {
+            char c = input.charAt(i);
+            if (c < 128) {
+                String replacement = table[c];
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(c);
+                }
+            } else if (nonAscii == NON_ASCII_JS) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else if (nonAscii == NON_ASCII_CSS) {
+                sb.append('\\').append(Integer.toHexString(c)).append(' ');
+            } else if (nonAscii == NON_ASCII_PERCENT) {
+                int end = Character.isHighSurrogate(c) && i + 1 < length ? i + 2 : i + 1;
+                for (byte b : input.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    sb.append(percentEncode(b & 0xFF));
+                }
+                i = end - 1;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean needsEscape(char c, String[] table, int nonAscii) {
+        return c < 128 ? table[c] != null : nonAscii != NON_ASCII_KEEP;
+    }
+
+    private static boolean isAsciiAlphanumeric(int c) {
+        return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z') || ('0' <= c && c <= '9');
+    }
+
+    private static String percentEncode(int b) {
+        return String.format("%%%02X", b);
+    }
+}
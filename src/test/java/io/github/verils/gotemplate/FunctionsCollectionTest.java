@@ -7,7 +7,11 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
@@ -15,6 +19,7 @@ import static io.github.verils.gotemplate.TemplateTestSupport.data;
 import static io.github.verils.gotemplate.TemplateTestSupport.render;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
@@ -146,9 +151,74 @@ class FunctionsCollectionTest {
         assertEquals(0, java.lang.reflect.Array.getLength(result));
     }
 
+    @Test
+    void sliceReturnsEmptyArrayForNegativeEnd() {
+        assertArrayEquals(new String[0], (String[]) TemplateTestSupport.invoke("slice", new String[]{"a", "b"}, 0, -1));
+        assertArrayEquals(new int[0], (int[]) TemplateTestSupport.invoke("slice", new int[]{1, 2}, -3, -1));
+        assertArrayEquals(new int[0], (int[]) TemplateTestSupport.invoke("slice", new int[]{1, 2}, 5, 6));
+        assertEquals(Collections.emptyList(), TemplateTestSupport.invoke("slice", Arrays.asList("a", "b"), 0, -1));
+    }
+
     @Test
     void sliceRejectsInvalidArgumentCountsAndTypes() {
         assertThrows(IllegalArgumentException.class, () -> TemplateTestSupport.invoke("slice", "abc", 0));
         assertThrows(IllegalArgumentException.class, () -> TemplateTestSupport.invoke("slice", 42, 0, 1));
     }
+
+    @ParameterizedTest
+    @MethodSource("primitiveArrays")
+    void lenIndexAndSliceSupportPrimitiveArrays(Object array, Object second) {
+        assertEquals(3, TemplateTestSupport.invoke("len", array));
+        assertEquals(second, TemplateTestSupport.invoke("index", array, 1));
+        assertNull(TemplateTestSupport.invoke("index", array, 3));
+        Object sliced = TemplateTestSupport.invoke("slice", array, 1, 5);
+        assertEquals(array.getClass(), sliced.getClass());
+        assertEquals(second, TemplateTestSupport.invoke("index", sliced, 0));
+        assertEquals(2, TemplateTestSupport.invoke("len", sliced));
+    }
+
+    private static Stream<org.junit.jupiter.params.provider.Arguments> primitiveArrays() {
+        return Stream.of(
+                arguments(new int[]{1, 2, 3}, 2),
+                arguments(new long[]{1, 2, 3}, 2L),
+                arguments(new double[]{1, 2.5, 3}, 2.5),
+                arguments(new byte[]{1, 2, 3}, (byte) 2),
+                arguments(new char[]{'a', 'b', 'c'}, 'b'),
+                arguments(new float[]{1, 2, 3}, 2f),
+                arguments(new short[]{1, 2, 3}, (short) 2),
+                arguments(new boolean[]{false, true, false}, true)
+        );
+    }
+
+    @Test
+    void indexOverDoubleArrayInRange() throws IOException, TemplateException {
+        assertEquals("0.5 1.5 ", render("{{range $i, $v := .Series}}{{index $.Series $i}} {{end}}",
+                data("Series", new double[]{0.5, 1.5})));
+    }
+
+    @Test
+    void lenIndexAndSliceSupportCharSequences() {
+        StringBuilder chars = new StringBuilder("hello");
+        assertEquals(5, TemplateTestSupport.invoke("len", chars));
+        assertEquals("e", TemplateTestSupport.invoke("index", chars, 1));
+        assertEquals("", TemplateTestSupport.invoke("index", chars, 5));
+        assertEquals("ell", TemplateTestSupport.invoke("slice", chars, 1, 4).toString());
+        assertEquals("", TemplateTestSupport.invoke("slice", chars, 4, 1));
+    }
+
+    @Test
+    void indexReadsNonRandomAccessCollections() {
+        assertEquals("b", TemplateTestSupport.invoke("index", new LinkedList<>(Arrays.asList("a", "b")), 1));
+        assertEquals("b", TemplateTestSupport.invoke("index", new LinkedHashSet<>(Arrays.asList("a", "b")), 1));
+        assertNull(TemplateTestSupport.invoke("index", new LinkedHashSet<>(Arrays.asList("a", "b")), 2));
+    }
+
+    @Test
+    void sliceOfListIsAView() {
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b", "c", "d"));
+        List<?> sliced = (List<?>) TemplateTestSupport.invoke("slice", list, 1, 3);
+        list.set(1, "x");
+        assertEquals(Arrays.asList("x", "c"), sliced);
+        assertEquals(Arrays.asList(), TemplateTestSupport.invoke("slice", list, 3, 1));
+    }
 }
@@ -5,12 +5,18 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
 import java.util.stream.Stream;
 
 import static io.github.verils.gotemplate.TemplateTestSupport.data;
 import static io.github.verils.gotemplate.TemplateTestSupport.render;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
 class FunctionsComparisonTest {
@@ -84,4 +90,49 @@ class FunctionsComparisonTest {
     void orderedComparisonsRejectIncompatibleTypes() {
         assertThrows(IllegalArgumentException.class, () -> TemplateTestSupport.invoke("lt", 1, "a"));
     }
+
+    @Test
+    void largeLongsKeepTheirPrecision() throws IOException, TemplateException {
+        Object operands = data("A", 9007199254740993L, "B", 9007199254740992L);
+        assertEquals("no", render("{{if eq .A .B}}yes{{else}}no{{end}}", operands));
+        assertEquals("yes", render("{{if gt .A .B}}yes{{else}}no{{end}}", operands));
+        assertFalse((Boolean) TemplateTestSupport.invoke("eq", 9007199254740993L, 9007199254740992L, 1));
+        assertTrue((Boolean) TemplateTestSupport.invoke("lt", Long.MAX_VALUE - 1, Long.MAX_VALUE));
+    }
+
+    @Test
+    void numbersOfDifferentTypesCompareByValue() throws IOException, TemplateException {
+        assertEquals("yes", render("{{if eq .A 1}}yes{{else}}no{{end}}", data("A", 1L)));
+        assertEquals("yes", render("{{if eq .A 1.0}}yes{{else}}no{{end}}", data("A", (short) 1)));
+        assertEquals("yes", render("{{if eq .A .B}}yes{{else}}no{{end}}",
+                data("A", new BigDecimal("1.50"), "B", 1.5)));
+        assertEquals("yes", render("{{if lt .A .B}}yes{{else}}no{{end}}",
+                data("A", new BigInteger("9007199254740992"), "B", 9007199254740993L)));
+        assertEquals("yes", render("{{if lt .A .B}}yes{{else}}no{{end}}",
+                data("A", BigDecimal.ONE, "B", Double.POSITIVE_INFINITY)));
+        assertEquals("no", render("{{if eq .A .B}}yes{{else}}no{{end}}", data("A", "1", "B", 1)));
+    }
+
+    @Test
+    void comparisonInPipelineComparesPipelineValueLast() throws IOException, TemplateException {
+        assertEquals("true false", render("{{.A | eq 3}} {{.A | lt 3}}", data("A", 3)));
+        assertEquals("true", render("{{.A | le 2}}", data("A", 3)));
+    }
+
+    @Test
+    void overriddenComparisonFunctionIsCalled() throws IOException, TemplateException {
+        Template template = new Template("test", Collections.singletonMap("eq", args -> "custom"));
+        template.parse("{{eq 1 1}}");
+
+        StringWriter writer = new StringWriter();
+        template.execute(writer, null);
+        assertEquals("custom", writer.toString());
+    }
+
+    @Test
+    void incompatibleOperandsFailExecution() {
+        TemplateExecutionException e = assertThrows(TemplateExecutionException.class,
+                () -> render("{{if lt .A .B}}yes{{end}}", data("A", 1, "B", null)));
+        assertTrue(e.getMessage().contains("incompatible types for comparison: java.lang.Integer and null"));
+    }
 }
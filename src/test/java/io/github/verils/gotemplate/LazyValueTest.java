@@ -0,0 +1,125 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static io.github.verils.gotemplate.TemplateTestSupport.render;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Lazy} data values.
+ */
+class LazyValueTest {
+
+    public static class Page {
+        private final Lazy<String> title;
+
+        public Page(Lazy<String> title) {
+            this.title = title;
+        }
+
+        public Lazy<String> getTitle() {
+            return title;
+        }
+    }
+
+    private static <T> Lazy<T> counting(AtomicInteger calls, T value) {
+        return Lazy.of(() -> {
+            calls.incrementAndGet();
+            return value;
+        });
+    }
+
+    @Test
+    void testValueIsComputedOnFirstReadOnly() throws IOException, TemplateException {
+        AtomicInteger calls = new AtomicInteger();
+        Lazy<String> name = counting(calls, "Ada");
+        assertEquals("Ada Ada ADA", new Renderer("{{.name}} {{.name}} {{if .name}}ADA{{end}}").render(data("name", name)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testUnreadValueIsNeverComputed() throws IOException, TemplateException {
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals("short", render("{{if .full}}{{.details}}{{else}}short{{end}}",
+                data("full", false, "details", counting(calls, "expensive"))));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void testValueIsMemoizedPerExecution() throws IOException, TemplateException {
+        AtomicInteger calls = new AtomicInteger();
+        Renderer renderer = new Renderer("{{define \"t\"}}{{.v}}{{end}}{{.v}}{{template \"t\" .}}");
+        Object data = data("v", counting(calls, "x"));
+        assertEquals("xx", renderer.render(data));
+        assertEquals("xx", renderer.render(data));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testLazyInFieldChains() throws IOException, TemplateException {
+        assertEquals("Home", render("{{.page.Title}}", data("page", Lazy.of(() -> new Page(Lazy.of(() -> "Home"))))));
+        assertEquals("Ada", render("{{.user.name}}", data("user", Lazy.of(() -> data("name", "Ada")))));
+        assertEquals("x", render("{{.v}}", data("v", Lazy.of(() -> Optional.of("x")))));
+        assertEquals("<no value>", render("{{.v}}", data("v", Lazy.of(() -> Optional.empty()))));
+        assertEquals("x", render("{{.v}}", data("v", Lazy.of(() -> Lazy.of(() -> "x")))));
+    }
+
+    @Test
+    void testLazyDotAndVariables() throws IOException, TemplateException {
+        Lazy<Object> list = Lazy.of(() -> Arrays.asList("a", "b"));
+        assertEquals("ab", render("{{range .}}{{.}}{{end}}", list));
+        assertEquals("ab", render("{{range .v}}{{.}}{{end}}", data("v", list)));
+        assertEquals("[a b]", render("{{$v := .v}}{{$v}}", data("v", Lazy.of(() -> "[a b]"))));
+        assertEquals("none", render("{{with .}}{{.}}{{else}}none{{end}}", Lazy.of(() -> "")));
+        assertEquals("x", render("{{with .}}{{.}}{{else}}none{{end}}", Lazy.of(() -> "x")));
+        assertEquals("a", render("{{range .}}{{.}}{{end}}", Collections.singletonList(Lazy.of(() -> "a"))));
+        assertEquals("a", render("{{index .v 0}}", data("v", Collections.singletonList(Lazy.of(() -> Optional.of("a"))))));
+    }
+
+    @Test
+    void testNullValue() throws IOException, TemplateException {
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals("<no value> no", render("{{.v}} {{if .v}}yes{{else}}no{{end}}", data("v", counting(calls, null))));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testPlainSuppliersAreNotUnwrapped() throws IOException, TemplateException {
+        Supplier<String> supplier = () -> "x";
+        assertNotEquals("x", render("{{.}}", supplier));
+    }
+
+    @Test
+    void testFailureIsWrapped() {
+        Lazy<String> failing = Lazy.of(() -> {
+            throw new IllegalStateException("unavailable");
+        });
+        TemplateExecutionException e = assertThrows(TemplateExecutionException.class,
+                () -> render("{{.v}}", data("v", failing)));
+        assertEquals("error computing lazy value: unavailable", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Lazy.of(null));
+    }
+
+    private static class Renderer {
+        private final Template template = new Template("test");
+
+        Renderer(String source) throws TemplateParseException {
+            template.parse(source);
+        }
+
+        String render(Object data) throws IOException, TemplateException {
+            StringWriter writer = new StringWriter();
+            template.execute(writer, data);
+            return writer.toString();
+        }
+    }
+}
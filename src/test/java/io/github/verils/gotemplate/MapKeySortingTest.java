@@ -5,10 +5,14 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static io.github.verils.gotemplate.TemplateTestSupport.render;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -223,4 +227,35 @@ public class MapKeySortingTest {
         assertEquals("alpha:x=2,y=1,;beta:a=4,b=3,;", writer.toString());
     }
 
+    @Test
+    void testMapKeySortingKeepsSortedMapOrder() throws IOException, TemplateException {
+        Map<String, Integer> natural = new TreeMap<>();
+        natural.put("b", 2);
+        natural.put("a", 1);
+        assertEquals("a=1,b=2,", render("{{range $k, $v := .M}}{{$k}}={{$v}},{{end}}", data("M", natural)));
+
+        // A sorted map with its own comparator is still sorted by natural key order
+        Map<String, Integer> reversed = new TreeMap<>(Collections.reverseOrder());
+        reversed.putAll(natural);
+        assertEquals("a=1,b=2,", render("{{range $k, $v := .M}}{{$k}}={{$v}},{{end}}", data("M", reversed)));
+    }
+
+    @Test
+    void testMapKeySortingWithPartiallyOrderedKeys() throws IOException, TemplateException {
+        Map<Integer, String> map = new LinkedHashMap<>();
+        map.put(1, "a");
+        map.put(2, "b");
+        map.put(10, "c");
+        map.put(3, "d");
+        assertEquals("1=a,2=b,3=d,10=c,", render("{{range $k, $v := .M}}{{$k}}={{$v}},{{end}}", data("M", map)));
+        assertEquals("a", render("{{range .M}}{{.}}{{break}}{{end}}", data("M", map)));
+    }
+
+    @Test
+    void testMapKeySortingRejectsMixedKeyTypes() {
+        Map<Object, String> map = new LinkedHashMap<>();
+        map.put("a", "x");
+        map.put(1, "y");
+        assertThrows(ClassCastException.class, () -> render("{{range .M}}{{.}}{{end}}", data("M", map)));
+    }
 }
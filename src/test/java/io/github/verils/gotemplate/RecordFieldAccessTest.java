@@ -0,0 +1,122 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static io.github.verils.gotemplate.TemplateTestSupport.render;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for field access on records. The project targets Java 11, so the records are compiled when the tests run
+ * on Java 16 or later and the tests are skipped otherwise.
+ */
+class RecordFieldAccessTest {
+
+    private static final String SOURCE = "package records;\n"
+            + "import io.github.verils.gotemplate.TemplateField;\n"
+            + "import java.util.Optional;\n"
+            + "public record Person(String name, int age, Optional<String> nickname,\n"
+            + "        @TemplateField(\"Display\") String displayName) {\n"
+            + "    public String getGreeting() { return \"Hello, \" + name; }\n"
+            + "    public static Object point(int x, int y) { return new Point(x, y); }\n"
+            + "    public record Label(String text) {\n"
+            + "        public String getText() { return \"Label \" + text; }\n"
+            + "    }\n"
+            + "}\n"
+            + "record Point(int x, int y) {\n"
+            + "}\n";
+
+    private static ClassLoader classLoader;
+
+    @BeforeAll
+    static void compileRecords(@TempDir Path dir) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (Runtime.version().feature() < 16 || compiler == null) {
+            return;
+        }
+
+        Path source = dir.resolve("records/Person.java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, SOURCE.getBytes(StandardCharsets.UTF_8));
+        int status = compiler.run(null, null, null, "-classpath", System.getProperty("java.class.path"),
+                "-d", dir.toString(), source.toString());
+        assertEquals(0, status);
+        classLoader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, RecordFieldAccessTest.class.getClassLoader());
+    }
+
+    private static Object person(String name, int age, String nickname) throws ReflectiveOperationException {
+        Class<?> type = classLoader.loadClass("records.Person");
+        return type.getConstructors()[0].newInstance(name, age, Optional.ofNullable(nickname), "The " + name);
+    }
+
+    private static Object point(int x, int y) throws ReflectiveOperationException {
+        Class<?> type = classLoader.loadClass("records.Person");
+        return type.getMethod("point", int.class, int.class).invoke(null, x, y);
+    }
+
+    @Test
+    void testComponentsByNameAndGoStyleName() throws Exception {
+        assumeTrue(classLoader != null);
+        Object person = person("Ada", 36, null);
+        assertEquals("Ada Ada 36 36", render("{{.name}} {{.Name}} {{.age}} {{.Age}}", person));
+        assertEquals("yes", render("{{if gt .Age 30}}yes{{end}}", person));
+    }
+
+    @Test
+    void testOptionalComponentIsUnwrapped() throws Exception {
+        assumeTrue(classLoader != null);
+        assertEquals("Countess", render("{{.Nickname}}", person("Ada", 36, "Countess")));
+        assertEquals("none", render("{{with .Nickname}}{{.}}{{else}}none{{end}}", person("Ada", 36, null)));
+    }
+
+    @Test
+    void testOtherMembersStillResolve() throws Exception {
+        assumeTrue(classLoader != null);
+        Object person = person("Ada", 36, null);
+        assertEquals("Hello, Ada|Hello, Ada", render("{{.Greeting}}|{{.getGreeting}}", person));
+        assertEquals("The Ada", render("{{.Display}}", person));
+        assertEquals("The Ada", render("{{.displayName}}", person));
+    }
+
+    @Test
+    void testBeanGetterTakesPrecedenceOverComponent() throws Exception {
+        assumeTrue(classLoader != null);
+        Object label = classLoader.loadClass("records.Person$Label").getConstructors()[0].newInstance("A");
+        assertEquals("Label A|Label A", render("{{.Text}}|{{.text}}", label));
+    }
+
+    @Test
+    void testNonPublicRecord() throws Exception {
+        assumeTrue(classLoader != null);
+        assertEquals("1,2", render("{{.X}},{{.y}}", point(1, 2)));
+    }
+
+    @Test
+    void testNestedAndRanged() throws Exception {
+        assumeTrue(classLoader != null);
+        Object data = data("People", Arrays.asList(person("Ada", 36, null), person("Alan", 41, null)));
+        assertEquals("Ada=36;Alan=41;", render("{{range .People}}{{.Name}}={{.Age}};{{end}}", data));
+    }
+
+    @Test
+    void testUnknownComponent() throws Exception {
+        assumeTrue(classLoader != null);
+        TemplateExecutionException e = assertThrows(TemplateExecutionException.class,
+                () -> render("{{.Missing}}", person("Ada", 36, null)));
+        assertTrue(e.getMessage().contains("Missing"));
+    }
+}
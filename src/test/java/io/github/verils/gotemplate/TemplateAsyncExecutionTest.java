@@ -0,0 +1,134 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Template#executeAsync(Object)} and its variants.
+ */
+class TemplateAsyncExecutionTest {
+
+    private static Template template(String source) throws TemplateParseException {
+        Template template = new Template("test");
+        template.parse(source);
+        return template;
+    }
+
+    @Test
+    void testDefaultExecutor() throws Exception {
+        CompletableFuture<String> future = template("Hello, {{.Name}}!").executeAsync(data("Name", "World"));
+        assertEquals("Hello, World!", future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCallerSuppliedExecutor() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        CompletableFuture<String> future = template("{{.}}").executeAsync("x", tasks::add);
+        assertFalse(future.isDone());
+
+        tasks.get(0).run();
+        assertEquals("x", future.getNow(null));
+    }
+
+    @Test
+    void testFailuresCompleteExceptionally() throws Exception {
+        CompletableFuture<String> future = template("{{.Missing.Field}}").executeAsync(new Object(), Runnable::run);
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(TemplateExecutionException.class, e.getCause());
+
+        CompletableFuture<String> notFound = new Template("empty").executeAsync(null, Runnable::run);
+        e = assertThrows(ExecutionException.class, notFound::get);
+        assertInstanceOf(TemplateNotFoundException.class, e.getCause());
+
+        CompletableFuture<String> rejected = template("x").executeAsync(null, task -> {
+            throw new RejectedExecutionException("full");
+        });
+        e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void testCancellationStopsExecution() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        AtomicInteger pulled = new AtomicInteger();
+        Iterator<Integer> rows = new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return pulled.get() < 1000;
+            }
+
+            @Override
+            public Integer next() {
+                if (pulled.incrementAndGet() == 1) {
+                    started.countDown();
+                    try {
+                        resume.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return pulled.get();
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<String> future = template("{{range .}}{{.}},{{end}}").executeAsync(rows, executor);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertTrue(future.cancel(true));
+            resume.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, pulled.get());
+    }
+
+    @Test
+    void testCancelledBeforeStartIsSkipped() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> future = template("{{.}}")
+                .executeAsync(Lazy.of(calls::incrementAndGet), tasks::add);
+        future.cancel(false);
+        tasks.get(0).run();
+        assertEquals(0, calls.get());
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    void testSink() throws Exception {
+        StringBuilder output = new StringBuilder();
+        CompletableFuture<Void> future = template("{{range .}}{{.}}{{end}}").withFlushThreshold(4)
+                .executeAsync((chunk, offset, length) -> output.append(chunk, offset, length),
+                        IntStream.range(0, 10), Runnable::run);
+        assertNull(future.get());
+        assertEquals("0123456789", output.toString());
+    }
+
+    @Test
+    void testArgumentsAreRequired() throws TemplateParseException {
+        Template template = template("x");
+        assertThrows(IllegalArgumentException.class, () -> template.executeAsync(null, null));
+        assertThrows(IllegalArgumentException.class, () -> template.executeAsync(null, null, Runnable::run));
+        assertThrows(IllegalArgumentException.class,
+                () -> template.executeAsync((chunk, offset, length) -> {
+                }, null, null));
+    }
+}
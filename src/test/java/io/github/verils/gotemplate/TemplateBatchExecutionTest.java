@@ -0,0 +1,196 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Template#executeBatch(Iterable, BatchSink)} and {@link Template#executeBatch(Iterable, BatchSink, int)}.
+ */
+class TemplateBatchExecutionTest {
+
+    private static Template template(String source) throws TemplateParseException {
+        Template template = new Template("test");
+        template.parse(source);
+        return template;
+    }
+
+    private static List<Object> recipients(int count) {
+        return IntStream.range(0, count).mapToObj(i -> data("Name", "user" + i)).collect(Collectors.toList());
+    }
+
+    @Test
+    void testRendersEachItem() throws Exception {
+        List<String> outputs = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        int failed = template("Hello, {{.Name}}!").executeBatch(recipients(3), (index, data, output) -> {
+            indexes.add(index);
+            outputs.add(output.toString());
+        });
+
+        assertEquals(0, failed);
+        assertEquals(Arrays.asList(0, 1, 2), indexes);
+        assertEquals(Arrays.asList("Hello, user0!", "Hello, user1!", "Hello, user2!"), outputs);
+    }
+
+    @Test
+    void testStateDoesNotLeakBetweenItems() throws Exception {
+        AtomicInteger computed = new AtomicInteger();
+        Lazy<String> shared = Lazy.of(() -> "v" + computed.incrementAndGet());
+        List<String> outputs = new ArrayList<>();
+        template("{{$x := .}}{{$x}}")
+                .executeBatch(Arrays.asList("a", "b", "c"), (index, data, output) -> outputs.add(output.toString()));
+        assertEquals(Arrays.asList("a", "b", "c"), outputs);
+
+        outputs.clear();
+        template("{{.}}{{.}}").executeBatch(Arrays.asList(shared, shared),
+                (index, data, output) -> outputs.add(output.toString()));
+        assertEquals(Arrays.asList("v1v1", "v2v2"), outputs);
+    }
+
+    @Test
+    void testFailedItemsAreIsolated() throws Exception {
+        List<String> outputs = new ArrayList<>();
+        List<Integer> failures = new ArrayList<>();
+        Template template = template("{{.Name}}").withMissingKeyPolicy(MissingKeyPolicy.ERROR);
+        List<Object> items = Arrays.asList(data("Name", "a"), data("Other", "b"), data("Name", "c"));
+
+        int failed = template.executeBatch(items, new BatchSink() {
+            @Override
+            public void accept(int index, Object data, CharSequence output) {
+                outputs.add(output.toString());
+            }
+
+            @Override
+            public void failed(int index, Object data, TemplateException error) {
+                assertInstanceOf(TemplateExecutionException.class, error);
+                failures.add(index);
+            }
+        });
+
+        assertEquals(1, failed);
+        assertEquals(Arrays.asList("a", "c"), outputs);
+        assertEquals(Arrays.asList(1), failures);
+
+        List<String> ignored = new ArrayList<>();
+        assertEquals(1, template.executeBatch(items, (index, data, output) -> ignored.add(output.toString())));
+        assertEquals(Arrays.asList("a", "c"), ignored);
+    }
+
+    @Test
+    void testRuntimeFailuresOfItemsAreIsolated() throws Exception {
+        Iterable<String> broken = () -> {
+            throw new IllegalStateException("broken rows");
+        };
+        List<String> outputs = new ArrayList<>();
+        List<TemplateException> failures = new ArrayList<>();
+        int failed = template("{{range .}}{{.}}{{end}}").executeBatch(
+                Arrays.asList(Arrays.asList("a"), broken, Arrays.asList("c")), new BatchSink() {
+                    @Override
+                    public void accept(int index, Object data, CharSequence output) {
+                        outputs.add(output.toString());
+                    }
+
+                    @Override
+                    public void failed(int index, Object data, TemplateException error) {
+                        failures.add(error);
+                    }
+                });
+
+        assertEquals(1, failed);
+        assertEquals(Arrays.asList("a", "c"), outputs);
+        assertInstanceOf(TemplateExecutionException.class, failures.get(0));
+        assertEquals("error executing template test: broken rows", failures.get(0).getMessage());
+        assertInstanceOf(IllegalStateException.class, failures.get(0).getCause());
+    }
+
+    @Test
+    void testParallelBatch() throws Exception {
+        Map<Integer, String> outputs = new ConcurrentHashMap<>();
+        int failed = template("{{range .Rows}}{{.}},{{end}}").executeBatch(
+                IntStream.range(0, 1000).mapToObj(i -> data("Rows", IntStream.range(0, i % 10).toArray()))
+                        .collect(Collectors.toList()),
+                (index, data, output) -> assertNull(outputs.put(index, output.toString())), 4);
+
+        assertEquals(0, failed);
+        assertEquals(1000, outputs.size());
+        for (int i = 0; i < 1000; i++) {
+            String expected = IntStream.range(0, i % 10).mapToObj(j -> j + ",").collect(Collectors.joining());
+            assertEquals(expected, outputs.get(i));
+        }
+    }
+
+    @Test
+    void testFailingSinkAbortsBatch() throws TemplateParseException {
+        AtomicInteger pulled = new AtomicInteger();
+        Iterable<Integer> items = () -> new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return pulled.incrementAndGet();
+            }
+        };
+        Template template = template("{{.}}");
+
+        IOException e = assertThrows(IOException.class, () -> template.executeBatch(items, (index, data, output) -> {
+            if (index == 10) {
+                throw new IOException("queue full");
+            }
+        }, 3));
+        assertEquals("queue full", e.getMessage());
+        assertTrue(pulled.get() < 100, "pulled " + pulled.get());
+
+        IllegalStateException failure = assertThrows(IllegalStateException.class,
+                () -> template.executeBatch(items, (index, data, output) -> {
+                    throw new IllegalStateException("closed");
+                }));
+        assertEquals("closed", failure.getMessage());
+    }
+
+    @Test
+    void testFailingIteratorAbortsBatch() throws TemplateParseException {
+        Iterable<Object> items = () -> new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                throw new IllegalStateException("cursor closed");
+            }
+
+            @Override
+            public Object next() {
+                return null;
+            }
+        };
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> template("x").executeBatch(items, (index, data, output) -> {
+                }, 2));
+        assertEquals("cursor closed", e.getMessage());
+    }
+
+    @Test
+    void testArguments() throws TemplateParseException {
+        Template template = template("x");
+        BatchSink sink = (index, data, output) -> {
+        };
+        assertThrows(IllegalArgumentException.class, () -> template.executeBatch(null, sink));
+        assertThrows(IllegalArgumentException.class, () -> template.executeBatch(recipients(1), null));
+        assertThrows(IllegalArgumentException.class, () -> template.executeBatch(recipients(1), sink, 0));
+        assertThrows(TemplateNotFoundException.class, () -> new Template("empty").executeBatch(recipients(1), sink));
+        assertEquals(0, assertDoesNotThrow(() -> template.executeBatch(new ArrayList<>(), sink, 2)));
+    }
+}
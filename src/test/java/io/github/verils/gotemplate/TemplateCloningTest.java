@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -278,4 +279,22 @@ public class TemplateCloningTest {
         data.put("value", value);
         return data;
     }
+
+    @Test
+    void testCloneKeepsClassMetadataSetting() throws IOException, TemplateException {
+        Template template = new Template("test");
+        assertTrue(template.sharedClassMetadata());
+
+        template.withSharedClassMetadata(false).parse("{{.Name}}");
+        assertFalse(template.sharedClassMetadata());
+
+        Template clone = new Template(template);
+        assertFalse(clone.sharedClassMetadata());
+        StringWriter writer = new StringWriter();
+        clone.execute(writer, Collections.singletonMap("Name", "isolated"));
+        assertEquals("isolated", writer.toString());
+
+        assertTrue(clone.withSharedClassMetadata(true).sharedClassMetadata());
+        assertFalse(template.withSharedClassMetadata(false).sharedClassMetadata());
+    }
 }
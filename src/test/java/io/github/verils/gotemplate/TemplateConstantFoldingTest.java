@@ -0,0 +1,82 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for pre-rendering of constant template parts configured by {@link Template#withConstantFolding(boolean)}.
+ */
+class TemplateConstantFoldingTest {
+
+    private static final String PAGE = "{{define \"footer\"}}<footer>{{print \"v\" 2}}</footer>{{end}}"
+            + "<html>{{if eq 1 1}}{{template \"footer\"}}{{end}}<p>{{.Name}}</p>{{range .Rows}}"
+            + "<b>{{printf \"%03d\" 7}}</b>{{.}}{{end}}</html>";
+
+    private static String render(Template template, Object data) throws IOException, TemplateException {
+        StringWriter writer = new StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    @Test
+    void testOutputIsUnchanged() throws Exception {
+        Template template = new Template("page");
+        template.parse(PAGE);
+        Object data = data("Name", "x", "Rows", new int[]{1, 2});
+        String expected = "<html><footer>v 2</footer><p>x</p><b>007</b>1<b>007</b>2</html>";
+
+        assertEquals(expected, render(template, data));
+        assertEquals(expected, render(template, data));
+        assertEquals(expected, render(new Template(template).withConstantFolding(false), data));
+    }
+
+    @Test
+    void testParsingReplacesPreRenderedOutput() throws Exception {
+        Template template = new Template("page");
+        template.parse(PAGE);
+        assertTrue(render(template, data("Rows", null)).contains("<footer>v 2</footer>"));
+
+        template.parse("{{define \"footer\"}}<footer>{{print \"v\" 3}}</footer>{{end}}");
+        assertTrue(render(template, data("Rows", null)).contains("<footer>v 3</footer>"));
+    }
+
+    @Test
+    void testValueResolversApplyToConstants() throws Exception {
+        Template template = new Template("page");
+        template.parse("{{len \"abc\"}}");
+        assertEquals("3", render(template, null));
+
+        template.withValueResolver(CharSequence.class, new ValueResolver<CharSequence>() {
+            @Override
+            public Object getField(CharSequence value, String name) {
+                return MISSING;
+            }
+
+            @Override
+            public int length(CharSequence value) {
+                return 42;
+            }
+        });
+        assertEquals("42", render(template, null));
+    }
+
+    @Test
+    void testFailingConstantsFailAtExecution() throws TemplateParseException {
+        Template template = new Template("page");
+        template.parse("a{{len 3}}b");
+        assertThrows(TemplateExecutionException.class, () -> render(template, null));
+    }
+
+    @Test
+    void testConfiguration() {
+        Template template = new Template("page");
+        assertTrue(template.constantFolding());
+        assertFalse(template.withConstantFolding(false).constantFolding());
+        assertFalse(new Template(template).constantFolding());
+    }
+}
@@ -0,0 +1,213 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static io.github.verils.gotemplate.TemplateTestSupport.render;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for contextual auto-escaping enabled by {@link Template#withContextualEscaping(boolean)}.
+ */
+class TemplateContextualEscapingTest {
+
+    private static String escaped(String source, Object data) throws IOException, TemplateException {
+        Template template = new Template("test").withContextualEscaping(true);
+        template.parse(source);
+
+        StringWriter writer = new StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    private static TemplateParseException parseError(String source) {
+        Template template = new Template("test").withContextualEscaping(true);
+        return assertThrows(TemplateParseException.class, () -> template.parse(source));
+    }
+
+    @Test
+    void testDisabledByDefault() throws IOException, TemplateException {
+        assertFalse(new Template("test").contextualEscaping());
+        assertEquals("<p><b></p>", render("<p>{{.}}</p>", "<b>"));
+    }
+
+    @Test
+    void testSettingIsCopied() {
+        Template template = new Template("test").withContextualEscaping(true);
+        assertTrue(template.contextualEscaping());
+        assertTrue(new Template(template).contextualEscaping());
+        assertFalse(template.withContextualEscaping(false).contextualEscaping());
+    }
+
+    @Test
+    void testHtmlText() throws IOException, TemplateException {
+        assertEquals("<p>&lt;b&gt;&amp;</p>", escaped("<p>{{.}}</p>", "<b>&"));
+        assertEquals("1 < 2 &lt;i&gt;", escaped("1 < 2 {{.}}", "<i>"));
+        assertEquals("<p></p>", escaped("<p>{{.}}</p>", null));
+    }
+
+    @Test
+    void testRcdataAndComments() throws IOException, TemplateException {
+        assertEquals("<textarea>&lt;/textarea&gt;</textarea><b>x</b>",
+                escaped("<textarea>{{.}}</textarea><b>x</b>", "</textarea>"));
+        assertEquals("<title>a&amp;b</title>", escaped("<title>{{.}}</title>", "a&b"));
+        assertEquals("<!-- &lt;x&gt; --><i>&lt;x&gt;</i>", escaped("<!-- {{.}} --><i>{{.}}</i>", "<x>"));
+    }
+
+    @Test
+    void testAttributeValues() throws IOException, TemplateException {
+        assertEquals("<a title=\"a&quot;b\">", escaped("<a title=\"{{.}}\">", "a\"b"));
+        assertEquals("<a title='a&#39;b'>", escaped("<a title='{{.}}'>", "a'b"));
+        assertEquals("<a title=a&#32;b&#61;c>", escaped("<a title={{.}}>", "a b=c"));
+        assertEquals("<a title = \"x x\" class=\"&lt;\">",
+                escaped("<a title = \"{{.A}} {{.A}}\" class=\"{{.B}}\">", data("A", "x", "B", "<")));
+    }
+
+    @Test
+    void testAttributeNames() throws IOException, TemplateException {
+        assertEquals("<input checked=\"1\">", escaped("<input {{.}}=\"1\">", "checked"));
+        assertEquals("<input ZgotmplZ=\"1\">", escaped("<input {{.}}=\"1\">", "onclick"));
+        assertEquals("<input ZgotmplZ>", escaped("<input {{.}}>", "a b"));
+        assertEquals("<input ZgotmplZ>", escaped("<input {{.}}>", null));
+        assertEquals("<input disabled ZgotmplZ>", escaped("<input disabled {{.}}>", "href"));
+    }
+
+    @Test
+    void testTagsWithoutValues() throws IOException, TemplateException {
+        assertEquals("<input disabled>&lt;", escaped("<input disabled>{{.}}", "<"));
+        assertEquals("<br/>&lt;", escaped("<br/>{{.}}", "<"));
+        assertEquals("<a b=>&lt;", escaped("<a b=>{{.}}", "<"));
+        assertEquals("<input disabled value=\"&lt;\">", escaped("<input disabled value=\"{{.}}\">", "<"));
+        assertEquals("<input a/>&lt;", escaped("<input a/>{{.}}", "<"));
+    }
+
+    @Test
+    void testUrlAttributes() throws IOException, TemplateException {
+        assertEquals("<a href=\"#ZgotmplZ\">", escaped("<a href=\"{{.}}\">", "javascript:alert(1)"));
+        assertEquals("<a href=\"http://x/a%20b\">", escaped("<a href=\"{{.}}\">", "http://x/a b"));
+        assertEquals("<a href=\"mailto:a@b\">", escaped("<a href=\"{{.}}\">", "mailto:a@b"));
+        assertEquals("<a href=\"/a:b\">", escaped("<a href=\"{{.}}\">", "/a:b"));
+        assertEquals("<a href=\"/x/a%20b\">", escaped("<a href=\"/x/{{.}}\">", "a b"));
+        assertEquals("<a href=\"/s?q=a%20b%26c#a%20b%26c\">",
+                escaped("<a href=\"/s?q={{.}}#{{.}}\">", "a b&c"));
+        assertEquals("<img src=a%22b&#61;>", escaped("<img src={{.}}>", "a\"b="));
+        assertEquals("<use xlink:href=\"#ZgotmplZ\">", escaped("<use xlink:href=\"{{.}}\">", "data:x"));
+        assertEquals("<svg xmlns=\"#ZgotmplZ\">", escaped("<svg xmlns=\"{{.}}\">", "javascript:x"));
+    }
+
+    @Test
+    void testScript() throws IOException, TemplateException {
+        assertEquals("<script>var x = \"a\\\"\\u003c\\u002fscript\\u003e\";</script>",
+                escaped("<script>var x = {{.}};</script>", "a\"</script>"));
+        assertEquals("<script>var x = 42;</script>", escaped("<script>var x = {{.}};</script>", 42));
+        assertEquals("<SCRIPT>var x = true;</SCRIPT>", escaped("<SCRIPT>var x = {{.}};</SCRIPT>", true));
+        assertEquals("<script>var x = null;</script>", escaped("<script>var x = {{.}};</script>", null));
+        assertEquals("<script>var s = \"\\u003cb\\u003e\";</script>&lt;b&gt;",
+                escaped("<script>var s = \"{{.}}\";</script>{{.}}", "<b>"));
+    }
+
+    @Test
+    void testScriptStringStates() throws IOException, TemplateException {
+        assertEquals("<script>var s = '\\'\\'', t = `\\'`, u = \"\\'\";</script>",
+                escaped("<script>var s = '\\'{{.}}', t = `{{.}}`, u = \"{{.}}\";</script>", "'"));
+        assertEquals("<script>var s = `\\u0024\\u007balert(1)\\u007d`;</script>",
+                escaped("<script>var s = `{{.}}`;</script>", "${alert(1)}"));
+        assertEquals("<script>var s = '', n = 1;</script>",
+                escaped("<script>var s = '{{.A}}', n = {{.B}};</script>", data("A", null, "B", 1)));
+    }
+
+    @Test
+    void testEventHandlerAttribute() throws IOException, TemplateException {
+        assertEquals("<button onclick=\"f(&quot;x\\&#39;&quot;)\">", escaped("<button onclick=\"f({{.}})\">", "x'"));
+        assertEquals("<button onclick=\"f('\\u003c')\">", escaped("<button onclick=\"f('{{.}}')\">", "<"));
+    }
+
+    @Test
+    void testStyle() throws IOException, TemplateException {
+        assertEquals("<style>p { color: red\\3b \\7d  }</style>",
+                escaped("<style>p { color: {{.}} }</style>", "red;}"));
+        assertEquals("<p style=\"color: red\\22 \">", escaped("<p style=\"color: {{.}}\">", "red\""));
+    }
+
+    @Test
+    void testPredefinedEscaperIsNotRepeated() throws IOException, TemplateException {
+        assertEquals("&lt;b&gt;", escaped("{{. | html}}", "<b>"));
+        assertEquals("&lt;b&gt;", escaped("{{html .}}", "<b>"));
+        assertEquals("<a title=a&#32;b>", escaped("<a title={{. | html}}>", "a b"));
+    }
+
+    @Test
+    void testDeclarationsAreNotEscaped() throws IOException, TemplateException {
+        assertEquals("&lt;", escaped("{{$x := .}}{{$x = .}}{{$x}}", "<"));
+    }
+
+    @Test
+    void testBranches() throws IOException, TemplateException {
+        String source = "{{if .V}}<b>{{else}}<i>{{end}}{{.V}}"
+                + "{{with .V}}<a href=\"{{.}}\">{{else}}<a href=\"/\">{{end}}"
+                + "{{range .L}}<li>{{.}}</li>{{else}}<li>none</li>{{end}}";
+        assertEquals("<b>&lt;<a href=\"%3C\"><li>a&amp;</li><li>b</li>",
+                escaped(source, data("V", "<", "L", Arrays.asList("a&", "b"))));
+    }
+
+    @Test
+    void testTemplateCalls() throws IOException, TemplateException {
+        String source = "{{define \"item\"}}<b>{{.}}</b>{{end}}<p>{{template \"item\" .}}</p>";
+        assertEquals("<p><b>&lt;</b></p>", escaped(source, "<"));
+    }
+
+    @Test
+    void testTemplatesMustEndInText() {
+        TemplateParseException e = parseError("{{define \"open\"}}<a href=\"{{end}}{{template \"open\"}}{{.}}\">");
+        assertTrue(e.getMessage().contains("template \"open\" ends in context URL DOUBLE_QUOTE"));
+        assertTrue(parseError("<a href=\"{{.}}").getMessage().contains("template \"test\" ends in"));
+    }
+
+    @Test
+    void testReplacedHtmlFunctionIsEscaped() throws IOException, TemplateException {
+        Template template = new Template("test", Collections.singletonMap("html", args -> args[0]))
+                .withContextualEscaping(true);
+        template.parse("<p>{{. | html}}</p>");
+
+        StringWriter writer = new StringWriter();
+        template.execute(writer, "<b>");
+        assertEquals("<p>&lt;b&gt;</p>", writer.toString());
+        assertEquals("<p>&lt;b&gt;</p>", escaped("<p>{{. | html}}</p>", "<b>"));
+    }
+
+    @Test
+    void testAmbiguousBranchesAreRejected() {
+        assertTrue(parseError("{{if .}}<a href=\"{{end}}x").getMessage().contains("{{if}} branches"));
+        assertTrue(parseError("{{with .}}<p>{{else}}<p title=\"{{end}}").getMessage()
+                .contains("context ATTR DOUBLE_QUOTE"));
+        assertTrue(parseError("{{range .}}<a{{end}}").getMessage().contains("range loop re-entry"));
+        assertTrue(parseError("{{range .}}{{else}}<script>{{end}}").getMessage().contains("{{range}} branches"));
+        assertTrue(parseError("<script>{{template \"x\"}}</script>").getMessage()
+                .contains("context JS SCRIPT"));
+        assertTrue(parseError("<script>{{if .}}'{{else}}\"{{end}}")
+                .getMessage().contains("context JS SCRIPT SINGLE_QUOTE, context JS SCRIPT DOUBLE_QUOTE"));
+        assertTrue(parseError("<a href=\"/{{if .}}?{{end}}\">").getMessage().contains("QUERY"));
+    }
+
+    @Test
+    void testEscapersAreNotCallableByName() {
+        assertThrows(TemplateParseException.class,
+                () -> new Template("test").parse("{{_html_template_htmlescaper .}}"));
+    }
+
+    @Test
+    void testCustomFunctionResultIsEscaped() throws IOException, TemplateException {
+        Template template = new Template("test", Collections.singletonMap("raw", args -> "<b>"))
+                .withContextualEscaping(true);
+        template.parse("{{raw}}");
+
+        StringWriter writer = new StringWriter();
+        template.execute(writer, null);
+        assertEquals("&lt;b&gt;", writer.toString());
+    }
+}
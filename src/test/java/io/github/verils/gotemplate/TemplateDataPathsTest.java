@@ -0,0 +1,68 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Template#dataPaths()}.
+ */
+class TemplateDataPathsTest {
+
+    private static Set<String> dataPaths(String source) throws TemplateException {
+        Template template = new Template("page");
+        template.parse(source);
+        return template.dataPaths();
+    }
+
+    private static Set<String> paths(String... paths) {
+        return new TreeSet<>(Arrays.asList(paths));
+    }
+
+    @Test
+    void testFieldsAndChains() throws TemplateException {
+        assertEquals(paths("Title", "User.Name", "User.Address", "User.Address.City", "Count", "Items"),
+                dataPaths("{{.Title}}{{.User.Name | printf \"%s\"}}{{(.User.Address).City}}"
+                        + "{{if gt .Count 1}}{{len .Items}}{{end}}{{.}}{{print 1}}"));
+    }
+
+    @Test
+    void testRangeAndWithRebindDot() throws TemplateException {
+        assertEquals(paths("Orders", "Orders[].Id", "Orders[].Lines", "Orders[].Lines[].Price", "Empty",
+                        "User", "User.Name", "Guest"),
+                dataPaths("{{range .Orders}}{{.Id}}{{range .Lines}}{{.Price}}{{end}}{{else}}{{.Empty}}{{end}}"
+                        + "{{with .User}}{{.Name}}{{else}}{{.Guest}}{{end}}"));
+    }
+
+    @Test
+    void testVariables() throws TemplateException {
+        assertEquals(paths("User", "User.Name", "Site.Title", "Items", "Items[].Sku", "Map", "Other"),
+                dataPaths("{{$u := .User}}{{$u.Name}}{{range $i, $item := .Items}}{{$item.Sku}}{{$i.X}}"
+                        + "{{$.Site.Title}}{{end}}{{range $k, $v := .Map}}{{$k.Name}}{{end}}"
+                        + "{{with $o := .Other}}{{$o}}{{end}}{{$x := len .User}}{{$x.Name}}"));
+    }
+
+    @Test
+    void testTemplateInvocations() throws TemplateException {
+        assertEquals(paths("Site", "Site.Name", "Rows", "Rows[].Cell", "Tree", "Tree.Name", "Tree.Children",
+                        "Tree.Children[].Name", "Tree.Children[].Children", "Title"),
+                dataPaths("{{define \"footer\"}}{{.Name}}{{end}}"
+                        + "{{define \"row\"}}{{.Cell}}{{end}}"
+                        + "{{define \"tree\"}}{{.Name}}{{range .Children}}{{template \"tree\" .}}{{end}}{{end}}"
+                        + "{{define \"plain\"}}{{.Name}}{{template \"title\" $}}{{end}}"
+                        + "{{define \"title\"}}{{.Title}}{{end}}"
+                        + "{{template \"footer\" .Site}}{{template \"footer\" .Site}}"
+                        + "{{range .Rows}}{{template \"row\" .}}{{end}}{{template \"tree\" .Tree}}"
+                        + "{{template \"plain\" (print 1)}}{{template \"plain\"}}{{template \"title\" .}}"
+                        + "{{template \"missing\" .}}"));
+    }
+
+    @Test
+    void testNotParsed() {
+        assertThrows(TemplateNotFoundException.class, () -> new Template("page").dataPaths());
+    }
+}
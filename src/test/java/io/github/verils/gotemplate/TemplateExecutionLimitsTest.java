@@ -0,0 +1,171 @@
+package io.github.verils.gotemplate;
+
+import io.github.verils.gotemplate.TemplateLimitExceededException.Limit;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ExecutionLimits} and {@link Template#withExecutionLimits(ExecutionLimits)}.
+ */
+class TemplateExecutionLimitsTest {
+
+    private static String render(Template template, Object data) throws IOException, TemplateException {
+        StringWriter writer = new StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    private static Limit exceeded(Template template, Object data) {
+        return assertThrows(TemplateLimitExceededException.class, () -> render(template, data)).getLimit();
+    }
+
+    private static Template template(String source, ExecutionLimits limits) throws TemplateParseException {
+        Template template = new Template("page").withExecutionLimits(limits);
+        template.parse(source);
+        return template;
+    }
+
+    @Test
+    void testWithinLimits() throws Exception {
+        ExecutionLimits limits = new ExecutionLimits().withMaxOutput(5).withMaxSteps(30).withMaxTemplateDepth(1)
+                .withTimeout(Duration.ofMinutes(1));
+        Template template = template("{{define \"t\"}}{{.}}{{end}}{{range .}}{{template \"t\" .}}{{end}}", limits);
+
+        assertEquals("abcde", render(template, Arrays.asList("a", "b", "c", "d", "e")));
+        // Each execution starts with a new budget
+        assertEquals("abcde", render(template, Arrays.asList("a", "b", "c", "d", "e")));
+    }
+
+    @Test
+    void testOutputLimit() throws TemplateParseException {
+        Template template = template("{{range .}}{{.}}{{end}}", new ExecutionLimits().withMaxOutput(3));
+        assertEquals(Limit.OUTPUT, exceeded(template, new String[]{"ab", "cd"}));
+        assertEquals(Limit.OUTPUT, exceeded(template, new int[]{1, 2, 3, 4}));
+
+        TemplateLimitExceededException e = assertThrows(TemplateLimitExceededException.class,
+                () -> render(template, new String[]{"abcd"}));
+        assertEquals("output exceeds the limit of 3 characters", e.getMessage());
+    }
+
+    @Test
+    void testStepLimit() throws TemplateParseException {
+        ExecutionLimits limits = new ExecutionLimits().withMaxSteps(1000);
+        assertEquals(Limit.STEPS, exceeded(template("{{range 100000000}}{{end}}", limits), null));
+        assertEquals(Limit.STEPS, exceeded(template("{{range 100000}}{{if .}}x{{end}}{{end}}", limits), null));
+    }
+
+    @Test
+    void testTemplateDepthLimit() throws TemplateParseException {
+        Template template = template("{{define \"loop\"}}{{template \"loop\" .}}{{end}}{{template \"loop\" .}}",
+                new ExecutionLimits().withMaxTemplateDepth(50));
+        TemplateLimitExceededException e = assertThrows(TemplateLimitExceededException.class,
+                () -> render(template, null));
+        assertEquals(Limit.TEMPLATE_DEPTH, e.getLimit());
+        assertEquals("template loop exceeds the limit of 50 nested invocations", e.getMessage());
+    }
+
+    @Test
+    void testTimeout() throws TemplateParseException {
+        Map<String, Function> functions = new HashMap<>();
+        functions.put("slow", args -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "";
+        });
+        Template template = new Template("page", functions)
+                .withExecutionLimits(new ExecutionLimits().withTimeout(Duration.ofMillis(20)));
+        template.parse("{{range 100000}}{{slow}}{{end}}");
+        assertEquals(Limit.TIMEOUT, exceeded(template, null));
+    }
+
+    @Test
+    void testConstantTemplateChainsAreNotPreRenderedBeyondTheLimits() throws TemplateParseException {
+        StringBuilder source = new StringBuilder("{{define \"l0\"}}xxxxxxxxxx{{end}}");
+        for (int level = 1; level <= 8; level++) {
+            source.append("{{define \"l").append(level).append("\"}}");
+            for (int i = 0; i < 10; i++) {
+                source.append("{{template \"l").append(level - 1).append("\"}}");
+            }
+            source.append("{{end}}");
+        }
+        source.append("{{template \"l8\"}}");
+        Template template = template(source.toString(), new ExecutionLimits().withMaxOutput(100)
+                .withMaxSteps(1000).withTimeout(Duration.ofMillis(50)));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals(Limit.OUTPUT, exceeded(template, null)));
+    }
+
+    @Test
+    void testLimitsApplyToParallelRendering() throws TemplateParseException {
+        Template range = template("{{range .}}{{.}}{{end}}", new ExecutionLimits().withMaxOutput(100))
+                .withParallelRange(true);
+        assertEquals(Limit.OUTPUT, exceeded(range, new int[1000]));
+
+        Template templates = template("{{define \"t\"}}{{range 1000}}{{end}}{{end}}{{template \"t\"}}{{template \"t\"}}",
+                new ExecutionLimits().withMaxSteps(500)).withParallelTemplates(true);
+        assertEquals(Limit.STEPS, exceeded(templates, null));
+    }
+
+    @Test
+    void testStepsAreCountedAcrossParallelParts() throws TemplateParseException {
+        Template range = template("{{range .}}{{.}}{{end}}", new ExecutionLimits().withMaxSteps(5000))
+                .withParallelRange(true);
+        assertEquals(Limit.STEPS, exceeded(range, new int[4000]));
+
+        Template templates = template("{{define \"t\"}}{{range 300}}{{end}}{{end}}{{template \"t\"}}{{template \"t\"}}",
+                new ExecutionLimits().withMaxSteps(500)).withParallelTemplates(true);
+        assertEquals(Limit.STEPS, exceeded(templates, null));
+    }
+
+    @Test
+    void testCachedFragmentsCountAsOutput() throws Exception {
+        FragmentCache cache = new FragmentCache(10).withKey("t", value -> "all");
+        Template template = template("{{define \"t\"}}abc{{end}}{{template \"t\"}}{{template \"t\"}}",
+                new ExecutionLimits().withMaxOutput(5)).withFragmentCache(cache);
+        assertEquals(Limit.OUTPUT, exceeded(template, null));
+        assertEquals("abcabc", render(template.withExecutionLimits(null), null));
+    }
+
+    @Test
+    void testFailedBatchItems() throws Exception {
+        Template template = template("{{.}}", new ExecutionLimits().withMaxOutput(2));
+        int failed = template.executeBatch(Arrays.asList("a", "ab", "abc"), (index, item, output) -> {
+        });
+        assertEquals(1, failed);
+    }
+
+    @Test
+    void testConfiguration() {
+        ExecutionLimits none = new ExecutionLimits();
+        assertEquals(Long.MAX_VALUE, none.maxOutput());
+        assertEquals(Long.MAX_VALUE, none.maxSteps());
+        assertEquals(Integer.MAX_VALUE, none.maxTemplateDepth());
+        assertNull(none.timeout());
+
+        ExecutionLimits limits = none.withMaxSteps(10).withTimeout(Duration.ofSeconds(1)).withTimeout(null);
+        assertEquals(10, limits.maxSteps());
+        assertNull(limits.timeout());
+        assertEquals(Long.MAX_VALUE, none.maxSteps());
+
+        Template template = new Template("page").withExecutionLimits(limits);
+        assertSame(limits, new Template(template).executionLimits());
+        assertNull(new Template("page").executionLimits());
+
+        assertThrows(IllegalArgumentException.class, () -> none.withMaxOutput(0));
+        assertThrows(IllegalArgumentException.class, () -> none.withMaxSteps(-1));
+        assertThrows(IllegalArgumentException.class, () -> none.withMaxTemplateDepth(0));
+        assertThrows(IllegalArgumentException.class, () -> none.withTimeout(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> none.withTimeout(Duration.ofSeconds(-1)));
+    }
+}
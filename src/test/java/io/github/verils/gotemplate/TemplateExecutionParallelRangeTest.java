@@ -0,0 +1,195 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for parallel rendering of range loops configured by {@link Template#withParallelRange(boolean)}.
+ */
+class TemplateExecutionParallelRangeTest {
+
+    private static final String REPORT = "{{range $i, $row := .Rows}}{{$name := $row.Name}}"
+            + "{{if eq (len $row.Tags) 0}}{{continue}}{{end}}"
+            + "<tr><td>{{$i}}</td><td>{{$name}}</td>{{range $row.Tags}}<td>{{.}}</td>{{end}}</tr>\n{{end}}";
+
+    private static List<Map<String, Object>> rows(int count) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Name", "row" + i);
+            row.put("Tags", IntStream.range(0, i % 4).mapToObj(j -> "t" + j).collect(Collectors.toList()));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String render(Template template, Object data) throws IOException, TemplateException {
+        java.io.StringWriter writer = new java.io.StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    private static Template template(String source, boolean parallelRange, Map<String, Function> functions)
+            throws TemplateParseException {
+        Template template = new Template("test", functions).withParallelRange(parallelRange);
+        template.parse(source);
+        return template;
+    }
+
+    private static Template template(String source, boolean parallelRange) throws TemplateParseException {
+        return template(source, parallelRange, new HashMap<>());
+    }
+
+    @Test
+    void testOutputMatchesSequentialRendering() throws Exception {
+        Object data = data("Rows", rows(10_000));
+        String expected = render(template(REPORT, false), data);
+        assertEquals(expected, render(template(REPORT, true), data));
+        assertTrue(expected.startsWith("<tr><td>1</td><td>row1</td><td>t0</td></tr>\n"));
+    }
+
+    @Test
+    void testIterationsRunOnSeveralThreads() throws Exception {
+        assumeTrue(ForkJoinPool.getCommonPoolParallelism() > 1);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Map<String, Function> functions = new HashMap<>();
+        functions.put("track", args -> {
+            threads.add(Thread.currentThread().getName());
+            return args[0];
+        });
+
+        String output = render(template("{{range .}}{{track .}},{{end}}", true, functions),
+                IntStream.range(0, 20_000).boxed().collect(Collectors.toList()));
+        assertEquals(IntStream.range(0, 20_000).mapToObj(i -> i + ",").collect(Collectors.joining()), output);
+        assertTrue(threads.size() > 1, threads.toString());
+    }
+
+    @Test
+    void testSequentialFallbacks() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Map<String, Function> functions = new HashMap<>();
+        functions.put("track", args -> {
+            threads.add(Thread.currentThread());
+            return args[0];
+        });
+
+        // A break ends the loop, later iterations must not be rendered
+        String output = render(template("{{range .}}{{if eq . 500}}{{break}}{{end}}{{track .}},{{end}}", true, functions),
+                IntStream.range(0, 1000).boxed().collect(Collectors.toList()));
+        assertEquals(IntStream.range(0, 500).mapToObj(i -> i + ",").collect(Collectors.joining()), output);
+
+        // Sources without random access, and short ranges
+        render(template("{{range .}}{{track .}}{{end}}", true, functions),
+                new LinkedList<>(IntStream.range(0, 1000).boxed().collect(Collectors.toList())));
+        render(template("{{range .}}{{track .}}{{end}}", true, functions), new int[100]);
+        assertEquals(Set.of(Thread.currentThread()), threads);
+    }
+
+    @Test
+    void testBreakInNestedRangeAllowsParallelRendering() throws Exception {
+        String source = "{{range .}}[{{range $j, $v := 5}}{{if eq $j 2}}{{break}}{{end}}{{$v}}{{end}}]"
+                + "{{with .}}{{else}}{{end}}{{end}}";
+        String expected = String.join("", java.util.Collections.nCopies(1000, "[01]"));
+        assertEquals(expected, render(template(source, true), IntStream.range(1, 1001).toArray()));
+    }
+
+    @Test
+    void testArraysAndIntegers() throws Exception {
+        String expected = IntStream.range(0, 1000).mapToObj(i -> i + ";").collect(Collectors.joining());
+        assertEquals(expected, render(template("{{range .}}{{.}};{{end}}", true),
+                IntStream.range(0, 1000).toArray()));
+        assertEquals(expected, render(template("{{range .}}{{.}};{{end}}", true),
+                IntStream.range(0, 1000).boxed().toArray()));
+        assertEquals(expected, render(template("{{range $i := .}}{{$i}};{{end}}", true), 1000));
+        assertEquals(expected, render(template("{{range $i, $v := .}}{{$i}};{{end}}", true),
+                IntStream.range(0, 1000).mapToObj(i -> 'x').toArray(Character[]::new)));
+        assertEquals("none", render(template("{{range .}}{{.}}{{else}}none{{end}}", true), -5));
+    }
+
+    @Test
+    void testLazyValuesAreShared() throws Exception {
+        AtomicInteger computed = new AtomicInteger();
+        Object data = data("Rows", IntStream.range(0, 1000).boxed().collect(Collectors.toList()),
+                "Title", Lazy.of(() -> "t" + computed.incrementAndGet()));
+        String output = render(template("{{.Title}}{{range .Rows}}{{$.Title}}{{end}}", true), data);
+        assertEquals("t1" + String.join("", java.util.Collections.nCopies(1000, "t1")), output);
+        assertEquals(1, computed.get());
+    }
+
+    @Test
+    void testLazyValuesFirstReadByChunksAreComputedOnce() throws Exception {
+        AtomicInteger computed = new AtomicInteger();
+        Object data = data("Rows", IntStream.range(0, 1000).boxed().collect(Collectors.toList()),
+                "Title", Lazy.of(() -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "t" + computed.incrementAndGet();
+                }));
+        String output = render(template("{{range .Rows}}{{$.Title}}{{end}}", true), data);
+        assertEquals(String.join("", java.util.Collections.nCopies(1000, "t1")), output);
+        assertEquals(1, computed.get());
+    }
+
+    @Test
+    void testFailuresStopTheRange() throws TemplateParseException {
+        AtomicInteger calls = new AtomicInteger();
+        Map<String, Function> functions = new HashMap<>();
+        functions.put("check", args -> {
+            calls.incrementAndGet();
+            if ((Integer) args[0] == 300) {
+                throw new IllegalStateException("bad row");
+            }
+            return args[0];
+        });
+        Template template = template("{{range .}}{{check .}}{{end}}", true, functions);
+        List<Integer> rows = IntStream.range(0, 1_000_000).boxed().collect(Collectors.toList());
+
+        TemplateExecutionException e = assertThrows(TemplateExecutionException.class, () -> render(template, rows));
+        assertTrue(e.getMessage().contains("bad row"), e.getMessage());
+        assertTrue(calls.get() < 1_000_000, "calls " + calls.get());
+
+        Template missing = template("{{range .}}{{template \"row\" .}}{{end}}", true);
+        e = assertThrows(TemplateExecutionException.class, () -> render(missing, rows.subList(0, 1000)));
+        assertTrue(e.getMessage().contains("not defined"), e.getMessage());
+    }
+
+    @Test
+    void testChunkedOutput() throws Exception {
+        List<String> chunks = new ArrayList<>();
+        template("{{range .}}{{.}}\n{{end}}", true).withFlushThreshold(256)
+                .execute((chunk, offset, length) -> chunks.add(new String(chunk, offset, length)),
+                        IntStream.range(0, 10_000).boxed().collect(Collectors.toList()));
+        assertTrue(chunks.size() > 1);
+        assertEquals(IntStream.range(0, 10_000).mapToObj(i -> i + "\n").collect(Collectors.joining()),
+                String.join("", chunks));
+    }
+
+    @Test
+    void testConfiguration() {
+        Template template = new Template("test");
+        assertFalse(template.parallelRange());
+        assertTrue(template.option("parallelrange=true").parallelRange());
+        assertTrue(new Template(template).parallelRange());
+        assertFalse(template.option("parallelrange=false").parallelRange());
+        assertThrows(IllegalArgumentException.class, () -> template.option("parallelrange=yes"));
+    }
+}
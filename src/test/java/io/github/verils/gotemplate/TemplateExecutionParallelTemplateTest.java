@@ -0,0 +1,159 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for concurrent rendering of template invocations configured by
+ * {@link Template#withParallelTemplates(java.util.concurrent.Executor)}.
+ */
+class TemplateExecutionParallelTemplateTest {
+
+    private static final String LAYOUT = "{{define \"header\"}}<h1>{{.Title}}</h1>{{end}}"
+            + "{{define \"feed\"}}<ul>{{range .Feed}}<li>{{.}}</li>{{end}}</ul>{{end}}"
+            + "{{define \"sidebar\"}}<aside>{{.Sidebar}}</aside>{{end}}"
+            + "{{define \"user\"}}<p>{{.}}</p>{{end}}"
+            + "<html>{{template \"header\" .}}{{$user := .User}}{{template \"user\" $user}}"
+            + "{{template \"feed\" .}}{{if .Footer}}{{template \"header\" .}}{{template \"sidebar\" .}}{{end}}"
+            + "{{template \"sidebar\" .}}</html>";
+
+    private static final String EXPECTED = "<html><h1>Home</h1><p>alice</p><ul><li>a</li><li>b</li></ul>"
+            + "<h1>Home</h1><aside>links</aside><aside>links</aside></html>";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static Object page() {
+        List<String> feed = new ArrayList<>();
+        feed.add("a");
+        feed.add("b");
+        return data("Title", "Home", "User", "alice", "Feed", feed, "Sidebar", "links", "Footer", true);
+    }
+
+    private static String render(Template template, Object data) throws IOException, TemplateException {
+        StringWriter writer = new StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    private static Template template(String source) throws TemplateParseException {
+        Template template = new Template("page");
+        template.parse(source);
+        return template;
+    }
+
+    @Test
+    void testOutputIsInDocumentOrder() throws Exception {
+        assertEquals(EXPECTED, render(template(LAYOUT), page()));
+        assertEquals(EXPECTED, render(template(LAYOUT).withParallelTemplates(executor), page()));
+        assertEquals(EXPECTED, render(template(LAYOUT).withParallelTemplates(true), page()));
+    }
+
+    @Test
+    void testTemplatesRenderConcurrently() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(3);
+        Map<String, Object> data = new HashMap<>();
+        for (String section : new String[]{"A", "B", "C"}) {
+            data.put(section, Lazy.of(() -> {
+                allStarted.countDown();
+                try {
+                    return allStarted.await(10, TimeUnit.SECONDS) ? section : "timeout";
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return "interrupted";
+                }
+            }));
+        }
+
+        Template template = template("{{define \"a\"}}{{.A}}{{end}}{{define \"b\"}}{{.B}}{{end}}"
+                + "{{define \"c\"}}{{.C}}{{end}}[{{template \"a\" .}}|{{template \"b\" .}}|{{template \"c\" .}}]")
+                .withParallelTemplates(executor);
+        assertEquals("[A|B|C]", render(template, data));
+    }
+
+    @Test
+    void testConstantTemplatesAreFolded() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        Template template = template("{{define \"a\"}}{{.}}{{end}}{{define \"c\"}}<hr>{{end}}"
+                + "{{template \"a\" 1}}{{template \"c\"}}{{template \"a\" .}}{{template \"c\"}}")
+                .withParallelTemplates(queued::add);
+        assertEquals("1<hr>2<hr>", render(template, 2));
+        assertEquals(2, queued.size());
+    }
+
+    @Test
+    void testTemplatesInRangeBodiesRenderConcurrently() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Map<String, Object> row = new HashMap<>();
+        for (String section : new String[]{"A", "B"}) {
+            row.put(section, Lazy.of(() -> {
+                bothStarted.countDown();
+                try {
+                    return bothStarted.await(10, TimeUnit.SECONDS) ? section : "timeout";
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return "interrupted";
+                }
+            }));
+        }
+
+        Template template = template("{{define \"a\"}}{{.A}}{{end}}{{define \"b\"}}{{.B}}{{end}}"
+                + "{{range .}}[{{template \"a\" .}}|{{template \"b\" .}}]{{end}}")
+                .withParallelTemplates(executor);
+        assertEquals("[A|B]", render(template, List.of(row)));
+    }
+
+    @Test
+    void testUnstartedTemplatesRenderOnTheCallingThread() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        assertEquals(EXPECTED, render(template(LAYOUT).withParallelTemplates(queued::add), page()));
+        assertFalse(queued.isEmpty());
+        queued.forEach(Runnable::run);
+
+        assertEquals(EXPECTED, render(template(LAYOUT).withParallelTemplates(task -> {
+            throw new RejectedExecutionException("full");
+        }), page()));
+    }
+
+    @Test
+    void testFailures() throws TemplateParseException {
+        Template template = template("{{define \"ok\"}}ok{{end}}{{template \"ok\" .}}{{template \"missing\" .}}")
+                .withParallelTemplates(Runnable::run);
+        TemplateExecutionException e = assertThrows(TemplateExecutionException.class, () -> render(template, null));
+        assertEquals("template missing not defined", e.getMessage());
+
+        Template failing = template("{{define \"a\"}}{{.Name.Missing}}{{end}}{{define \"b\"}}b{{end}}"
+                + "{{template \"b\" .}}{{template \"a\" .}}").withParallelTemplates(executor)
+                .withMissingKeyPolicy(MissingKeyPolicy.ERROR);
+        assertThrows(TemplateExecutionException.class, () -> render(failing, data("Name", data())));
+    }
+
+    @Test
+    void testConfiguration() {
+        Template template = new Template("page");
+        assertFalse(template.parallelTemplates());
+        assertTrue(template.withParallelTemplates(executor).parallelTemplates());
+        assertTrue(new Template(template).parallelTemplates());
+        assertFalse(template.withParallelTemplates(false).parallelTemplates());
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static io.github.verils.gotemplate.TemplateTestSupport.render;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for range over sources that are consumed one element at a time.
+ */
+class TemplateExecutionRangeSourceTest {
+
+    private static final String TEMPLATE = "{{range $i, $v := .Items}}{{$i}}={{$v}};{{else}}empty{{end}}";
+
+    /**
+     * Counts the elements pulled, to check a loop does not read ahead.
+     */
+    private static Iterator<Integer> counting(AtomicInteger pulled, int size) {
+        return new Iterator<Integer>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Integer next() {
+                pulled.incrementAndGet();
+                return next++;
+            }
+        };
+    }
+
+    @Test
+    void testIterator() throws IOException, TemplateException {
+        assertEquals("0=a;1=b;", render(TEMPLATE, data("Items", Arrays.asList("a", "b").iterator())));
+        assertEquals("empty", render(TEMPLATE, data("Items", Collections.emptyIterator())));
+    }
+
+    @Test
+    void testIterable() throws IOException, TemplateException {
+        Iterable<String> iterable = () -> Arrays.asList("a", "b").iterator();
+        assertEquals("0=a;1=b;", render(TEMPLATE, data("Items", iterable)));
+        Iterable<String> empty = Collections::emptyIterator;
+        assertEquals("empty", render(TEMPLATE, data("Items", empty)));
+    }
+
+    @Test
+    void testStream() throws IOException, TemplateException {
+        assertEquals("0=a;1=b;", render(TEMPLATE, data("Items", Stream.of("a", "b"))));
+        assertEquals("0=1;1=2;", render(TEMPLATE, data("Items", IntStream.rangeClosed(1, 2))));
+        assertEquals("empty", render(TEMPLATE, data("Items", Stream.empty())));
+    }
+
+    @Test
+    void testSpliteratorAndEnumeration() throws IOException, TemplateException {
+        List<String> items = Arrays.asList("a", "b");
+        assertEquals("0=a;1=b;", render(TEMPLATE, data("Items", items.spliterator())));
+        assertEquals("0=a;1=b;", render(TEMPLATE, data("Items", new Vector<>(items).elements())));
+        assertEquals("empty", render(TEMPLATE, data("Items", Collections.emptyEnumeration())));
+    }
+
+    @Test
+    void testStreamIsClosed() throws IOException, TemplateException {
+        AtomicBoolean closed = new AtomicBoolean();
+        assertEquals("0=a;1=b;", render(TEMPLATE, data("Items", Stream.of("a", "b").onClose(() -> closed.set(true)))));
+        assertTrue(closed.get());
+
+        closed.set(false);
+        assertEquals("a", render("{{range .Items}}{{.}}{{break}}{{end}}",
+                data("Items", Stream.of("a", "b").onClose(() -> closed.set(true)))));
+        assertTrue(closed.get());
+
+        closed.set(false);
+        Stream<String> failing = Stream.of("a").onClose(() -> closed.set(true));
+        assertThrows(TemplateExecutionException.class, () -> render("{{range .Items}}{{.Missing.Field}}{{end}}",
+                data("Items", failing)));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void testElementsArePulledOnDemand() throws IOException, TemplateException {
+        AtomicInteger pulled = new AtomicInteger();
+        assertEquals("0", render("{{range .Items}}{{.}}{{break}}{{end}}", data("Items", counting(pulled, 1_000_000))));
+        assertEquals(1, pulled.get());
+
+        pulled.set(0);
+        assertEquals("3", render("{{range $i, $v := .Items}}{{if eq $v 2}}{{len $.Rest}}{{end}}{{end}}",
+                data("Items", counting(pulled, 3), "Rest", "abc")));
+        assertEquals(3, pulled.get());
+    }
+
+    @Test
+    void testContinueInStream() throws IOException, TemplateException {
+        assertEquals("13", render("{{range .Items}}{{if eq . 2}}{{continue}}{{end}}{{.}}{{end}}",
+                data("Items", IntStream.rangeClosed(1, 3))));
+    }
+}
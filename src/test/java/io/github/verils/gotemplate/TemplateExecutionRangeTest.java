@@ -63,4 +63,27 @@ class TemplateExecutionRangeTest {
         assertEquals("a=1", render("{{range $k, $v := .Items}}{{$k}}={{$v}}{{break}}{{end}}",
                 data("Items", items)));
     }
+
+    @Test
+    void testRangeOverPrimitiveArraysPrintsElements() throws IOException, TemplateException {
+        String template = "{{range .Items}}[{{.}}]{{end}}";
+        assertEquals("[1][2]", render(template, data("Items", new int[]{1, 2})));
+        assertEquals("[9007199254740993]", render(template, data("Items", new long[]{9007199254740993L})));
+        assertEquals("[0.5][1.0E10]", render(template, data("Items", new double[]{0.5, 1e10})));
+        assertEquals("[-1][127]", render(template, data("Items", new byte[]{-1, 127})));
+        assertEquals("[a][b]", render(template, data("Items", new char[]{'a', 'b'})));
+        assertEquals("empty", render("{{range .Items}}{{.}}{{else}}empty{{end}}", data("Items", new double[0])));
+    }
+
+    @Test
+    void testRangeOverPrimitiveArraysWithFullBody() throws IOException, TemplateException {
+        String template = "{{range $i, $v := .Items}}{{if $i}},{{end}}{{$i}}:{{.}}{{if ge $v 2}}{{break}}{{end}}{{end}}";
+        assertEquals("0:1,1:2", render(template, data("Items", new int[]{1, 2, 3})));
+        assertEquals("0:1,1:2", render(template, data("Items", new long[]{1, 2, 3})));
+        assertEquals("0:1.5,1:2.5", render(template, data("Items", new double[]{1.5, 2.5, 3.5})));
+        assertEquals("0:1,1:2", render(template, data("Items", new byte[]{1, 2, 3})));
+        assertEquals("0:1.0,1:2.0", render(template, data("Items", new float[]{1, 2, 3})));
+        assertEquals("0:a", render("{{range $i, $v := .Items}}{{$i}}:{{$v}}{{break}}{{end}}",
+                data("Items", new String[]{"a", "b"})));
+    }
 }
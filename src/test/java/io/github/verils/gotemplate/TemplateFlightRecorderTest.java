@@ -0,0 +1,113 @@
+package io.github.verils.gotemplate;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Flight Recorder events of parsing and execution.
+ */
+class TemplateFlightRecorderTest {
+
+    private static final String PREFIX = "io.github.verils.gotemplate.";
+
+    public static class Item {
+        public String name = "field";
+
+        public String getTitle() {
+            return "method";
+        }
+    }
+
+    @TempDir
+    Path directory;
+
+    private List<RecordedEvent> record(Recording recording, Runnable work) throws Exception {
+        recording.start();
+        work.run();
+        recording.stop();
+        Path file = directory.resolve("recording.jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().startsWith(PREFIX))
+                .collect(Collectors.toList());
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(PREFIX + name))
+                .collect(Collectors.toList());
+    }
+
+    private static void run(Template template, Object data) {
+        try {
+            template.execute(new StringWriter(), data);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    void testEventsAreRecordedWhenEnabled() throws Exception {
+        Template template = new Template("page");
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(PREFIX + "Parse");
+            recording.enable(PREFIX + "Execution");
+            recording.enable(PREFIX + "TemplateInvocation");
+            recording.enable(PREFIX + "FieldResolution");
+            events = record(recording, () -> {
+                try {
+                    template.parse("{{define \"row\"}}{{.name}}{{.Title}}{{end}}{{.Key}}"
+                            + "{{template \"row\" .Item}}");
+                    assertThrows(TemplateParseException.class, () -> new Template("bad").parse("{{if}}"));
+                } catch (TemplateParseException e) {
+                    throw new AssertionError(e);
+                }
+                run(template, data("Key", "v", "Item", new Item()));
+                assertThrows(AssertionError.class, () -> run(template, data("Key", "v", "Item", 1)));
+            });
+        }
+
+        List<RecordedEvent> parses = events(events, "Parse");
+        assertEquals(2, parses.size());
+        assertEquals("page", parses.get(0).getString("templateName"));
+        assertEquals(2, parses.get(0).getInt("templateCount"));
+        assertFalse(parses.get(0).getBoolean("failed"));
+        assertTrue(parses.get(1).getBoolean("failed"));
+
+        List<RecordedEvent> executions = events(events, "Execution");
+        assertEquals(2, executions.size());
+        assertEquals("page", executions.get(0).getString("templateName"));
+        assertEquals("vfieldmethod".length(), executions.get(0).getLong("outputLength"));
+        assertFalse(executions.get(0).getBoolean("failed"));
+        assertTrue(executions.get(1).getBoolean("failed"));
+
+        RecordedEvent invocation = events(events, "TemplateInvocation").get(0);
+        assertEquals("row", invocation.getString("templateName"));
+        assertEquals("page", invocation.getString("callerName"));
+
+        List<String> resolutions = events(events, "FieldResolution").stream()
+                .map(event -> event.getString("identifier") + "=" + event.getString("resolution"))
+                .collect(Collectors.toList());
+        assertEquals(List.of("name=field", "Title=method", "name=missing"), resolutions);
+    }
+
+    @Test
+    void testEventsAreDisabledByDefault() throws Exception {
+        Template template = new Template("page");
+        template.parse("{{.Key}}");
+        try (Recording recording = new Recording()) {
+            assertTrue(record(recording, () -> run(template, data("Key", "v"))).isEmpty());
+        }
+    }
+}
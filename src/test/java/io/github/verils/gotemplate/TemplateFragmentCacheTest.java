@@ -0,0 +1,182 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link FragmentCache} and {@link Template#withFragmentCache(FragmentCache)}.
+ */
+class TemplateFragmentCacheTest {
+
+    private static final String PAGE = "{{define \"footer\"}}<footer>{{count}} {{.Name}}</footer>{{end}}"
+            + "{{define \"menu\"}}<nav>{{count}}</nav>{{end}}"
+            + "{{.Title}}{{template \"footer\" .Site}}{{template \"menu\" .}}";
+
+    private final AtomicInteger renders = new AtomicInteger();
+
+    private Template template(FragmentCache cache) throws TemplateParseException {
+        Map<String, Function> functions = new HashMap<>();
+        functions.put("count", args -> renders.incrementAndGet());
+        Template template = new Template("page", functions).withFragmentCache(cache);
+        template.parse(PAGE);
+        return template;
+    }
+
+    private static String render(Template template, Object data) throws IOException, TemplateException {
+        StringWriter writer = new StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    private static Object page(String title, String site) {
+        return data("Title", title, "Site", data("Name", site));
+    }
+
+    @Test
+    void testCachedOutputIsReplayed() throws Exception {
+        FragmentCache cache = new FragmentCache(10).withKey("footer", site -> ((Map<?, ?>) site).get("Name"));
+        Template template = template(cache);
+
+        assertEquals("a<footer>1 acme</footer><nav>2</nav>", render(template, page("a", "acme")));
+        assertEquals("b<footer>1 acme</footer><nav>3</nav>", render(template, page("b", "acme")));
+        assertEquals("c<footer>4 other</footer><nav>5</nav>", render(template, page("c", "other")));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(2, cache.size());
+        assertEquals(1.0 / 3, cache.hitRate(), 1e-9);
+        assertTrue(cache.isCached("footer"));
+        assertFalse(cache.isCached("menu"));
+    }
+
+    @Test
+    void testNullKeysAreNotCached() throws Exception {
+        FragmentCache cache = new FragmentCache(10).withKey("footer", site -> null);
+        Template template = template(cache);
+        render(template, page("a", "acme"));
+        assertEquals("a<footer>3 acme</footer><nav>4</nav>", render(template, page("a", "acme")));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hitRate());
+    }
+
+    @Test
+    void testLeastRecentlyUsedOutputIsEvicted() throws Exception {
+        FragmentCache cache = new FragmentCache(2).withKey("footer", site -> ((Map<?, ?>) site).get("Name"));
+        Template template = template(cache);
+        render(template, page("", "a"));
+        render(template, page("", "b"));
+        render(template, page("", "a"));
+        render(template, page("", "c"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        long misses = cache.missCount();
+        render(template, page("", "a"));
+        assertEquals(misses, cache.missCount());
+        render(template, page("", "b"));
+        assertEquals(misses + 1, cache.missCount());
+    }
+
+    @Test
+    void testOutputExpires() throws Exception {
+        AtomicLong now = new AtomicLong();
+        FragmentCache cache = new FragmentCache(10).withExpireAfterWrite(Duration.ofSeconds(10))
+                .withTicker(now::get).withKey("menu", page -> "all");
+        Template template = template(cache);
+
+        assertEquals("<nav>2</nav>", render(template, page("", "x")).replaceAll(".*footer>", ""));
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertEquals("<nav>2</nav>", render(template, page("", "x")).replaceAll(".*footer>", ""));
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertEquals("<nav>5</nav>", render(template, page("", "x")).replaceAll(".*footer>", ""));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(Duration.ofSeconds(10), cache.expireAfterWrite());
+    }
+
+    @Test
+    void testInvalidation() throws Exception {
+        FragmentCache cache = new FragmentCache(10).withKey("menu", page -> "all")
+                .withKey("footer", site -> "all");
+        Template template = template(cache);
+        render(template, page("", "x"));
+        assertEquals(2, cache.size());
+
+        cache.invalidate("menu");
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+
+        cache.withKey("menu", null);
+        assertFalse(cache.isCached("menu"));
+    }
+
+    @Test
+    void testFailuresAreNotCached() throws Exception {
+        FragmentCache cache = new FragmentCache(10).withKey("row", row -> row);
+        Template template = new Template("page").withFragmentCache(cache)
+                .withMissingKeyPolicy(MissingKeyPolicy.ERROR);
+        template.parse("{{define \"row\"}}{{.Name}}{{end}}{{template \"row\" .}}");
+        assertThrows(TemplateExecutionException.class, () -> render(template, data("Other", "x")));
+        assertEquals(0, cache.size());
+
+        FragmentCache failingKey = new FragmentCache(10).withKey("row", row -> {
+            throw new IllegalStateException("no key");
+        });
+        TemplateExecutionException e = assertThrows(TemplateExecutionException.class,
+                () -> render(new Template(template).withFragmentCache(failingKey), data("Name", "x")));
+        assertEquals("error computing fragment key of template row: no key", e.getMessage());
+    }
+
+    @Test
+    void testTemplatesSharingTheCacheKeepTheirOwnOutput() throws Exception {
+        FragmentCache cache = new FragmentCache(10).withKey("footer", value -> "all");
+        Template first = new Template("page").withFragmentCache(cache);
+        first.parse("{{define \"footer\"}}A-{{.}}{{end}}{{template \"footer\" .}}");
+        Template second = new Template("page").withFragmentCache(cache);
+        second.parse("{{define \"footer\"}}B-{{.}}{{end}}{{template \"footer\" .}}");
+
+        assertEquals("A-footer", render(first, "footer"));
+        assertEquals("B-footer", render(second, "footer"));
+        assertEquals("A-footer", render(first, "footer"));
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    void testRedefinedTemplatesAreRenderedAgain() throws Exception {
+        FragmentCache cache = new FragmentCache(10).withKey("footer", value -> "all");
+        Template template = new Template("page").withFragmentCache(cache);
+        template.parse("{{define \"footer\"}}old{{.}}{{end}}{{template \"footer\" .}}");
+        assertEquals("old:", render(template, ":"));
+
+        template.parse("{{define \"footer\"}}new{{.}}{{end}}");
+        assertEquals("new:", render(template, ":"));
+        assertEquals("new:", render(template, ":"));
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    void testConfiguration() throws TemplateParseException {
+        FragmentCache cache = new FragmentCache(5);
+        assertEquals(5, cache.maximumSize());
+        assertEquals(Duration.ZERO, cache.expireAfterWrite());
+        assertEquals(Duration.ZERO, cache.withExpireAfterWrite(Duration.ofMinutes(1))
+                .withExpireAfterWrite(null).expireAfterWrite());
+        assertSame(cache, new Template(template(cache)).fragmentCache());
+        assertNull(new Template("x").fragmentCache());
+
+        assertThrows(IllegalArgumentException.class, () -> new FragmentCache(0));
+        assertThrows(IllegalArgumentException.class, () -> cache.withKey(null, key -> key));
+        assertThrows(IllegalArgumentException.class, () -> cache.withExpireAfterWrite(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> cache.withTicker(null));
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Template#withMetrics(TemplateMetrics, int)} and {@link MetricsRecorder}.
+ */
+class TemplateMetricsTest {
+
+    private static final String PAGE = "{{define \"row\"}}<li>{{.}}</li>{{end}}"
+            + "<h1>{{.Title}}</h1>\n"
+            + "<ul>{{range .Rows}}\n"
+            + "  {{template \"row\" .}}{{end}}</ul>\n"
+            + "{{if .Footer}}{{.Footer}}{{else if .Title}}-{{end}}";
+
+    private static String render(Template template, Object data) throws IOException, TemplateException {
+        StringWriter writer = new StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    private static Template template(TemplateMetrics metrics, int nodeSampling) throws TemplateParseException {
+        Template template = new Template("page").withMetrics(metrics, nodeSampling);
+        template.parse(PAGE);
+        return template;
+    }
+
+    @Test
+    void testExecutionsAreRecorded() throws Exception {
+        MetricsRecorder recorder = new MetricsRecorder();
+        Template template = template(recorder, 0).withMissingKeyPolicy(MissingKeyPolicy.ERROR);
+
+        String output = render(template, data("Title", "t", "Rows", new int[]{1, 2}, "Footer", ""));
+        assertThrows(TemplateExecutionException.class, () -> render(template, data("Rows", null)));
+
+        MetricsRecorder.TemplateStatistics page = recorder.templateStatistics("page");
+        assertEquals("page", page.templateName());
+        assertEquals(2, page.executionCount());
+        assertEquals(1, page.failureCount());
+        // The failed execution wrote "<h1>" before failing
+        assertEquals(output.length() + 4, page.outputLength());
+        assertEquals(2, java.util.Arrays.stream(page.latencyBuckets()).sum());
+        assertTrue(recorder.nodeStatistics().isEmpty());
+        assertEquals(1, recorder.templateStatistics().size());
+        assertNull(recorder.templateStatistics("other"));
+    }
+
+    @Test
+    void testSampledExecutionsReportNodes() throws Exception {
+        List<String> nodes = new ArrayList<>();
+        TemplateMetrics metrics = new TemplateMetrics() {
+            @Override
+            public void executed(String templateName, long durationNanos, long outputLength, Throwable failure) {
+            }
+
+            @Override
+            public void nodeExecuted(String templateName, int line, int column, String action, long durationNanos) {
+                nodes.add(templateName + " " + line + ":" + column + " " + action);
+            }
+        };
+        render(template(metrics, 1), data("Title", "t", "Rows", new int[]{1}, "Footer", ""));
+
+        assertEquals(List.of(
+                "page 1:42 {{.Title}}",
+                "row 1:21 {{.}}",
+                "page 3:3 {{template \"row\" .}}",
+                "page 2:5 {{range .Rows}}",
+                "page 4:33 {{if .Title}}",
+                "page 4:1 {{if .Footer}}"), nodes);
+    }
+
+    @Test
+    void testNodeStatisticsAreAggregated() throws Exception {
+        MetricsRecorder recorder = new MetricsRecorder();
+        Template template = template(recorder, 1);
+        render(template, data("Title", "t", "Rows", new int[]{1, 2, 3}));
+
+        List<MetricsRecorder.NodeStatistics> nodes = recorder.nodeStatistics();
+        MetricsRecorder.NodeStatistics row = nodes.stream().filter(node -> node.templateName().equals("row"))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals(3, row.count());
+        assertEquals(1, row.line());
+        assertEquals(21, row.column());
+        assertEquals("{{.}}", row.action());
+        assertFalse(row.totalTime().isNegative());
+
+        List<Duration> times = nodes.stream().map(MetricsRecorder.NodeStatistics::totalTime)
+                .collect(Collectors.toList());
+        List<Duration> sorted = new ArrayList<>(times);
+        sorted.sort(java.util.Comparator.reverseOrder());
+        assertEquals(sorted, times);
+
+        recorder.reset();
+        assertTrue(recorder.nodeStatistics().isEmpty());
+        assertTrue(recorder.templateStatistics().isEmpty());
+    }
+
+    @Test
+    void testLatencyPercentiles() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        for (int i = 0; i < 99; i++) {
+            recorder.executed("t", 1000, 0, null);
+        }
+        recorder.executed("t", 1_000_000, 0, null);
+        recorder.executed("zero", 0, 0, null);
+
+        MetricsRecorder.TemplateStatistics statistics = recorder.templateStatistics("t");
+        assertEquals(Duration.ofNanos(1023), statistics.latencyPercentile(0.5));
+        assertEquals(Duration.ofNanos(1023), statistics.latencyPercentile(0.99));
+        assertEquals(Duration.ofNanos(1048575), statistics.latencyPercentile(1));
+        assertEquals(Duration.ofNanos(1023), statistics.latencyPercentile(0));
+        assertEquals(Duration.ofNanos(99 * 1000 + 1_000_000), statistics.totalTime());
+        assertEquals(Duration.ofNanos(1), recorder.templateStatistics("zero").latencyPercentile(0.5));
+        assertThrows(IllegalArgumentException.class, () -> statistics.latencyPercentile(1.5));
+        assertThrows(IllegalArgumentException.class, () -> statistics.latencyPercentile(-0.1));
+    }
+
+    @Test
+    void testConfiguration() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        Template template = new Template("page").withMetrics(recorder);
+        assertSame(recorder, template.metrics());
+        assertEquals(0, template.nodeSampling());
+        assertEquals(10, new Template(template.withMetrics(recorder, 10)).nodeSampling());
+        assertNull(new Template("page").metrics());
+        assertThrows(IllegalArgumentException.class, () -> template.withMetrics(recorder, -1));
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Template#profile(java.io.Writer, Object)} and {@link TemplateProfile}.
+ */
+class TemplateProfileTest {
+
+    private static final String PAGE = "<h1>{{.Title}}</h1>\n"
+            + "{{range .Orders}}\n"
+            + "  <li>{{slow .}}</li>\n"
+            + "{{end}}{{template \"footer\" 3}}";
+
+    private static Template template() throws TemplateParseException {
+        Map<String, Function> functions = new HashMap<>();
+        functions.put("slow", args -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new byte[100_000].length;
+        });
+        functions.put("minus", args -> ((Number) args[0]).intValue() - 1);
+        Template template = new Template("page", functions);
+        template.parse(PAGE);
+        template.parse("{{define \"footer\"}}{{if gt . 0}}{{template \"footer\" (minus .)}}{{end}}{{end}}");
+        return template;
+    }
+
+    private static TemplateProfile.Entry entry(TemplateProfile profile, String action) {
+        return profile.entries().stream().filter(entry -> entry.action().equals(action)).findFirst()
+                .orElseThrow(() -> new AssertionError(action + " not in " + profile));
+    }
+
+    @Test
+    void testTimeIsAttributedToLines() throws Exception {
+        Template template = template().withParallelRange(true)
+                .withParallelTemplates(ForkJoinPool.commonPool());
+        StringWriter writer = new StringWriter();
+        TemplateProfile profile = template.profile(writer, data("Title", "t", "Orders", List.of(1, 2, 3)));
+
+        assertEquals("<h1>t</h1>\n\n  <li>100000</li>\n\n  <li>100000</li>\n\n  <li>100000</li>\n", writer.toString());
+        assertEquals("page", profile.templateName());
+
+        TemplateProfile.Entry range = profile.entries().get(0);
+        assertEquals("{{range .Orders}}", range.action());
+        assertEquals("page", range.templateName());
+        assertEquals(2, range.line());
+        assertEquals(1, range.column());
+        assertEquals(1, range.count());
+        assertTrue(range.totalTime().compareTo(Duration.ofMillis(15)) >= 0);
+        assertTrue(range.share() > 0.5 && range.share() <= 1);
+        assertTrue(range.totalTime().compareTo(profile.totalTime()) <= 0);
+
+        TemplateProfile.Entry slow = entry(profile, "{{slow .}}");
+        assertEquals(3, slow.line());
+        assertEquals(7, slow.column());
+        assertEquals(3, slow.count());
+        assertEquals(slow.totalTime(), slow.selfTime());
+        assertEquals(range.totalTime(), range.selfTime().plus(slow.totalTime()));
+
+        TemplateProfile.Entry title = entry(profile, "{{.Title}}");
+        assertEquals(1, title.line());
+        assertEquals(5, title.column());
+        assertTrue(profile.toString().contains("page:2:1  {{range .Orders}}"));
+        assertTrue(profile.toString().startsWith("Profile of template page: "));
+    }
+
+    @Test
+    void testRecursiveTemplatesAreCountedOnce() throws Exception {
+        Template template = template();
+        TemplateProfile profile = template.profile(new StringWriter(), data("Orders", List.of()));
+
+        TemplateProfile.Entry invocation = entry(profile, "{{template \"footer\" (minus .)}}");
+        assertEquals(3, invocation.count());
+        TemplateProfile.Entry condition = entry(profile, "{{if gt . 0}}");
+        assertEquals(4, condition.count());
+        assertTrue(condition.totalTime().compareTo(profile.totalTime()) <= 0);
+        assertTrue(invocation.selfTime().compareTo(invocation.totalTime()) <= 0);
+    }
+
+    @Test
+    void testPrimitiveArrayRangesAreObserved() throws Exception {
+        Template template = new Template("page");
+        template.parse("{{range .}}<td>{{.}}</td>{{end}}");
+        StringWriter writer = new StringWriter();
+        TemplateProfile profile = template.profile(writer, new int[]{1, 2, 3});
+
+        assertEquals("<td>1</td><td>2</td><td>3</td>", writer.toString());
+        TemplateProfile.Entry value = entry(profile, "{{.}}");
+        assertEquals(3, value.count());
+        assertEquals(1, value.line());
+        assertEquals(16, value.column());
+    }
+
+    @Test
+    void testAllocationsAreMeasured() throws Exception {
+        TemplateProfile profile = template()
+                .profile(new StringWriter(), data("Orders", List.of(1)));
+        TemplateProfile.Entry slow = entry(profile, "{{slow .}}");
+        if (profile.allocationsMeasured()) {
+            assertTrue(slow.selfAllocatedBytes() >= 100_000);
+            assertTrue(entry(profile, "{{range .Orders}}").allocatedBytes() >= slow.allocatedBytes());
+            assertTrue(profile.allocatedBytes() >= slow.allocatedBytes());
+        } else {
+            assertEquals(0, slow.allocatedBytes());
+        }
+    }
+
+    @Test
+    void testFailures() throws Exception {
+        assertThrows(TemplateNotFoundException.class, () -> new Template("page").profile(new StringWriter(), null));
+        Template template = new Template("page");
+        template.parse("{{len 3}}");
+        assertThrows(TemplateExecutionException.class, () -> template.profile(new StringWriter(), null));
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Template#executePublisher(Object, java.util.concurrent.Executor)}.
+ */
+class TemplatePublisherTest {
+
+    private static final String ROWS = "{{range .Rows}}row-{{.}}\n{{end}}";
+
+    private static final Object COMPLETE = new Object();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * Queues every signal it receives: chunks as strings, errors, and {@link #COMPLETE}.
+     */
+    private static class QueueingSubscriber implements Flow.Subscriber<CharBuffer> {
+        final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        final long initialRequest;
+        Flow.Subscription subscription;
+
+        QueueingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest != 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(CharBuffer item) {
+            signals.add(item.toString());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            signals.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            signals.add(COMPLETE);
+        }
+
+        Object next() throws InterruptedException {
+            Object signal = signals.poll(10, TimeUnit.SECONDS);
+            assertNotNull(signal, "no signal");
+            return signal;
+        }
+
+        String collect() throws InterruptedException {
+            StringBuilder output = new StringBuilder();
+            for (Object signal = next(); signal != COMPLETE; signal = next()) {
+                assertInstanceOf(String.class, signal);
+                output.append(signal);
+            }
+            return output.toString();
+        }
+    }
+
+    /**
+     * Row source counting the rows rendered.
+     */
+    private static Iterator<Integer> rows(AtomicInteger pulled, int count) {
+        return new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return pulled.get() < count;
+            }
+
+            @Override
+            public Integer next() {
+                return pulled.getAndIncrement();
+            }
+        };
+    }
+
+    private static String expectedRows(int count) {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            expected.append("row-").append(i).append('\n');
+        }
+        return expected.toString();
+    }
+
+    private static Template template(String source) throws TemplateParseException {
+        Template template = new Template("test");
+        template.parse(source);
+        return template;
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testPublishesAllChunks() throws Exception {
+        QueueingSubscriber subscriber = new QueueingSubscriber(Long.MAX_VALUE);
+        template(ROWS).withFlushThreshold(64).executePublisher(data("Rows", rows(new AtomicInteger(), 500)), executor)
+                .subscribe(subscriber);
+        assertEquals(expectedRows(500), subscriber.collect());
+    }
+
+    @Test
+    void testDefaultExecutor() throws Exception {
+        QueueingSubscriber subscriber = new QueueingSubscriber(Long.MAX_VALUE);
+        template("Hello, {{.}}!").executePublisher("World").subscribe(subscriber);
+        assertEquals("Hello, World!", subscriber.collect());
+    }
+
+    @Test
+    void testRenderingWaitsForDemand() throws Exception {
+        AtomicInteger pulled = new AtomicInteger();
+        QueueingSubscriber subscriber = new QueueingSubscriber(1);
+        template(ROWS).withFlushThreshold(64).executePublisher(data("Rows", rows(pulled, 10_000)), executor)
+                .subscribe(subscriber);
+
+        Object first = subscriber.next();
+        assertInstanceOf(String.class, first);
+        assertNull(subscriber.signals.poll(200, TimeUnit.MILLISECONDS));
+        int pulledWhilePaused = pulled.get();
+        assertTrue(pulledWhilePaused < 100, "pulled " + pulledWhilePaused);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(expectedRows(10_000), first + subscriber.collect());
+        assertEquals(10_000, pulled.get());
+    }
+
+    @Test
+    void testCancelStopsRendering() throws Exception {
+        AtomicInteger pulled = new AtomicInteger();
+        QueueingSubscriber subscriber = new QueueingSubscriber(1);
+        template(ROWS).withFlushThreshold(64).executePublisher(data("Rows", rows(pulled, 10_000)), executor)
+                .subscribe(subscriber);
+
+        assertInstanceOf(String.class, subscriber.next());
+        subscriber.subscription.cancel();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(pulled.get() < 100, "pulled " + pulled.get());
+        assertTrue(subscriber.signals.isEmpty());
+    }
+
+    @Test
+    void testFailuresAreSignalled() throws Exception {
+        QueueingSubscriber subscriber = new QueueingSubscriber(Long.MAX_VALUE);
+        template("{{.Missing.Field}}").executePublisher(new Object(), executor).subscribe(subscriber);
+        assertInstanceOf(TemplateExecutionException.class, subscriber.next());
+
+        QueueingSubscriber invalid = new QueueingSubscriber(0);
+        template(ROWS).executePublisher(data("Rows", rows(new AtomicInteger(), 10)), executor).subscribe(invalid);
+        invalid.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, invalid.next());
+
+        QueueingSubscriber rejected = new QueueingSubscriber(1);
+        template("x").executePublisher(null, task -> {
+            throw new RejectedExecutionException("full");
+        }).subscribe(rejected);
+        assertInstanceOf(RejectedExecutionException.class, rejected.next());
+    }
+
+    @Test
+    void testEachSubscriberGetsItsOwnExecution() throws Exception {
+        Flow.Publisher<CharBuffer> publisher = template("{{.}}").executePublisher(Lazy.of(() -> "x"), executor);
+        for (int i = 0; i < 2; i++) {
+            QueueingSubscriber subscriber = new QueueingSubscriber(1);
+            publisher.subscribe(subscriber);
+            assertEquals("x", subscriber.collect());
+        }
+        assertThrows(IllegalArgumentException.class, () -> template("x").executePublisher(null, null));
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Set;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Template#specialize(Object, Set)}.
+ */
+class TemplateSpecializationTest {
+
+    private static final String PAGE = "{{define \"row\"}}<li>{{.}}</li>{{end}}"
+            + "<h1>{{.Tenant.Name | printf \"%s!\"}}</h1>"
+            + "{{if .Tenant.Beta}}<b>beta</b>{{else}}<i>{{.User}}</i>{{end}}"
+            + "{{range .Items}}{{template \"row\" .}}{{$.Tenant.Name}}{{end}}"
+            + "{{with .User}}{{.}}@{{($.Tenant).Name}}{{else}}{{.Locale.Hello}}{{end}}"
+            + "{{template \"row\" .Locale.Hello}}";
+
+    private static String render(Template template, Object data) throws IOException, TemplateException {
+        StringWriter writer = new StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    private static Object tenant(String name, boolean beta) {
+        return data("Tenant", data("Name", name, "Beta", beta), "Locale", data("Hello", "hi"));
+    }
+
+    @Test
+    void testResidualRendersLikeTheOriginal() throws Exception {
+        Template template = new Template("page");
+        template.parse(PAGE);
+        Object full = data("Tenant", data("Name", "acme", "Beta", false), "Locale", data("Hello", "hi"),
+                "User", "bob", "Items", new String[]{"x"});
+
+        Template specialized = template.specialize(tenant("acme", false), Set.of("Tenant", "Locale.Hello"));
+        String expected = render(template, full);
+        assertEquals("<h1>acme!</h1><i>bob</i><li>x</li>acmebob@acme<li>hi</li>", expected);
+        assertEquals(expected, render(specialized, full));
+        assertEquals(expected, render(specialized.withConstantFolding(false), full));
+    }
+
+    @Test
+    void testStaticFieldsAreNotReadFromTheData() throws Exception {
+        Template template = new Template("page");
+        template.parse(PAGE);
+        Template specialized = template.specialize(tenant("acme", true), Set.of("Tenant", "Locale"));
+
+        Object dynamic = data("User", "", "Items", new String[]{"x"});
+        assertEquals("<h1>acme!</h1><b>beta</b><li>x</li>acmehi<li>hi</li>",
+                render(specialized, dynamic));
+        assertEquals("<h1>acme!</h1><b>beta</b>hi<li>hi</li>", render(specialized, null));
+    }
+
+    @Test
+    void testSelectedBranchesKeepTheirVariableScope() throws Exception {
+        Template template = new Template("page");
+        template.parse("{{$x := 1}}{{if .T}}{{$x := 2}}{{$x}}{{end}}-{{$x}}"
+                + "{{if .F}}{{else}}{{$x = 3}}{{$x}}{{end}}-{{$x}}");
+        Object data = data("T", true, "F", false);
+        assertEquals("2-13-1", render(template, data));
+
+        Template specialized = template.specialize(data, Set.of("T", "F"));
+        assertEquals("2-13-1", render(specialized, null));
+        assertEquals("2-13-1", render(specialized.withConstantFolding(false), null));
+    }
+
+    @Test
+    void testOnlyStaticPathsAreEvaluated() throws Exception {
+        Template template = new Template("page");
+        template.parse("{{.Tenant.Name}} {{.Other}} {{.Tenant.Plan}} {{.Tenant.Missing.Key}}");
+        Template specialized = template.specialize(data("Tenant", data("Name", "acme"), "Other", "static"),
+                Set.of("Tenant.Name"));
+
+        assertEquals("acme dynamic pro <no value>",
+                render(specialized, data("Other", "dynamic", "Tenant", data("Name", "x", "Plan", "pro"))));
+    }
+
+    @Test
+    void testUnevaluableFieldsAreLeftForExecution() throws Exception {
+        Template template = new Template("page").withMissingKeyPolicy(MissingKeyPolicy.ERROR);
+        template.parse("{{if .Tenant.Missing}}a{{else}}b{{end}}{{.Tenant.Name}}");
+        Template specialized = template.specialize(data("Tenant", data("Name", "acme")), Set.of("Tenant"));
+
+        assertEquals("bacme", render(specialized, data("Tenant", data("Name", "x", "Missing", false))));
+        assertThrows(TemplateExecutionException.class, () -> render(specialized, data("Other", 1)));
+    }
+
+    @Test
+    void testOriginalIsUnchanged() throws Exception {
+        Template template = new Template("page");
+        template.parse("{{.Tenant}}");
+        template.specialize(data("Tenant", "a"), Set.of("Tenant"));
+        assertEquals("b", render(template, data("Tenant", "b")));
+        assertEquals("b", render(template.specialize(null, Collections.emptySet()), data("Tenant", "b")));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        Template template = new Template("page");
+        assertThrows(TemplateNotFoundException.class, () -> template.specialize(null, Set.of("Tenant")));
+        assertThrows(IllegalArgumentException.class, () -> template.specialize(null, null));
+    }
+}
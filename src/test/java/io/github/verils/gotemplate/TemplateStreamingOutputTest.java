@@ -0,0 +1,190 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for incremental output configured by {@link Template#withFlushThreshold(int)} and
+ * {@link Template#execute(OutputSink, Object)}.
+ */
+class TemplateStreamingOutputTest {
+
+    private static final String ROWS = "{{range .Rows}}row-{{.}}\n{{end}}";
+
+    /**
+     * Records the chunks a sink receives.
+     */
+    private static class RecordingSink implements OutputSink {
+        final List<String> chunks = new ArrayList<>();
+        int flushes;
+
+        @Override
+        public void write(char[] chunk, int offset, int length) {
+            chunks.add(new String(chunk, offset, length));
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        String output() {
+            return String.join("", chunks);
+        }
+    }
+
+    /**
+     * Counts flushes of the destination writer.
+     */
+    private static class FlushCountingWriter extends StringWriter {
+        int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    private static Template template(String source) throws TemplateParseException {
+        Template template = new Template("test");
+        template.parse(source);
+        return template;
+    }
+
+    private static String expectedRows(int count) {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            expected.append("row-").append(i).append('\n');
+        }
+        return expected.toString();
+    }
+
+    @Test
+    void testWritesThroughByDefault() throws IOException, TemplateException {
+        Template template = template(ROWS);
+        assertEquals(0, template.flushThreshold());
+
+        FlushCountingWriter writer = new FlushCountingWriter();
+        template.execute(writer, data("Rows", IntStream.range(0, 100)));
+        assertEquals(expectedRows(100), writer.toString());
+        assertEquals(0, writer.flushes);
+    }
+
+    @Test
+    void testChunksEndAtRangeIterations() throws IOException, TemplateException {
+        RecordingSink sink = new RecordingSink();
+        template(ROWS).withFlushThreshold(20).execute(sink, data("Rows", IntStream.range(0, 100)));
+
+        assertEquals(expectedRows(100), sink.output());
+        assertTrue(sink.chunks.size() > 10);
+        for (String chunk : sink.chunks) {
+            assertTrue(chunk.endsWith("\n"), chunk);
+            assertTrue(chunk.length() <= 40, chunk);
+        }
+        for (String chunk : sink.chunks.subList(0, sink.chunks.size() - 1)) {
+            assertTrue(chunk.length() >= 20, chunk);
+        }
+        assertTrue(sink.flushes >= sink.chunks.size());
+    }
+
+    @Test
+    void testPrintOnlyRangeBodiesAreFlushPoints() throws IOException, TemplateException {
+        RecordingSink sink = new RecordingSink();
+        int[] rows = IntStream.range(0, 100).toArray();
+        template(ROWS).withFlushThreshold(20).execute(sink, data("Rows", rows));
+        assertEquals(expectedRows(100), sink.output());
+        assertTrue(sink.chunks.stream().allMatch(chunk -> chunk.endsWith("\n")));
+    }
+
+    @Test
+    void testOutputIsBoundedWithoutFlushPoints() throws IOException, TemplateException {
+        RecordingSink sink = new RecordingSink();
+        String text = String.join("", Collections.nCopies(100, "x"));
+        template("{{.}}{{.}}" + text).withFlushThreshold(16).execute(sink, "abcdefghij");
+
+        assertEquals("abcdefghijabcdefghij" + text, sink.output());
+        assertTrue(sink.chunks.stream().anyMatch(chunk -> chunk.equals(text)));
+        assertTrue(sink.chunks.stream().filter(chunk -> !chunk.equals(text)).allMatch(chunk -> chunk.length() <= 32));
+    }
+
+    @Test
+    void testChunksAreDeliveredWhileExecuting() throws IOException, TemplateException {
+        RecordingSink sink = new RecordingSink();
+        List<Integer> chunksSeen = new ArrayList<>();
+        Iterator<Integer> rows = new Iterator<Integer>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < 1000;
+            }
+
+            @Override
+            public Integer next() {
+                chunksSeen.add(sink.chunks.size());
+                return next++;
+            }
+        };
+
+        template(ROWS).withFlushThreshold(64).execute(sink, data("Rows", rows));
+        assertEquals(expectedRows(1000), sink.output());
+        assertTrue(chunksSeen.get(999) > 100);
+    }
+
+    @Test
+    void testWriterIsFlushedIncrementally() throws IOException, TemplateException {
+        FlushCountingWriter writer = new FlushCountingWriter();
+        template(ROWS).withFlushThreshold(100).execute(writer, data("Rows", IntStream.range(0, 100)));
+        assertEquals(expectedRows(100), writer.toString());
+        assertTrue(writer.flushes > 5);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template(ROWS).withFlushThreshold(100).execute(out, data("Rows", IntStream.range(0, 100)));
+        assertEquals(expectedRows(100), out.toString("UTF-8"));
+    }
+
+    @Test
+    void testDefaultThresholdForSinks() throws IOException, TemplateException {
+        RecordingSink sink = new RecordingSink();
+        template(ROWS).execute(sink, data("Rows", IntStream.range(0, 5000)));
+        assertEquals(expectedRows(5000), sink.output());
+        assertTrue(sink.chunks.size() > 1);
+        assertTrue(sink.chunks.get(0).length() >= 8192);
+    }
+
+    @Test
+    void testFailingSinkAbortsExecution() throws TemplateParseException {
+        AtomicBoolean closed = new AtomicBoolean();
+        OutputSink sink = (chunk, offset, length) -> {
+            throw new IOException("client gone");
+        };
+        Template template = template(ROWS).withFlushThreshold(10);
+        IOException e = assertThrows(IOException.class, () -> template.execute(sink,
+                data("Rows", IntStream.range(0, 100).boxed().onClose(() -> closed.set(true)))));
+        assertEquals("client gone", e.getMessage());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void testConfiguration() throws TemplateParseException {
+        Template template = template(ROWS).withFlushThreshold(1024);
+        assertEquals(1024, template.flushThreshold());
+        assertEquals(1024, new Template(template).flushThreshold());
+        assertThrows(IllegalArgumentException.class, () -> template.withFlushThreshold(-1));
+        assertThrows(IllegalArgumentException.class, () -> template.execute((OutputSink) null, null));
+        assertThrows(IllegalArgumentException.class, () -> OutputSink.of(null));
+        assertThrows(TemplateNotFoundException.class, () -> new Template("empty").execute(new RecordingSink(), null));
+    }
+}
@@ -0,0 +1,213 @@
+package io.github.verils.gotemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static io.github.verils.gotemplate.TemplateTestSupport.data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for custom data models registered with {@link Template#withValueResolver(Class, ValueResolver)}.
+ */
+class TemplateValueResolverTest {
+
+    /**
+     * A minimal document tree that is neither a map nor a bean.
+     */
+    static final class Doc {
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        final List<Object> items = new ArrayList<>();
+
+        Doc field(String name, Object value) {
+            fields.put(name, value);
+            return this;
+        }
+
+        Doc item(Object value) {
+            items.add(value);
+            return this;
+        }
+    }
+
+    static class DocResolver implements ValueResolver<Doc> {
+
+        @Override
+        public Object getField(Doc doc, String name) {
+            return doc.fields.containsKey(name) ? doc.fields.get(name) : MISSING;
+        }
+
+        @Override
+        public Iterator<?> iterator(Doc doc) {
+            return doc.items.iterator();
+        }
+
+        @Override
+        public boolean isTrue(Doc doc) {
+            return !doc.fields.isEmpty() || !doc.items.isEmpty();
+        }
+
+        @Override
+        public int length(Doc doc) {
+            return doc.items.size();
+        }
+
+        @Override
+        public Object index(Doc doc, Object key) {
+            return key instanceof Number ? doc.items.get(((Number) key).intValue()) : getField(doc, String.valueOf(key));
+        }
+    }
+
+    private static String render(Template template, String source, Object data) throws IOException, TemplateException {
+        template.parse(source);
+
+        StringWriter writer = new StringWriter();
+        template.execute(writer, data);
+        return writer.toString();
+    }
+
+    private static String render(String source, Object data) throws IOException, TemplateException {
+        return render(new Template("test").withValueResolver(Doc.class, new DocResolver()), source, data);
+    }
+
+    @Test
+    void testFieldAccess() throws IOException, TemplateException {
+        Doc doc = new Doc().field("user", new Doc().field("name", "Ada").field("tags", Arrays.asList("a", "b")));
+        assertEquals("Ada [a, b]", render("{{.user.name}} {{.user.tags}}", doc));
+        assertEquals("Ada", render("{{with .user}}{{.name}}{{end}}", doc));
+        assertEquals("Ada", render("{{$u := .user}}{{$u.name}}", doc));
+        assertEquals("Ada", render("{{.doc.user.name}}", data("doc", doc)));
+    }
+
+    @Test
+    void testFieldValuesAreUnwrapped() throws IOException, TemplateException {
+        Doc doc = new Doc().field("present", Optional.of("x")).field("empty", Optional.empty()).field("null", null);
+        assertEquals("x <no value> <no value>", render("{{.present}} {{.empty}} {{.null}}", doc));
+    }
+
+    @Test
+    void testMissingField() throws IOException, TemplateException {
+        assertEquals("<no value>", render("{{.missing}}", new Doc()));
+
+        Template template = new Template("test").withValueResolver(Doc.class, new DocResolver())
+                .withMissingKeyPolicy(MissingKeyPolicy.ERROR);
+        TemplateExecutionException e = assertThrows(TemplateExecutionException.class,
+                () -> render(template, "{{.missing}}", new Doc()));
+        assertTrue(e.getMessage().contains("can't evaluate field missing in type"));
+    }
+
+    @Test
+    void testRange() throws IOException, TemplateException {
+        Doc doc = new Doc().item("a").item(new Doc().field("name", "b"));
+        assertEquals("0=a;1=map[];", render("{{range $i, $v := .}}{{$i}}={{if eq $i 0}}{{$v}}{{else}}map[]{{end}};{{end}}", doc));
+        assertEquals("b", render("{{range .}}{{if ne . \"a\"}}{{.name}}{{end}}{{end}}", doc));
+        assertEquals("a", render("{{range .}}{{.}}{{break}}{{end}}", doc));
+        assertEquals("none", render("{{range .}}x{{else}}none{{end}}", new Doc()));
+    }
+
+    @Test
+    void testTruthiness() throws IOException, TemplateException {
+        Doc empty = new Doc();
+        Doc full = new Doc().item(1);
+        assertEquals("no", render("{{if .}}yes{{else}}no{{end}}", empty));
+        assertEquals("yes", render("{{if .}}yes{{else}}no{{end}}", full));
+        assertEquals("true false", render("{{not .E}} {{not .F}}", data("E", empty, "F", full)));
+        assertEquals("true", render("{{. | not}}", empty));
+        assertEquals("ok", render("{{if and .F (not .E)}}ok{{end}}", data("E", empty, "F", full)));
+        assertEquals("ok", render("{{if or .E .F}}ok{{end}}", data("E", empty, "F", full)));
+        assertEquals("no", render("{{with .}}yes{{else}}no{{end}}", empty));
+    }
+
+    @Test
+    void testLen() throws IOException, TemplateException {
+        Doc doc = new Doc().item("a").item("b").field("name", "xyz");
+        assertEquals("2 2 3", render("{{len .}} {{. | len}} {{len .name}}", doc));
+    }
+
+    @Test
+    void testIndex() throws IOException, TemplateException {
+        Doc doc = new Doc().item(new Doc().field("tags", Arrays.asList("x", "y"))).field("name", "n");
+        assertEquals("n", render("{{index . \"name\"}}", doc));
+        assertEquals("[x, y]", render("{{index . 0 \"tags\"}}", doc));
+        assertEquals("y", render("{{index . 0 \"tags\" 1}}", doc));
+        assertEquals("[x, y]", render("{{index (index .list 0) \"tags\"}}", data("list", Collections.singletonList(doc.items.get(0)))));
+    }
+
+    @Test
+    void testDefaultsFallBackToBuiltins() throws IOException, TemplateException {
+        Template template = new Template("test")
+                .withValueResolver(ArrayList.class, (list, name) -> "size".equals(name) ? list.size() : ValueResolver.MISSING);
+        assertEquals("2 2 ab b true",
+                render(template, "{{.size}} {{len .}} {{range .}}{{.}}{{end}} {{index . 1}} {{if .}}true{{end}}",
+                        new ArrayList<>(Arrays.asList("a", "b"))));
+        assertEquals("", render(new Template("test").withValueResolver(ArrayList.class, (list, name) -> name),
+                "{{if not .}}empty{{end}}", new ArrayList<>()));
+    }
+
+    @Test
+    void testResolverTakesPrecedenceOverMaps() throws IOException, TemplateException {
+        Template template = new Template("test")
+                .withValueResolver(Map.class, (map, name) -> "map:" + name)
+                .withValueResolver(LinkedHashMap.class, (map, name) -> "linked:" + name);
+        assertEquals("linked:a", render(template, "{{.a}}", new LinkedHashMap<>()));
+        assertEquals("map:a", render(new Template(template), "{{.a}}", Collections.emptyMap()));
+    }
+
+    @Test
+    void testResolverErrorsAreWrapped() {
+        Template template = new Template("test").withValueResolver(Doc.class, new DocResolver() {
+            @Override
+            public Object getField(Doc doc, String name) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public boolean isTrue(Doc doc) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public int length(Doc doc) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public Object index(Doc doc, Object key) {
+                throw new IllegalStateException("broken");
+            }
+        });
+        for (String source : new String[]{"{{.a}}", "{{if .}}{{end}}", "{{len .}}", "{{not .}}", "{{index . 0}}"}) {
+            TemplateExecutionException e = assertThrows(TemplateExecutionException.class,
+                    () -> render(new Template(template), source, new Doc()), source);
+            assertEquals("broken", e.getCause().getMessage(), source);
+        }
+    }
+
+    @Test
+    void testRegistration() {
+        DocResolver resolver = new DocResolver();
+        Template template = new Template("test");
+        assertTrue(template.valueResolvers().isEmpty());
+
+        template.withValueResolver(Doc.class, resolver);
+        assertSame(resolver, template.valueResolvers().get(Doc.class));
+        assertSame(resolver, new Template(template).valueResolvers().get(Doc.class));
+
+        Template copy = new Template(template).withValueResolver(String.class, (s, name) -> name);
+        assertEquals(2, copy.valueResolvers().size());
+        assertEquals(1, template.valueResolvers().size());
+
+        assertThrows(UnsupportedOperationException.class, () -> template.valueResolvers().clear());
+        assertThrows(IllegalArgumentException.class, () -> template.withValueResolver(null, resolver));
+        assertThrows(IllegalArgumentException.class, () -> template.withValueResolver(Doc.class, null));
+    }
+}
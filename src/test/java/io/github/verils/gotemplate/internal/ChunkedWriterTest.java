@@ -0,0 +1,63 @@
+package io.github.verils.gotemplate.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedWriterTest {
+
+    private final List<String> chunks = new ArrayList<>();
+
+    private ChunkedWriter writer(int threshold) {
+        return new ChunkedWriter((chunk, offset, length) -> chunks.add(new String(chunk, offset, length)), threshold);
+    }
+
+    @Test
+    void testBuffersUntilFlushPoint() throws IOException {
+        ChunkedWriter writer = writer(4);
+        writer.write("ab");
+        writer.flushPoint();
+        assertTrue(chunks.isEmpty());
+
+        writer.write('c');
+        writer.write("xdx", 1, 1);
+        writer.flushPoint();
+        assertEquals(List.of("abcd"), chunks);
+    }
+
+    @Test
+    void testEmitsWhenBufferIsFull() throws IOException {
+        ChunkedWriter writer = writer(2);
+        writer.write("abc");
+        writer.write("de");
+        assertEquals(List.of("abc"), chunks);
+
+        writer.write("0123456789".toCharArray(), 2, 5);
+        assertEquals(List.of("abc", "de", "23456"), chunks);
+
+        writer.close();
+        assertEquals(3, chunks.size());
+    }
+
+    @Test
+    void testBufferGrowsUpToCapacity() throws IOException {
+        ChunkedWriter writer = writer(1024);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            writer.write("row" + i);
+            expected.append("row").append(i);
+        }
+        writer.flush();
+        assertEquals(expected.toString(), String.join("", chunks));
+        assertTrue(chunks.size() > 1);
+    }
+
+    @Test
+    void testThresholdMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> writer(0));
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.verils.gotemplate.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassMetadataCacheTest {
+
+    public static class Item {
+        public String getName() {
+            return "item";
+        }
+    }
+
+    @Test
+    void testSharedCacheReturnsSameMetadataForAllCallers() {
+        ClassMetadata metadata = ClassMetadataCache.shared().get(Item.class);
+        assertSame(metadata, ClassMetadataCache.shared().get(Item.class));
+        assertNotNull(metadata.getPropertyDescriptor("Name"));
+    }
+
+    @Test
+    void testIsolatedCachesDoNotShareMetadata() {
+        ClassMetadataCache first = ClassMetadataCache.isolated();
+        ClassMetadataCache second = ClassMetadataCache.isolated();
+
+        assertSame(first.get(Item.class), first.get(Item.class));
+        assertNotSame(first.get(Item.class), second.get(Item.class));
+        assertNotSame(first.get(Item.class), ClassMetadataCache.shared().get(Item.class));
+    }
+}
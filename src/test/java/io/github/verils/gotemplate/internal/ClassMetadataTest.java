@@ -0,0 +1,111 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.TemplateField;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassMetadataTest {
+
+    @SuppressWarnings("unused")
+    public static class Bean {
+        public String title = "field";
+        public int count;
+        public String Code = "code";
+
+        @TemplateField("label")
+        private String hiddenLabel = "label";
+
+        public String getName() {
+            return "name";
+        }
+
+        public boolean isActive() {
+            return true;
+        }
+
+        public Boolean isBoxed() {
+            return true;
+        }
+
+        public String getURL() {
+            return "url";
+        }
+
+        public void getNothing() {
+        }
+
+        public static String getShared() {
+            return "shared";
+        }
+
+        public String describe() {
+            return "description";
+        }
+
+        @TemplateField("Name")
+        public String annotatedName() {
+            return "annotated";
+        }
+    }
+
+    private static String memberName(AccessibleObject member) {
+        return member instanceof Field ? ((Field) member).getName() : ((Method) member).getName();
+    }
+
+    @Test
+    void testResolvesPropertyGettersByPropertyAndGoStyleName() {
+        ClassMetadata metadata = new ClassMetadata(Bean.class);
+        assertEquals("isActive", memberName(metadata.getMember("active")));
+        assertEquals("isActive", memberName(metadata.getMember("Active")));
+        assertEquals("getURL", memberName(metadata.getMember("URL")));
+        assertEquals("getName", memberName(metadata.getMember("name")));
+    }
+
+    @Test
+    void testAnnotatedMembersTakePrecedence() {
+        ClassMetadata metadata = new ClassMetadata(Bean.class);
+        assertEquals("annotatedName", memberName(metadata.getMember("Name")));
+        assertEquals("hiddenLabel", memberName(metadata.getMember("label")));
+    }
+
+    @Test
+    void testFallsBackToMethodsAndPublicFields() {
+        ClassMetadata metadata = new ClassMetadata(Bean.class);
+        assertEquals("describe", memberName(metadata.getMember("describe")));
+        assertEquals("isBoxed", memberName(metadata.getMember("isBoxed")));
+        assertEquals("getShared", memberName(metadata.getMember("getShared")));
+        assertEquals("title", memberName(metadata.getMember("title")));
+        assertEquals("Code", memberName(metadata.getMember("code")));
+        assertEquals("count", memberName(metadata.getMember("count")));
+    }
+
+    @Test
+    void testMissesAreMemoized() {
+        ClassMetadata metadata = new ClassMetadata(Bean.class);
+        assertNull(metadata.getMember("missing"));
+        assertNull(metadata.getMember("missing"));
+        assertNull(metadata.getMember("boxed"));
+        assertNull(metadata.getMember("nothing"));
+        assertNull(metadata.getMember("shared"));
+        assertNull(metadata.getMember("class"));
+        assertNull(metadata.getMember("getClass"));
+        assertSame(metadata.getMember("name"), metadata.getMember("name"));
+    }
+
+    @Test
+    void testFullScansAreAvailableOnDemand() {
+        ClassMetadata metadata = new ClassMetadata(Bean.class);
+        assertNotNull(metadata.getBeanInfo());
+        assertSame(metadata.getBeanInfo(), metadata.getBeanInfo());
+        assertNotNull(metadata.getPropertyDescriptor("Name"));
+        assertTrue(metadata.hasPublicMethod("describe"));
+        assertFalse(metadata.hasPublicMethod("getClass"));
+        assertTrue(metadata.hasPublicField("title"));
+        assertTrue(metadata.getAnnotatedMembers().containsKey("label"));
+    }
+}
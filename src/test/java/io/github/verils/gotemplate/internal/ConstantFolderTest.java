@@ -0,0 +1,85 @@
+package io.github.verils.gotemplate.internal;
+
+import io.github.verils.gotemplate.Function;
+import io.github.verils.gotemplate.Functions;
+import io.github.verils.gotemplate.TemplateParseException;
+import io.github.verils.gotemplate.internal.ast.ListNode;
+import io.github.verils.gotemplate.internal.ast.Node;
+import io.github.verils.gotemplate.internal.ast.TextNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantFolderTest {
+
+    private Map<String, Node> nodes;
+
+    private List<Node> fold(String source, Map<String, Function> functions) throws TemplateParseException {
+        Map<String, Function> all = new HashMap<>(Functions.BUILTIN);
+        all.putAll(functions);
+        nodes = new Parser(all).parse("main", source);
+        return new ConstantFolder(nodes, all, ValueResolvers.empty()).fold((ListNode) nodes.get("main"));
+    }
+
+    private List<Node> fold(String source) throws TemplateParseException {
+        return fold(source, new HashMap<>());
+    }
+
+    private static String text(Node node) {
+        assertInstanceOf(TextNode.class, node);
+        return ((TextNode) node).getText();
+    }
+
+    @Test
+    void testConstantRunsBecomeOneTextNode() throws TemplateParseException {
+        List<Node> folded = fold("{{/* note */}}<p>{{print \"a\" 1}}{{if eq 1 1}}yes{{else}}no{{end}}"
+                + "{{\"x\" | html}}{{len \"abc\"}}</p>");
+        assertEquals(1, folded.size());
+        assertEquals("<p>a 1yesx3</p>", text(folded.get(0)));
+    }
+
+    @Test
+    void testDataDependentNodesSplitRuns() throws TemplateParseException {
+        List<Node> folded = fold("<a>{{print \"b\"}}{{.Name}}<c>{{$x := 1}}{{$x}}{{with 1}}{{.}}{{end}}</c>");
+        assertEquals(7, folded.size());
+        assertEquals("<a>b", text(folded.get(0)));
+        assertEquals("<c>", text(folded.get(2)));
+        assertEquals("</c>", text(folded.get(6)));
+    }
+
+    @Test
+    void testTemplatesWithConstantBodies() throws TemplateParseException {
+        List<Node> folded = fold("{{define \"shell\"}}<html>{{template \"inner\"}}</html>{{end}}"
+                + "{{define \"inner\"}}{{printf \"%d\" 42}}{{end}}"
+                + "{{define \"loop\"}}{{template \"loop\"}}{{end}}"
+                + "{{define \"dot\"}}{{.}}{{end}}"
+                + "{{template \"shell\"}}|{{template \"loop\"}}{{template \"dot\" \"v\"}}{{template \"missing\"}}");
+        assertEquals(4, folded.size());
+        assertEquals("<html>42</html>|", text(folded.get(0)));
+    }
+
+    @Test
+    void testImpureAndFailingActionsAreKept() throws TemplateParseException {
+        Map<String, Function> functions = new HashMap<>();
+        functions.put("now", args -> System.nanoTime());
+        functions.put("print", args -> "custom");
+        List<Node> folded = fold("a{{now}}{{print 1}}{{call \"x\"}}{{len 3}}{{1 2}}{{(len \"ab\")}}b",
+                functions);
+        assertEquals(7, folded.size());
+        assertEquals("a", text(folded.get(0)));
+        assertEquals("2b", text(folded.get(6)));
+    }
+
+    @Test
+    void testFoldingIsComputedOnce() throws TemplateParseException {
+        fold("a{{print 1}}");
+        ConstantFolder folder = new ConstantFolder(nodes, Functions.BUILTIN, ValueResolvers.empty());
+        ListNode main = (ListNode) nodes.get("main");
+        assertSame(folder.fold(main), folder.fold(main));
+        assertEquals("a1", text(folder.fold(main).get(0)));
+    }
+}
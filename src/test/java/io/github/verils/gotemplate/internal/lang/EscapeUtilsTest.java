@@ -0,0 +1,59 @@
+package io.github.verils.gotemplate.internal.lang;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EscapeUtilsTest {
+
+    @Test
+    void testEscapeHtml() {
+        assertEquals("&lt;a href=&#39;x&#39;&gt;&quot;&amp;&quot;&lt;/a&gt;", EscapeUtils.escapeHtml("<a href='x'>\"&\"</a>"));
+    }
+
+    @Test
+    void testEscapeReturnsSameInstanceWhenNothingToEscape() {
+        String input = "plain text, ünïcode";
+        assertSame(input, EscapeUtils.escapeHtml(input));
+        String ascii = "abc";
+        assertSame(ascii, EscapeUtils.escapeJs(ascii));
+    }
+
+    @Test
+    void testEscapeHtmlNoSpace() {
+        assertEquals("a&#32;b&#61;c&#96;&lt;", EscapeUtils.escapeHtmlNoSpace("a b=c`<"));
+        assertEquals("&#9;&#10;&#12;&#13;", EscapeUtils.escapeHtmlNoSpace("\t\n\f\r"));
+    }
+
+    @Test
+    void testEscapeJs() {
+        assertEquals("\\'\\\"\\\\\\n\\r\\t\\u0001", EscapeUtils.escapeJs("'\"\\\n\r\t\u0001"));
+        assertEquals("<b>\\u00e9", EscapeUtils.escapeJs("<b>é"));
+    }
+
+    @Test
+    void testEscapeJsStrict() {
+        assertEquals("\\u003c\\u002fscript\\u003e", EscapeUtils.escapeJsStrict("</script>"));
+        assertEquals("\\u0026\\u003d\\u0060\\u002b", EscapeUtils.escapeJsStrict("&=`+"));
+        assertEquals("$x", EscapeUtils.escapeJsStrict("$x"));
+        assertEquals("\\u0024\\u007bx\\u007d\\u0060", EscapeUtils.escapeJsTemplate("${x}`"));
+    }
+
+    @Test
+    void testEscapeCss() {
+        assertEquals("red", EscapeUtils.escapeCss("red"));
+        assertEquals("a\\3b \\7d \\e9 ", EscapeUtils.escapeCss("a;}é"));
+    }
+
+    @Test
+    void testEscapeUrlQuery() {
+        assertEquals("a%20b%26c%3Dd-._~", EscapeUtils.escapeUrlQuery("a b&c=d-._~"));
+        assertEquals("%C3%A9%F0%9F%98%80", EscapeUtils.escapeUrlQuery("é\uD83D\uDE00"));
+    }
+
+    @Test
+    void testNormalizeUrl() {
+        assertEquals("http://x/a%20b?q=1&r=%2F#f", EscapeUtils.normalizeUrl("http://x/a b?q=1&r=%2F#f"));
+        assertEquals("%22%3C%3E", EscapeUtils.normalizeUrl("\"<>"));
+    }
+}